@@ -10,10 +10,13 @@ import com.grinderwolf.swm.api.exceptions.WorldLoadedException;
 import com.grinderwolf.swm.api.exceptions.WorldTooBigException;
 import com.grinderwolf.swm.api.loaders.SlimeLoader;
 import com.grinderwolf.swm.api.world.SlimeWorld;
+import com.grinderwolf.swm.api.world.SlimeWorldMemoryUsage;
+import com.grinderwolf.swm.api.world.SlimeWorldMetadata;
 import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Main class of the SWM API. From here, you can load
@@ -161,4 +164,52 @@ public interface SlimePlugin {
      */
     void importWorld(File worldDir, String worldName, SlimeLoader loader) throws WorldAlreadyExistsException,
             InvalidWorldException, WorldLoadedException, WorldTooBigException, IOException;
+
+    /**
+     * Reads the metadata of a stored world, like its bounds, chunk count and properties.
+     * Only the start of the world's data file is fetched from the data source.
+     *
+     * @param loader {@link SlimeLoader} used to retrieve the world.
+     * @param worldName Name of the world.
+     *
+     * @return A {@link SlimeWorldMetadata} object, or <code>null</code> if the world was saved by an older version
+     * of SWM that didn't store any metadata.
+     *
+     * @throws UnknownWorldException if the world cannot be found.
+     * @throws IOException if the world cannot be obtained from the speficied data source.
+     * @throws CorruptedWorldException if the metadata of the world cannot be parsed.
+     * @throws NewerFormatException if the world uses a newer version of the SRF.
+     */
+    SlimeWorldMetadata getWorldMetadata(SlimeLoader loader, String worldName) throws UnknownWorldException, IOException,
+            CorruptedWorldException, NewerFormatException;
+
+    /**
+     * Trains a zstd compression dictionary from the chunks of some worlds of a data source,
+     * and stores it inside that data source. Worlds of the data source will be compressed
+     * with the new dictionary from their next save onwards.
+     *
+     * @param loader The {@link SlimeLoader} of the data source.
+     * @param worldNames The names of the worlds to train the dictionary with.
+     * @param dictionarySize The maximum size of the dictionary, in bytes.
+     *
+     * @return The ID of the new dictionary.
+     *
+     * @throws UnknownWorldException if one of the worlds cannot be found.
+     * @throws CorruptedWorldException if one of the worlds cannot be read.
+     * @throws NewerFormatException if one of the worlds is stored in a newer format than the one SWM supports.
+     * @throws IOException if there isn't enough data to train a dictionary, or it could not be stored.
+     */
+    int trainDictionary(SlimeLoader loader, List<String> worldNames, int dictionarySize) throws UnknownWorldException,
+            CorruptedWorldException, NewerFormatException, IOException;
+
+    /**
+     * Estimates how much memory a world takes up. Chunks that haven't changed since the world was
+     * last measured aren't measured again, but the first estimate of a big world can take a while,
+     * so this method shouldn't be called from the main thread.
+     *
+     * @param world The world to measure.
+     *
+     * @return A {@link SlimeWorldMemoryUsage} object with the estimated sizes.
+     */
+    SlimeWorldMemoryUsage getMemoryUsage(SlimeWorld world);
 }
@@ -7,7 +7,11 @@ package com.grinderwolf.swm.api.exceptions;
 public class CorruptedWorldException extends SlimeException {
 
     public CorruptedWorldException(String world) {
-        this(world, null);
+        this(world, (Exception) null);
+    }
+
+    public CorruptedWorldException(String world, String reason) {
+        super("World " + world + " seems to be corrupted: " + reason);
     }
 
     public CorruptedWorldException(String world, Exception ex) {
@@ -4,6 +4,7 @@ import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
 import com.grinderwolf.swm.api.exceptions.WorldInUseException;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -27,6 +28,29 @@ public interface SlimeLoader {
      */
     byte[] loadWorld(String worldName, boolean readOnly) throws UnknownWorldException, WorldInUseException, IOException;
 
+    /**
+     * Loads the start of a world's data file, without locking the world. Data
+     * sources that can read just part of a stored world should override this, so
+     * the metadata of a world can be read without fetching the whole file.
+     *
+     * @param worldName The name of the world.
+     * @param length    The maximum amount of bytes to load.
+     * @return The first {@code length} bytes of the world's data file, or the whole file if it's shorter.
+     * @throws UnknownWorldException if the world cannot be found.
+     * @throws IOException           if the world could not be obtained.
+     */
+    default byte[] loadWorldPrefix(String worldName, int length) throws UnknownWorldException, IOException {
+        byte[] serializedWorld;
+
+        try {
+            serializedWorld = loadWorld(worldName, true);
+        } catch (WorldInUseException ex) { // Read-only loads never check the lock
+            throw new IOException(ex);
+        }
+
+        return serializedWorld.length <= length ? serializedWorld : Arrays.copyOf(serializedWorld, length);
+    }
+
     /**
      * Checks whether or not a world exists
      * inside the data source.
@@ -84,4 +108,49 @@ public interface SlimeLoader {
      */
     void deleteWorld(String worldName) throws UnknownWorldException, IOException;
 
+    /**
+     * Loads a zstd compression dictionary from the data source.
+     *
+     * @param dictionaryId The ID of the dictionary, as stored in the dictionary itself.
+     * @return The dictionary, or <code>null</code> if it doesn't exist.
+     * @throws IOException if the dictionary could not be obtained.
+     */
+    default byte[] loadDictionary(int dictionaryId) throws IOException {
+        return null;
+    }
+
+    /**
+     * Stores a zstd compression dictionary inside the data source.
+     *
+     * @param dictionaryId The ID of the dictionary, as stored in the dictionary itself.
+     * @param dictionary   The dictionary.
+     * @throws IOException                   if the dictionary could not be saved.
+     * @throws UnsupportedOperationException if this loader can't store dictionaries.
+     */
+    default void saveDictionary(int dictionaryId, byte[] dictionary) throws IOException {
+        throw new UnsupportedOperationException("This loader can't store dictionaries");
+    }
+
+    /**
+     * Returns the ID of the dictionary new worlds of this
+     * data source should be compressed with.
+     *
+     * @return The ID of the dictionary, or 0 if worlds shouldn't use a dictionary.
+     * @throws IOException if the dictionary ID could not be obtained.
+     */
+    default int getActiveDictionary() throws IOException {
+        return 0;
+    }
+
+    /**
+     * Sets the dictionary new worlds of this data source should be compressed with.
+     *
+     * @param dictionaryId The ID of the dictionary, or 0 to stop using dictionaries.
+     * @throws IOException                   if the dictionary ID could not be saved.
+     * @throws UnsupportedOperationException if this loader can't store dictionaries.
+     */
+    default void setActiveDictionary(int dictionaryId) throws IOException {
+        throw new UnsupportedOperationException("This loader can't store dictionaries");
+    }
+
 }
@@ -0,0 +1,46 @@
+package com.grinderwolf.swm.api.world;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * An estimate of the heap a loaded world takes up, split by what the memory is used for.
+ * Every size is in bytes. Chunks a cloned world still shares with its template are not
+ * counted, as they don't belong to the clone.
+ */
+@Getter
+@AllArgsConstructor
+public class SlimeWorldMemoryUsage {
+
+    private final String name;
+
+    // Chunks kept decoded, and chunks kept as compressed frames
+    private final int loadedChunks;
+    private final int compressedChunks;
+
+    private final long blockStatesSize;
+    private final long palettesSize;
+    private final long lightSize;
+    private final long entitiesSize;
+    private final long tileEntitiesSize;
+    private final long mapsSize;
+
+    /**
+     * The compressed frames of the chunks that aren't decoded, and the sections they share.
+     */
+    private final long compressedChunksSize;
+
+    /**
+     * Height maps, biomes and the extra data of the world.
+     */
+    private final long otherSize;
+
+    /**
+     * Returns the combined size of everything the world keeps in memory.
+     *
+     * @return The total size, in bytes.
+     */
+    public long getTotalSize() {
+        return blockStatesSize + palettesSize + lightSize + entitiesSize + tileEntitiesSize + mapsSize + compressedChunksSize + otherSize;
+    }
+}
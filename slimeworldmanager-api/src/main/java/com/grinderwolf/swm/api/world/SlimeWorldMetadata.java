@@ -0,0 +1,55 @@
+package com.grinderwolf.swm.api.world;
+
+import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A summary of a stored world, read from the uncompressed metadata
+ * at the start of its data file, without loading the world itself.
+ */
+@Getter
+@AllArgsConstructor
+public class SlimeWorldMetadata {
+
+    private final String name;
+
+    /**
+     * The SRF version the world was saved with.
+     */
+    private final int formatVersion;
+    private final byte worldVersion;
+
+    /**
+     * When the world was last saved, in milliseconds since the epoch.
+     */
+    private final long lastSave;
+
+    // Bounding box of the stored chunks, in chunk coordinates
+    private final int minX;
+    private final int minZ;
+    private final int width;
+    private final int depth;
+
+    private final int chunkCount;
+
+    // Compressed sizes of the segments, in bytes
+    private final int blockPaletteSize;
+    private final int sectionTableSize;
+    private final int chunksSize;
+    private final int tileEntitiesSize;
+    private final int entitiesSize;
+    private final int extraSize;
+    private final int mapsSize;
+
+    private final SlimePropertyMap propertyMap;
+
+    /**
+     * Returns the combined compressed size of every segment of the world.
+     *
+     * @return The size of the segments, in bytes.
+     */
+    public long getSegmentsSize() {
+        return (long) blockPaletteSize + sectionTableSize + chunksSize + tileEntitiesSize + entitiesSize + extraSize + mapsSize;
+    }
+}
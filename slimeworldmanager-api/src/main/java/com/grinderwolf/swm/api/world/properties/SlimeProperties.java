@@ -73,4 +73,61 @@ public class SlimeProperties {
      */
     public static final SlimeProperty<String> DEFAULT_BIOME = new SlimePropertyString("defaultBiome", "minecraft:plains");
 
+    /**
+     * How the chunks of the world are compressed: "none", "zstd", "zstd:&lt;level&gt;", "lz4" or "lz4:&lt;level&gt;".
+     * Negative zstd levels and plain lz4 trade size for speed
+     */
+    public static final SlimeProperty<String> CHUNK_COMPRESSION = new SlimePropertyString("chunkCompression", "zstd:3", SlimeProperties::isValidCompression);
+
+    /**
+     * How the tile entities of the world are compressed
+     */
+    public static final SlimeProperty<String> TILE_ENTITY_COMPRESSION = new SlimePropertyString("tileEntityCompression", "zstd:3", SlimeProperties::isValidCompression);
+
+    /**
+     * How the entities of the world are compressed
+     */
+    public static final SlimeProperty<String> ENTITY_COMPRESSION = new SlimePropertyString("entityCompression", "zstd:3", SlimeProperties::isValidCompression);
+
+    /**
+     * How the extra data of the world is compressed
+     */
+    public static final SlimeProperty<String> EXTRA_COMPRESSION = new SlimePropertyString("extraCompression", "zstd:3", SlimeProperties::isValidCompression);
+
+    /**
+     * How the maps of the world are compressed
+     */
+    public static final SlimeProperty<String> MAP_COMPRESSION = new SlimePropertyString("mapCompression", "zstd:3", SlimeProperties::isValidCompression);
+
+    /**
+     * Whether block and sky light are saved. Worlds that don't save them
+     * are relit by the server when their chunks are loaded
+     */
+    public static final SlimeProperty<Boolean> SAVE_LIGHT = new SlimePropertyBoolean("saveLight", true);
+
+    private static boolean isValidCompression(String value) {
+        String[] split = value.toLowerCase().split(":", 2);
+
+        switch (split[0]) {
+            case "none":
+                return split.length == 1;
+            case "zstd":
+                return split.length == 1 || isLevelBetween(split[1], -7, 22);
+            case "lz4":
+                return split.length == 1 || isLevelBetween(split[1], 1, 17);
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isLevelBetween(String value, int minLevel, int maxLevel) {
+        try {
+            int level = Integer.parseInt(value);
+
+            return level >= minLevel && level <= maxLevel;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
 }
@@ -20,17 +20,23 @@ public class SlimePropertyMap {
     }
 
     /**
-     * Return the current value of the given property
+     * Return the current value of the given property. Stored values
+     * that aren't valid for the property are ignored.
      *
      * @param property The slime property
      * @return The current value
      */
     public <T> T getValue(SlimeProperty<T> property) {
         if(properties.containsKey(property.getNbtName())) {
-            return property.readValue(properties.get(property.getNbtName()));
-        } else {
-            return property.getDefaultValue();
+            T value = property.readValue(properties.get(property.getNbtName()));
+
+            // Values read from a world file never went through the validator
+            if (property.getValidator() == null || property.getValidator().apply(value)) {
+                return value;
+            }
         }
+
+        return property.getDefaultValue();
     }
 
     /**
@@ -0,0 +1,241 @@
+package com.grinderwolf.swm.nms;
+
+import com.flowpowered.nbt.CompoundTag;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Every block state used by the sections of a world. It's stored once in the world
+ * header, and sections refer to its entries by id instead of storing their own NBT palettes.
+ *
+ * Ids never change once given, so frames and shared sections that were
+ * already encoded stay valid as new block states get added.
+ */
+public class BlockPalette {
+
+    // Palette this one is a copy of, whose ids are all valid in this one too
+    private final BlockPalette parent;
+
+    private final List<byte[]> serializedStates = new ArrayList<>();
+    private final List<CompoundTag> states = new ArrayList<>();
+    private final Map<ByteArrayKey, Integer> stateIds = new HashMap<>();
+
+    // States handed out by this palette, so sections that weren't modified don't have to be serialized again.
+    // They are looked up by identity, which is only safe because they never leave the internal code: the
+    // sections holding them hand out copies through the API. Any other tag is looked up by its content.
+    private final Map<CompoundTag, Integer> decodedStateIds = new IdentityHashMap<>();
+
+    // Server block states, so they only have to be converted to flow-nbt the first time they are saved
+    private final Map<Object, Integer> nativeStateIds = new HashMap<>();
+    private Object[] nativeStates = new Object[0];
+
+    // Whether new states can't be added anymore, because copies were made that wouldn't know about them
+    private boolean frozen;
+
+    public BlockPalette() {
+        this(null);
+    }
+
+    private BlockPalette(BlockPalette parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Creates a copy of this palette, which new states can be added to without changing this one.
+     * States are shared with the copy, so copying doesn't decode or convert anything again.
+     */
+    public synchronized BlockPalette copy() {
+        BlockPalette palette = new BlockPalette(this);
+
+        palette.serializedStates.addAll(serializedStates);
+        palette.states.addAll(states);
+        palette.stateIds.putAll(stateIds);
+        palette.decodedStateIds.putAll(decodedStateIds);
+        palette.nativeStateIds.putAll(nativeStateIds);
+        palette.nativeStates = nativeStates.clone();
+
+        return palette;
+    }
+
+    /**
+     * Stops new states from being added to this palette. Frames encoded with a frozen palette
+     * only use ids that are valid in every copy of it, no matter when the copy was made.
+     */
+    public synchronized void freeze() {
+        frozen = true;
+    }
+
+    /**
+     * Checks whether ids given by another palette mean the same in this one, either
+     * because it's the same palette or because this one was copied from it.
+     */
+    public boolean isCopyOf(BlockPalette palette) {
+        for (BlockPalette current = this; current != null; current = current.parent) {
+            if (current == palette) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the id of a block state, adding it to the palette if it's not there yet. States
+     * this palette handed out are recognized right away, any other one is serialized and
+     * looked up by its content, so tags that were modified since the last call get the right id.
+     *
+     * @throws FrozenPaletteException if the state isn't in the palette and the palette is frozen.
+     */
+    public synchronized int getId(CompoundTag state) throws IOException {
+        Integer id = decodedStateIds.get(state);
+
+        if (id != null) {
+            return id;
+        }
+
+        byte[] serializedState = NbtCodec.serialize(state);
+        ByteArrayKey key = new ByteArrayKey(serializedState);
+        id = stateIds.get(key);
+
+        if (id == null) {
+            if (frozen) {
+                throw new FrozenPaletteException();
+            }
+
+            serializedStates.add(serializedState);
+            states.add(null);
+            id = serializedStates.size() - 1;
+            stateIds.put(key, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Returns the id of a block state in the server's own representation, adding it to the palette if it's not
+     * there yet. States are converted to flow-nbt only the first time they are seen, so they must be immutable.
+     */
+    public synchronized <T> int getId(T nativeState, Function<T, CompoundTag> converter) throws IOException {
+        Integer id = nativeStateIds.get(nativeState);
+
+        if (id == null) {
+            id = getId(converter.apply(nativeState));
+            nativeStateIds.put(nativeState, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Returns the block state with the given id. The same tag is returned every time, and it's
+     * recognized by {@link #getId(CompoundTag)} without serializing it again, so it must never be modified.
+     * Code that needs to change a state has to work on a copy of it.
+     *
+     * @throws IOException if there's no block state with that id.
+     */
+    public synchronized CompoundTag get(int id) throws IOException {
+        if (id < 0 || id >= states.size()) {
+            throw new IOException("Unknown block state id " + id);
+        }
+
+        CompoundTag state = states.get(id);
+
+        if (state == null) {
+            state = NbtCodec.readCompound(serializedStates.get(id));
+            states.set(id, state);
+            decodedStateIds.put(state, id);
+        }
+
+        return state;
+    }
+
+    /**
+     * Returns the server's own representation of a block state this palette handed out, converting it only
+     * the first time it's needed. States that don't come from this palette are converted every time.
+     *
+     * The returned object is shared by every caller asking for the same state, so it must only be read
+     * and never kept or modified.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T getNativeState(CompoundTag state, Function<CompoundTag, T> converter) {
+        Integer id = decodedStateIds.get(state);
+
+        if (id == null) {
+            return converter.apply(state);
+        }
+
+        if (id >= nativeStates.length) {
+            nativeStates = Arrays.copyOf(nativeStates, serializedStates.size());
+        }
+
+        T nativeState = (T) nativeStates[id];
+
+        if (nativeState == null) {
+            nativeState = converter.apply(state);
+            nativeStates[id] = nativeState;
+        }
+
+        return nativeState;
+    }
+
+    public synchronized int size() {
+        return serializedStates.size();
+    }
+
+    /**
+     * Estimates the heap taken up by the states of this palette, in bytes.
+     */
+    public synchronized long getMemoryUsage() {
+        long size = MemoryEstimator.arraySize(nativeStates.length, 4);
+
+        for (int i = 0; i < serializedStates.size(); i++) {
+            size += MemoryEstimator.arraySize(serializedStates.get(i).length, 1) + MemoryEstimator.tagSize(states.get(i));
+        }
+
+        return size;
+    }
+
+    public synchronized void write(DataOutputStream outStream) throws IOException {
+        outStream.writeInt(serializedStates.size());
+
+        for (byte[] state : serializedStates) {
+            outStream.writeInt(state.length);
+            outStream.write(state);
+        }
+    }
+
+    public static BlockPalette read(ByteBuffer buffer) {
+        BlockPalette palette = new BlockPalette();
+        int stateCount = buffer.getInt();
+
+        // States are only parsed once a section uses them, and added as they are so their ids don't change
+        for (int i = 0; i < stateCount; i++) {
+            byte[] serializedState = ChunkDeserializer.readByteArray(buffer, buffer.getInt());
+
+            palette.stateIds.putIfAbsent(new ByteArrayKey(serializedState), palette.serializedStates.size());
+            palette.serializedStates.add(serializedState);
+            palette.states.add(null);
+        }
+
+        return palette;
+    }
+
+    /**
+     * Thrown when a block state has to be added to a frozen palette.
+     */
+    public static class FrozenPaletteException extends IOException {
+
+        public FrozenPaletteException() {
+            super("Block states can't be added to a frozen palette");
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.grinderwolf.swm.nms;
+
+import java.util.Arrays;
+
+/**
+ * Wraps a byte array so it can be used as a map key, compared by its contents.
+ */
+class ByteArrayKey {
+
+    private final byte[] data;
+    private final int hash;
+
+    ByteArrayKey(byte[] data) {
+        this.data = data;
+        this.hash = Arrays.hashCode(data);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ByteArrayKey && Arrays.equals(data, ((ByteArrayKey) obj).data);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
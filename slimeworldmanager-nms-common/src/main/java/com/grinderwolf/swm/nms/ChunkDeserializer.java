@@ -0,0 +1,396 @@
+package com.grinderwolf.swm.nms;
+
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.IntArrayTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.LongArrayTag;
+import com.flowpowered.nbt.TagType;
+import com.grinderwolf.swm.api.utils.NibbleArray;
+import com.grinderwolf.swm.api.world.SlimeChunkSection;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Reads the chunk data of a serialized slime world.
+ *
+ * All the methods read from a big-endian {@link ByteBuffer}, and throw a
+ * {@link BufferUnderflowException} if the data ends before it should.
+ */
+public class ChunkDeserializer {
+
+    // Single biome chunks don't store anything per biome, so their size can't be checked against the buffer
+    private static final int MAX_BIOMES_LENGTH = 65536;
+
+    /**
+     * Reads a single chunk as stored by the given SRF version.
+     *
+     * @param blockPalette The block states of the world, for SRF v14 and newer. Might be <code>null</code> otherwise.
+     * @param sharedSections The sections of the chunk that come from the section table, and
+     *                       so aren't stored in the chunk itself. Might be <code>null</code>.
+     */
+    public static CraftSlimeChunk readChunk(ByteBuffer buffer, byte worldVersion, int version, String worldName, int x, int z,
+                                            List<CompoundTag> tileEntities, List<CompoundTag> entities, BlockPalette blockPalette,
+                                            CraftSlimeChunkSection[] sharedSections) throws IOException {
+        // Height Maps
+        CompoundTag heightMaps;
+
+        if (worldVersion >= 0x04 && version >= 15) {
+            heightMaps = readHeightMaps(buffer);
+        } else if (worldVersion >= 0x04) {
+            int heightMapsLength = buffer.getInt();
+            heightMaps = NbtCodec.readCompound(buffer, heightMapsLength);
+
+            // Height Maps might be null if empty
+            if (heightMaps == null) {
+                heightMaps = new CompoundTag("", new CompoundMap());
+            }
+        } else {
+            int[] heightMap = readIntArray(buffer, 256);
+
+            CompoundMap map = new CompoundMap();
+            map.put("heightMap", new IntArrayTag("heightMap", heightMap));
+
+            heightMaps = new CompoundTag("", map);
+        }
+
+        // Biome array
+        int[] biomes;
+
+        if (version == 8 && worldVersion < 0x04) {
+            // Patch the v8 bug: biome array size is wrong for old worlds
+            buffer.getInt();
+        }
+
+        if (worldVersion >= 0x04 && version >= 15) {
+            biomes = readBiomes(buffer);
+        } else if (worldVersion >= 0x04) {
+            int biomesArrayLength = version >= 8 ? buffer.getInt() : 256;
+            biomes = readIntArray(buffer, biomesArrayLength);
+        } else {
+            // 256 byte biomes, packed into ints
+            biomes = readIntArray(buffer, 256 / 4);
+        }
+
+        // Chunk Sections
+        SlimeChunkSection[] sections = readChunkSections(buffer, worldVersion, version, blockPalette, sharedSections);
+
+        return new CraftSlimeChunk(worldName, x, z, sections, heightMaps, biomes, tileEntities, entities);
+    }
+
+    private static NibbleArray readLight(ByteBuffer buffer, int version) throws IOException {
+        if (version < 5) {
+            return new NibbleArray(readByteArray(buffer, 2048));
+        }
+
+        byte lightType = buffer.get();
+
+        // Before v16 this was just a boolean
+        if (version < 16) {
+            return lightType != 0 ? new NibbleArray(readByteArray(buffer, 2048)) : null;
+        }
+
+        switch (lightType) {
+            case ChunkSerializer.LIGHT_NONE:
+                return null;
+            case ChunkSerializer.LIGHT_FULL:
+                return new NibbleArray(readByteArray(buffer, 2048));
+            case ChunkSerializer.LIGHT_UNIFORM:
+                int level = buffer.get() & 0xF;
+                byte[] light = new byte[2048];
+                Arrays.fill(light, (byte) (level | level << 4));
+
+                return new NibbleArray(light);
+            default:
+                throw new IOException("Unknown light type " + lightType);
+        }
+    }
+
+    private static CompoundTag readHeightMaps(ByteBuffer buffer) throws IOException {
+        CompoundMap map = new CompoundMap();
+        int heightMapCount = buffer.get() & 0xFF;
+
+        for (int i = 0; i < heightMapCount; i++) {
+            int type = buffer.get() & 0xFF;
+            String name;
+
+            if (type == 0) {
+                name = readUTF(buffer);
+            } else if (type < ChunkSerializer.HEIGHT_MAP_TYPES.length) {
+                name = ChunkSerializer.HEIGHT_MAP_TYPES[type];
+            } else {
+                throw new IOException("Unknown height map type " + type);
+            }
+
+            map.put(name, new LongArrayTag(name, readLongArray(buffer, readVarInt(buffer))));
+        }
+
+        return new CompoundTag("", map);
+    }
+
+    private static int[] readBiomes(ByteBuffer buffer) throws IOException {
+        int biomesLength = readVarInt(buffer);
+
+        if (biomesLength < 0 || biomesLength > MAX_BIOMES_LENGTH) {
+            throw new IOException("Invalid biome array size " + biomesLength);
+        }
+
+        int[] biomes = new int[biomesLength];
+
+        if (biomes.length == 0) {
+            return biomes;
+        }
+
+        int paletteSize = readVarInt(buffer);
+        checkLength(buffer, paletteSize, 1);
+
+        if (paletteSize == 0) {
+            throw new IOException("Biome palette is empty");
+        }
+
+        int[] palette = new int[paletteSize];
+
+        for (int i = 0; i < paletteSize; i++) {
+            palette[i] = readVarInt(buffer);
+        }
+
+        if (paletteSize == 1) {
+            Arrays.fill(biomes, palette[0]);
+
+            return biomes;
+        }
+
+        int bitsPerEntry = ChunkSerializer.getBitsPerEntry(paletteSize);
+        int entriesPerLong = 64 / bitsPerEntry;
+        long[] packedIndices = readLongArray(buffer, (biomes.length + entriesPerLong - 1) / entriesPerLong);
+        long mask = (1L << bitsPerEntry) - 1;
+
+        for (int i = 0; i < biomes.length; i++) {
+            int index = (int) ((packedIndices[i / entriesPerLong] >>> ((i % entriesPerLong) * bitsPerEntry)) & mask);
+
+            if (index >= paletteSize) {
+                throw new IOException("Biome palette index " + index + " is out of bounds");
+            }
+
+            biomes[i] = palette[index];
+        }
+
+        return biomes;
+    }
+
+    private static String readUTF(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+
+        return new String(readByteArray(buffer, length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Moves the buffer past a single chunk without decoding it, so
+     * the byte range of every chunk can be found before reading them.
+     */
+    public static void skipChunk(ByteBuffer buffer, byte worldVersion, int version) {
+        // Height Maps
+        if (worldVersion >= 0x04) {
+            skip(buffer, buffer.getInt());
+        } else {
+            skip(buffer, 256 * 4);
+        }
+
+        // Biome array
+        if (version == 8 && worldVersion < 0x04) {
+            buffer.getInt();
+        }
+
+        if (worldVersion >= 0x04) {
+            int biomesArrayLength = version >= 8 ? buffer.getInt() : 256;
+            skip(buffer, checkLength(buffer, biomesArrayLength, 4));
+        } else {
+            skip(buffer, 256);
+        }
+
+        // Chunk Sections
+        BitSet sectionBitset = BitSet.valueOf(readByteArray(buffer, 2));
+
+        for (int i = 0; i < 16; i++) {
+            if (sectionBitset.get(i)) {
+                // Block Light Nibble Array
+                if (version < 5 || buffer.get() != 0) {
+                    skip(buffer, 2048);
+                }
+
+                // Block data
+                if (worldVersion >= 0x04) {
+                    int paletteLength = buffer.getInt();
+
+                    for (int index = 0; index < paletteLength; index++) {
+                        skip(buffer, buffer.getInt());
+                    }
+
+                    skip(buffer, checkLength(buffer, buffer.getInt(), 8));
+                } else {
+                    skip(buffer, 4096 + 2048);
+                }
+
+                // Sky Light Nibble Array
+                if (version < 5 || buffer.get() != 0) {
+                    skip(buffer, 2048);
+                }
+
+                // HypixelBlocks 3
+                if (version < 4) {
+                    skip(buffer, buffer.getShort());
+                }
+            }
+        }
+    }
+
+    private static SlimeChunkSection[] readChunkSections(ByteBuffer buffer, byte worldVersion, int version, BlockPalette blockPalette,
+                                                         CraftSlimeChunkSection[] sharedSections) throws IOException {
+        SlimeChunkSection[] chunkSectionArray = new SlimeChunkSection[16];
+        BitSet sectionBitset = BitSet.valueOf(readByteArray(buffer, 2));
+
+        for (int i = 0; i < 16; i++) {
+            if (sectionBitset.get(i)) {
+                if (sharedSections != null && sharedSections[i] != null) {
+                    chunkSectionArray[i] = sharedSections[i];
+                } else {
+                    chunkSectionArray[i] = readChunkSection(buffer, worldVersion, version, blockPalette);
+                }
+            }
+        }
+
+        return chunkSectionArray;
+    }
+
+    /**
+     * Reads a single chunk section, as stored inside chunks and in the section table.
+     */
+    public static CraftSlimeChunkSection readChunkSection(ByteBuffer buffer, byte worldVersion, int version,
+                                                          BlockPalette blockPalette) throws IOException {
+        // Block Light Nibble Array
+        NibbleArray blockLightArray = readLight(buffer, version);
+
+        // Block data
+        byte[] blockArray;
+        NibbleArray dataArray;
+
+        ListTag<CompoundTag> paletteTag;
+        long[] blockStatesArray;
+
+        // Post 1.13 block format
+        if (worldVersion >= 0x04) {
+            // Palette
+            List<CompoundTag> paletteList;
+
+            if (version >= 14) { // Ids of the world's block palette
+                int paletteLength = readVarInt(buffer);
+                checkLength(buffer, paletteLength, 1);
+                paletteList = new ArrayList<>(paletteLength);
+
+                for (int index = 0; index < paletteLength; index++) {
+                    paletteList.add(blockPalette.get(readVarInt(buffer)));
+                }
+            } else {
+                int paletteLength = buffer.getInt();
+                checkLength(buffer, paletteLength, 4);
+                paletteList = new ArrayList<>(paletteLength);
+
+                for (int index = 0; index < paletteLength; index++) {
+                    int tagLength = buffer.getInt();
+
+                    paletteList.add(NbtCodec.readCompound(buffer, tagLength));
+                }
+            }
+
+            paletteTag = new ListTag<>("", TagType.TAG_COMPOUND, paletteList);
+
+            // Block states
+            int blockStatesArrayLength = buffer.getInt();
+            blockStatesArray = readLongArray(buffer, blockStatesArrayLength);
+
+            blockArray = null;
+            dataArray = null;
+        } else {
+            blockArray = readByteArray(buffer, 4096);
+
+            // Block Data Nibble Array
+            dataArray = new NibbleArray(readByteArray(buffer, 2048));
+
+            paletteTag = null;
+            blockStatesArray = null;
+        }
+
+        // Sky Light Nibble Array
+        NibbleArray skyLightArray = readLight(buffer, version);
+
+        // HypixelBlocks 3
+        if (version < 4) {
+            short hypixelBlocksLength = buffer.getShort();
+            skip(buffer, hypixelBlocksLength);
+        }
+
+        return new CraftSlimeChunkSection(blockArray, dataArray, paletteTag, blockStatesArray, blockLightArray, skyLightArray);
+    }
+
+    public static byte[] readByteArray(ByteBuffer buffer, int length) {
+        byte[] array = new byte[checkLength(buffer, length, 1)];
+        buffer.get(array);
+
+        return array;
+    }
+
+    public static int[] readIntArray(ByteBuffer buffer, int length) {
+        int byteLength = checkLength(buffer, length, 4);
+        int[] array = new int[length];
+
+        buffer.asIntBuffer().get(array);
+        buffer.position(buffer.position() + byteLength);
+
+        return array;
+    }
+
+    public static long[] readLongArray(ByteBuffer buffer, int length) {
+        int byteLength = checkLength(buffer, length, 8);
+        long[] array = new long[length];
+
+        buffer.asLongBuffer().get(array);
+        buffer.position(buffer.position() + byteLength);
+
+        return array;
+    }
+
+    public static int readVarInt(ByteBuffer buffer) throws IOException {
+        int value = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("VarInt is too big");
+    }
+
+    private static int checkLength(ByteBuffer buffer, int length, int elementSize) {
+        if (length < 0 || (long) length * elementSize > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        return length * elementSize;
+    }
+
+    private static void skip(ByteBuffer buffer, int length) {
+        checkLength(buffer, length, 1);
+        buffer.position(buffer.position() + length);
+    }
+}
@@ -0,0 +1,372 @@
+package com.grinderwolf.swm.nms;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * An open addressing hash map of chunks, keyed by their coordinates packed into a long.
+ *
+ * Lookups don't lock: they read the table optimistically, and only retry under a read lock if a
+ * write happened at the same time. Writes are exclusive. Removed entries leave a tombstone behind
+ * instead of moving other entries around, so the map can be iterated and even modified while
+ * it's being iterated. Iterators are weakly consistent, they may or may not see changes made
+ * after they were created.
+ *
+ * Null values aren't allowed.
+ */
+public class ChunkMap<V> implements Iterable<V> {
+
+    private static final Object REMOVED = new Object();
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5F;
+
+    private final StampedLock lock = new StampedLock();
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    // Slots holding either an entry or a tombstone
+    private int usedSlots;
+
+    public ChunkMap() {
+        this(0);
+    }
+
+    public ChunkMap(int expectedSize) {
+        int capacity = getCapacity(expectedSize);
+
+        keys = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    public static long getKey(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    public V get(int x, int z) {
+        return get(getKey(x, z));
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        long stamp = lock.tryOptimisticRead();
+
+        if (stamp != 0) {
+            long[] keys = this.keys;
+            Object[] values = this.values;
+
+            // Both arrays are only consistent with each other if no write happened in between
+            if (keys.length == values.length) {
+                int index = indexOf(keys, values, key);
+                Object value = index == -1 ? null : values[index];
+
+                if (lock.validate(stamp)) {
+                    return (V) value;
+                }
+            }
+        }
+
+        stamp = lock.readLock();
+
+        try {
+            int index = indexOf(keys, values, key);
+
+            return index == -1 ? null : (V) values[index];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps a key to a value.
+     *
+     * @return The value previously mapped to the key, or <code>null</code> if there wasn't any.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        Objects.requireNonNull(value, "value");
+        long stamp = lock.writeLock();
+
+        try {
+            int index = indexOf(keys, values, key);
+
+            if (index != -1) {
+                V oldValue = (V) values[index];
+                values[index] = value;
+
+                return oldValue;
+            }
+
+            if (usedSlots + 1 > keys.length * LOAD_FACTOR) {
+                rehash(size + 1);
+            }
+
+            insert(key, value);
+            size++;
+
+            return null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copies every entry of another map into this one.
+     */
+    public void putAll(ChunkMap<? extends V> other) {
+        long[] otherKeys;
+        Object[] otherValues;
+        long stamp = other.lock.readLock();
+
+        try {
+            otherKeys = other.keys;
+            otherValues = other.values;
+        } finally {
+            other.lock.unlockRead(stamp);
+        }
+
+        stamp = lock.writeLock();
+
+        try {
+            for (int i = 0; i < otherKeys.length; i++) {
+                Object value = otherValues[i];
+
+                if (value == null || value == REMOVED) {
+                    continue;
+                }
+
+                int index = indexOf(keys, values, otherKeys[i]);
+
+                if (index != -1) {
+                    values[index] = value;
+                } else {
+                    if (usedSlots + 1 > keys.length * LOAD_FACTOR) {
+                        rehash(size + 1);
+                    }
+
+                    insert(otherKeys[i], value);
+                    size++;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the value mapped to a key.
+     *
+     * @return The removed value, or <code>null</code> if there wasn't any.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        long stamp = lock.writeLock();
+
+        try {
+            int index = indexOf(keys, values, key);
+
+            if (index == -1) {
+                return null;
+            }
+
+            V oldValue = (V) values[index];
+            values[index] = REMOVED;
+            size--;
+
+            return oldValue;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces every value of the map with the result of the given function.
+     */
+    @SuppressWarnings("unchecked")
+    public void replaceAll(UnaryOperator<V> function) {
+        long stamp = lock.writeLock();
+
+        try {
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+
+                if (value != null && value != REMOVED) {
+                    values[i] = Objects.requireNonNull(function.apply((V) value), "value");
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+
+        try {
+            Arrays.fill(values, null);
+            size = 0;
+            usedSlots = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns an iterator over the values of the map. Values can't be removed through it.
+     */
+    @Override
+    public Iterator<V> iterator() {
+        Object[] values;
+        long stamp = lock.readLock();
+
+        try {
+            values = this.values;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+
+        return new ValueIterator<>(values);
+    }
+
+    private static int indexOf(long[] keys, Object[] values, long key) {
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+
+        // Bounded, so a lookup on a table that's being modified can't loop forever
+        for (int i = 0; i < keys.length; i++) {
+            Object value = values[index];
+
+            if (value == null) {
+                return -1;
+            }
+
+            if (value != REMOVED && keys[index] == key) {
+                return index;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    private void insert(long key, Object value) {
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+
+        while (values[index] != null && values[index] != REMOVED) {
+            index = (index + 1) & mask;
+        }
+
+        if (values[index] == null) {
+            usedSlots++;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+    }
+
+    private void rehash(int expectedSize) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        int capacity = getCapacity(expectedSize);
+
+        // The old arrays are left untouched, as iterators may still be using them
+        keys = new long[capacity];
+        values = new Object[capacity];
+        usedSlots = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            Object value = oldValues[i];
+
+            if (value != null && value != REMOVED) {
+                insert(oldKeys[i], value);
+            }
+        }
+    }
+
+    private static int getCapacity(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+
+        return capacity;
+    }
+
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        key ^= key >>> 33;
+
+        return (int) key;
+    }
+
+    private static class ValueIterator<V> implements Iterator<V> {
+
+        private final Object[] values;
+        private int index;
+        private Object next;
+
+        private ValueIterator(Object[] values) {
+            this.values = values;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+
+            while (next == null && index < values.length) {
+                Object value = values[index++];
+
+                if (value != null && value != REMOVED) {
+                    next = value;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+
+            V value = (V) next;
+            advance();
+
+            return value;
+        }
+    }
+}
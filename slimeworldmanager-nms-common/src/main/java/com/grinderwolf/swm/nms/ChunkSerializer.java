@@ -0,0 +1,376 @@
+package com.grinderwolf.swm.nms;
+
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.LongArrayTag;
+import com.flowpowered.nbt.Tag;
+import com.grinderwolf.swm.api.utils.NibbleArray;
+import com.grinderwolf.swm.api.utils.SlimeFormat;
+import com.grinderwolf.swm.api.world.SlimeChunk;
+import com.grinderwolf.swm.api.world.SlimeChunkSection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writes chunk frames and the compact encodings used inside them. {@link ChunkDeserializer} reads them back.
+ */
+public class ChunkSerializer {
+
+    // How the light of a section is stored
+    static final byte LIGHT_NONE = 0;
+    static final byte LIGHT_FULL = 1;
+    static final byte LIGHT_UNIFORM = 2;
+
+    /**
+     * Height map types that are written as a single byte. Type 0 is followed by the name of the height map.
+     */
+    static final String[] HEIGHT_MAP_TYPES = { null, "WORLD_SURFACE_WG", "WORLD_SURFACE", "OCEAN_FLOOR_WG", "OCEAN_FLOOR",
+            "MOTION_BLOCKING", "MOTION_BLOCKING_NO_LEAVES", "LIGHT_BLOCKING" };
+
+    /**
+     * Writes the height maps of a 1.13+ chunk as packed long arrays, each one preceded by its type.
+     */
+    public static void writeHeightMaps(DataOutputStream outStream, CompoundTag heightMaps) throws IOException {
+        Map<String, long[]> heightMapArrays = new LinkedHashMap<>();
+
+        if (heightMaps != null) {
+            for (Tag<?> tag : heightMaps.getValue().values()) {
+                if (tag instanceof LongArrayTag) {
+                    heightMapArrays.put(tag.getName(), ((LongArrayTag) tag).getValue());
+                }
+            }
+        }
+
+        outStream.writeByte(heightMapArrays.size());
+
+        for (Map.Entry<String, long[]> entry : heightMapArrays.entrySet()) {
+            int type = getHeightMapType(entry.getKey());
+            outStream.writeByte(type);
+
+            if (type == 0) {
+                outStream.writeUTF(entry.getKey());
+            }
+
+            long[] heightMap = entry.getValue();
+            writeVarInt(outStream, heightMap.length);
+
+            for (long value : heightMap) {
+                outStream.writeLong(value);
+            }
+        }
+    }
+
+    /**
+     * Writes the biomes of a 1.13+ chunk as a palette plus bit-packed indices,
+     * or just as the palette if the whole chunk is a single biome.
+     */
+    public static void writeBiomes(DataOutputStream outStream, int[] biomes) throws IOException {
+        writeVarInt(outStream, biomes.length);
+
+        if (biomes.length == 0) {
+            return;
+        }
+
+        List<Integer> palette = new ArrayList<>();
+        Map<Integer, Integer> paletteIndices = new LinkedHashMap<>();
+        int[] indices = new int[biomes.length];
+
+        for (int i = 0; i < biomes.length; i++) {
+            indices[i] = paletteIndices.computeIfAbsent(biomes[i], biome -> {
+                palette.add(biome);
+
+                return palette.size() - 1;
+            });
+        }
+
+        writeVarInt(outStream, palette.size());
+
+        for (int biome : palette) {
+            writeVarInt(outStream, biome);
+        }
+
+        // A single biome doesn't need any indices
+        if (palette.size() == 1) {
+            return;
+        }
+
+        int bitsPerEntry = getBitsPerEntry(palette.size());
+        int entriesPerLong = 64 / bitsPerEntry;
+        long[] packedIndices = new long[(indices.length + entriesPerLong - 1) / entriesPerLong];
+
+        for (int i = 0; i < indices.length; i++) {
+            packedIndices[i / entriesPerLong] |= (long) indices[i] << ((i % entriesPerLong) * bitsPerEntry);
+        }
+
+        for (long value : packedIndices) {
+            outStream.writeLong(value);
+        }
+    }
+
+    /**
+     * Writes the light of a section. Sections where every block has the same light level,
+     * like fully lit or fully dark ones, only store that level.
+     *
+     * @param light The light of the section, or <code>null</code> to not store any.
+     */
+    public static void writeLight(DataOutputStream outStream, NibbleArray light) throws IOException {
+        if (light == null) {
+            outStream.writeByte(LIGHT_NONE);
+            return;
+        }
+
+        byte[] backing = light.getBacking();
+
+        if (isUniform(backing)) {
+            outStream.writeByte(LIGHT_UNIFORM);
+            outStream.writeByte(backing[0] & 0xF);
+        } else {
+            outStream.writeByte(LIGHT_FULL);
+            outStream.write(backing);
+        }
+    }
+
+    /**
+     * Compresses a single chunk into its own frame. Sections that are already in the section
+     * table, or that other chunks being encoded share, are left out of the frame.
+     *
+     * @param sections The serialized sections of the chunk.
+     * @param sectionCounts How many of the chunks being encoded use each section, by hash.
+     * @return The frame of the chunk, or <code>null</code> if the chunk is empty.
+     */
+    public static EncodedSlimeChunk encodeChunk(SlimeChunk chunk, byte[][] sections, byte worldVersion, SegmentCompression compression,
+                                                CompressionDictionary dictionary, BlockPalette blockPalette, SectionTable sectionTable,
+                                                Map<Long, Integer> sectionCounts) throws IOException {
+        if (Arrays.stream(sections).allMatch(Objects::isNull)) {
+            return null;
+        }
+
+        int sharedSectionMask = 0;
+        int[] sharedSections = new int[sections.length];
+        int sharedSectionCount = 0;
+
+        for (int i = 0; i < sections.length; i++) {
+            if (sections[i] == null) {
+                continue;
+            }
+
+            int index = sectionTable.indexOf(sections[i]);
+
+            if (index == -1 && sectionCounts.getOrDefault(XXHash64.hash(sections[i]), 0) > 1) {
+                index = sectionTable.add(sections[i]);
+            }
+
+            if (index != -1) {
+                sharedSectionMask |= 1 << i;
+                sharedSections[sharedSectionCount++] = index;
+            }
+        }
+
+        CompressionPool.ScratchOutputStream chunkByteStream = CompressionPool.getSerializeStream();
+        serializeChunk(new DataOutputStream(chunkByteStream), chunk, sections, sharedSectionMask, worldVersion);
+
+        int chunkDataLength = chunkByteStream.size();
+        byte[] compressedChunkData = CompressionPool.compress(chunkByteStream.getBuffer(), 0, chunkDataLength, compression, dictionary);
+
+        return new EncodedSlimeChunk(chunk.getX(), chunk.getZ(), compressedChunkData, chunkDataLength, worldVersion,
+                SlimeFormat.SLIME_VERSION, compression, dictionary, blockPalette, sectionTable, sharedSectionMask,
+                Arrays.copyOf(sharedSections, sharedSectionCount));
+    }
+
+    /**
+     * Writes a chunk without its sections from the section table.
+     *
+     * @param sections The serialized sections of the chunk.
+     * @param sharedSectionMask The sections that are stored in the section table.
+     */
+    public static void serializeChunk(DataOutputStream outStream, SlimeChunk chunk, byte[][] sections, int sharedSectionMask,
+                                      byte worldVersion) throws IOException {
+        // Height Maps
+        if (worldVersion >= 0x04) {
+            ChunkSerializer.writeHeightMaps(outStream, chunk.getHeightMaps());
+        } else {
+            int[] heightMap = chunk.getHeightMaps().getIntArrayValue("heightMap").get();
+
+            for (int i = 0; i < 256; i++) {
+                outStream.writeInt(heightMap[i]);
+            }
+        }
+
+        // Biomes
+        int[] biomes = chunk.getBiomes();
+
+        if (worldVersion >= 0x04) {
+            ChunkSerializer.writeBiomes(outStream, biomes);
+        } else {
+            for (int biome : biomes) {
+                outStream.writeInt(biome);
+            }
+        }
+
+        // Chunk sections
+        BitSet sectionBitmask = new BitSet(16);
+
+        for (int i = 0; i < sections.length; i++) {
+            sectionBitmask.set(i, sections[i] != null);
+        }
+
+        writeBitSetAsBytes(outStream, sectionBitmask, 2);
+
+        for (int i = 0; i < sections.length; i++) {
+            if (sections[i] != null && (sharedSectionMask & (1 << i)) == 0) {
+                outStream.write(sections[i]);
+            }
+        }
+    }
+
+    /**
+     * Serializes the sections of a chunk. Chunks backed by a server chunk write them directly when they can.
+     */
+    public static byte[][] serializeSections(SlimeChunk chunk, byte worldVersion, BlockPalette blockPalette,
+                                             boolean saveLight) throws IOException {
+        if (chunk instanceof DirectSerializableChunk && worldVersion >= 0x04) {
+            return ((DirectSerializableChunk) chunk).serializeSections(blockPalette, saveLight);
+        }
+
+        return serializeSections(chunk.getSections(), worldVersion, blockPalette, saveLight);
+    }
+
+    public static byte[][] serializeSections(SlimeChunkSection[] sections, byte worldVersion, BlockPalette blockPalette,
+                                             boolean saveLight) throws IOException {
+        byte[][] serializedSections = new byte[sections.length][];
+
+        for (int i = 0; i < sections.length; i++) {
+            if (sections[i] != null) {
+                ByteArrayOutputStream sectionByteStream = new ByteArrayOutputStream();
+                serializeSection(new DataOutputStream(sectionByteStream), sections[i], worldVersion, blockPalette, saveLight);
+                serializedSections[i] = sectionByteStream.toByteArray();
+            }
+        }
+
+        return serializedSections;
+    }
+
+    private static void serializeSection(DataOutputStream outStream, SlimeChunkSection slimeSection, byte worldVersion,
+                                         BlockPalette blockPalette, boolean saveLight) throws IOException {
+        CraftSlimeChunkSection section = CraftSlimeChunkSection.of(slimeSection);
+
+        // Block Light
+        ChunkSerializer.writeLight(outStream, saveLight ? section.getSharedBlockLight() : null);
+
+        // Block Data
+        if (worldVersion >= 0x04) {
+            List<CompoundTag> palette = section.getSharedPalette().getValue();
+            int[] paletteIds = new int[palette.size()];
+
+            for (int i = 0; i < paletteIds.length; i++) {
+                paletteIds[i] = blockPalette.getId(palette.get(i));
+            }
+
+            writeBlockData(outStream, paletteIds, section.getSharedBlockStates());
+        } else {
+            outStream.write(section.getSharedBlocks());
+            outStream.write(section.getSharedData().getBacking());
+        }
+
+        // Sky Light
+        ChunkSerializer.writeLight(outStream, saveLight ? section.getSharedSkyLight() : null);
+    }
+
+    /**
+     * Writes the block data of a 1.13+ section: its palette, as ids of the world's block palette, and its block states.
+     */
+    public static void writeBlockData(DataOutputStream outStream, int[] paletteIds, long[] blockStates) throws IOException {
+        writeVarInt(outStream, paletteIds.length);
+
+        for (int id : paletteIds) {
+            writeVarInt(outStream, id);
+        }
+
+        outStream.writeInt(blockStates.length);
+
+        for (long value : blockStates) {
+            outStream.writeLong(value);
+        }
+    }
+
+    /**
+     * Packs the palette indices of the 4096 blocks of a section into block states, the way 1.16+ sections store
+     * them: as many whole indices as fit into each long, using at least 4 bits for each of them.
+     */
+    public static long[] packBlockStates(int[] indices, int paletteSize) {
+        int bits = getBlockStateBits(paletteSize);
+        int valuesPerLong = 64 / bits;
+        long[] blockStates = new long[(indices.length + valuesPerLong - 1) / valuesPerLong];
+
+        for (int i = 0; i < indices.length; i++) {
+            blockStates[i / valuesPerLong] |= (long) indices[i] << (i % valuesPerLong * bits);
+        }
+
+        return blockStates;
+    }
+
+    /**
+     * Returns the amount of bits 1.16+ sections use for each block, given the size of their palette.
+     */
+    public static int getBlockStateBits(int paletteSize) {
+        return Math.max(4, 32 - Integer.numberOfLeadingZeros(Math.max(paletteSize, 1) - 1));
+    }
+
+    public static void writeVarInt(DataOutputStream outStream, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            outStream.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        outStream.writeByte(value);
+    }
+
+    static void writeBitSetAsBytes(DataOutputStream outStream, BitSet set, int fixedSize) throws IOException {
+        byte[] array = set.toByteArray();
+        outStream.write(array);
+
+        int chunkMaskPadding = fixedSize - array.length;
+
+        for (int i = 0; i < chunkMaskPadding; i++) {
+            outStream.write(0);
+        }
+    }
+
+    static int getBitsPerEntry(int paletteSize) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(paletteSize - 1));
+    }
+
+    private static boolean isUniform(byte[] light) {
+        byte value = light[0];
+
+        if ((value & 0xF) != ((value >> 4) & 0xF)) {
+            return false;
+        }
+
+        for (byte b : light) {
+            if (b != value) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int getHeightMapType(String name) {
+        for (int type = 1; type < HEIGHT_MAP_TYPES.length; type++) {
+            if (HEIGHT_MAP_TYPES[type].equals(name)) {
+                return type;
+            }
+        }
+
+        return 0;
+    }
+}
@@ -0,0 +1,102 @@
+package com.grinderwolf.swm.nms;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures how small and how fast each compression setting makes the chunks of a world. How
+ * well a world compresses depends on what's in it, so settings are best compared on real worlds.
+ */
+public class CompressionBenchmark {
+
+    /** Settings compared when no others are given **/
+    public static final List<String> DEFAULT_SETTINGS = Collections.unmodifiableList(Arrays.asList("none", "lz4", "lz4:9",
+            "zstd:-5", "zstd:1", "zstd:3", "zstd:9", "zstd:19"));
+
+    // Every setting goes through the samples this many times, and only the fastest run counts, so the JIT warming up doesn't skew the first ones
+    private static final int RUNS = 3;
+
+    /**
+     * Compresses and decompresses the given samples with every setting.
+     *
+     * @param samples The uncompressed chunks, as returned by {@link CraftSlimeWorld#getDictionarySamples()}.
+     * @param dictionary The dictionary zstd settings use, or <code>null</code> to not use any.
+     * @return The results, in the same order as the settings.
+     * @throws IOException if a sample doesn't decompress back to its original size.
+     */
+    public static List<Result> run(List<byte[]> samples, List<SegmentCompression> settings, CompressionDictionary dictionary) throws IOException {
+        long uncompressedSize = samples.stream().mapToLong(sample -> sample.length).sum();
+        List<Result> results = new ArrayList<>(settings.size());
+
+        for (SegmentCompression compression : settings) {
+            byte[][] compressedSamples = new byte[samples.size()][];
+            long compressNanos = Long.MAX_VALUE;
+            long decompressNanos = Long.MAX_VALUE;
+
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+
+                for (int i = 0; i < compressedSamples.length; i++) {
+                    byte[] sample = samples.get(i);
+                    compressedSamples[i] = CompressionPool.compress(sample, 0, sample.length, compression, dictionary);
+                }
+
+                compressNanos = Math.min(compressNanos, System.nanoTime() - start);
+                start = System.nanoTime();
+
+                for (int i = 0; i < compressedSamples.length; i++) {
+                    CompressionPool.decompress(compressedSamples[i], samples.get(i).length, compression, dictionary);
+                }
+
+                decompressNanos = Math.min(decompressNanos, System.nanoTime() - start);
+            }
+
+            long compressedSize = Arrays.stream(compressedSamples).mapToLong(sample -> sample.length).sum();
+            results.add(new Result(compression, uncompressedSize, compressedSize, compressNanos, decompressNanos));
+        }
+
+        return results;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Result {
+
+        private final SegmentCompression compression;
+        private final long uncompressedSize;
+        private final long compressedSize;
+        private final long compressNanos;
+        private final long decompressNanos;
+
+        /**
+         * Returns the compressed size as a fraction of the uncompressed one.
+         */
+        public double getRatio() {
+            return uncompressedSize == 0 ? 1 : (double) compressedSize / uncompressedSize;
+        }
+
+        /**
+         * Returns how many uncompressed megabytes were compressed per second.
+         */
+        public double getCompressSpeed() {
+            return getSpeed(compressNanos);
+        }
+
+        /**
+         * Returns how many uncompressed megabytes were decompressed per second.
+         */
+        public double getDecompressSpeed() {
+            return getSpeed(decompressNanos);
+        }
+
+        private double getSpeed(long nanos) {
+            return nanos == 0 ? 0 : uncompressedSize / (1024.0 * 1024) / (nanos / 1e9);
+        }
+    }
+}
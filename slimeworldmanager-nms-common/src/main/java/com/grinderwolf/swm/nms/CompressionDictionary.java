@@ -0,0 +1,65 @@
+package com.grinderwolf.swm.nms;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A trained zstd dictionary. Worlds cloned from the same templates share most
+ * of their data, so compressing them with a dictionary trained on those worlds
+ * gives much smaller chunk frames than compressing every frame on its own.
+ */
+@Getter
+public class CompressionDictionary {
+
+    /** zstd recommends training with around a hundred times as much data as the dictionary size **/
+    public static final int SAMPLES_SIZE_RATIO = 100;
+
+    private final int id;
+    private final byte[] data;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final ZstdDictDecompress decompressDictionary;
+
+    public CompressionDictionary(byte[] data) {
+        this.id = (int) Zstd.getDictIdFromDict(data);
+
+        if (id == 0) {
+            throw new IllegalArgumentException("Not a zstd dictionary");
+        }
+
+        this.data = data;
+        this.decompressDictionary = new ZstdDictDecompress(data);
+    }
+
+    /**
+     * Trains a new dictionary from the given samples.
+     *
+     * @param samples The samples, usually uncompressed chunk frames.
+     * @param dictionarySize The maximum size of the dictionary.
+     * @return The trained dictionary.
+     * @throws IOException if there isn't enough data to train a dictionary.
+     */
+    public static CompressionDictionary train(List<byte[]> samples, int dictionarySize) throws IOException {
+        long samplesSize = samples.stream().mapToLong(sample -> sample.length).sum();
+        long maxSamplesSize = (long) dictionarySize * SAMPLES_SIZE_RATIO;
+        ZstdDictTrainer trainer = new ZstdDictTrainer((int) Math.min(samplesSize, maxSamplesSize), dictionarySize);
+
+        for (byte[] sample : samples) {
+            if (!trainer.addSample(sample)) {
+                break;
+            }
+        }
+
+        try {
+            return new CompressionDictionary(trainer.trainSamples());
+        } catch (RuntimeException ex) { // zstd reports training errors as unchecked exceptions
+            throw new IOException("Failed to train dictionary from " + samples.size() + " samples", ex);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.grinderwolf.swm.nms;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-thread zstd contexts and scratch buffers, so saving and loading
+ * worlds doesn't allocate new ones for every segment and chunk. LZ4
+ * compressors are stateless, so they're shared by every thread.
+ */
+public class CompressionPool {
+
+    // Buffers bigger than this are used once and then left to the GC, so a single huge world doesn't pin memory forever
+    private static final int MAX_RETAINED_BUFFER_SIZE = 16 * 1024 * 1024;
+
+    private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestInstance();
+
+    private static final ThreadLocal<ZstdCompressCtx> COMPRESS_CONTEXT = ThreadLocal.withInitial(ZstdCompressCtx::new);
+    private static final ThreadLocal<ZstdDecompressCtx> DECOMPRESS_CONTEXT = ThreadLocal.withInitial(ZstdDecompressCtx::new);
+
+    // Contexts with a dictionary loaded into them, by dictionary ID (and compression level)
+    private static final ThreadLocal<Map<Long, ZstdCompressCtx>> DICTIONARY_COMPRESS_CONTEXTS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<Integer, ZstdDecompressCtx>> DICTIONARY_DECOMPRESS_CONTEXTS = ThreadLocal.withInitial(HashMap::new);
+
+    private static final ThreadLocal<byte[]> COMPRESS_BUFFER = ThreadLocal.withInitial(() -> new byte[0]);
+    private static final ThreadLocal<byte[]> DECOMPRESS_BUFFER = ThreadLocal.withInitial(() -> new byte[0]);
+    private static final ThreadLocal<ScratchOutputStream> SERIALIZE_STREAM = ThreadLocal.withInitial(() -> new ScratchOutputStream(16384));
+
+    /**
+     * Compresses part of an array using this thread's context.
+     *
+     * @return A new array holding just the compressed data.
+     */
+    public static byte[] compress(byte[] src, int offset, int length) {
+        return compress(src, offset, length, SegmentCompression.DEFAULT, null);
+    }
+
+    /**
+     * Compresses part of an array using this thread's context for the given codec and dictionary.
+     *
+     * @param compression The codec and level to compress the data with.
+     * @param dictionary The dictionary to compress the data with, or <code>null</code> to not use any. LZ4 ignores it.
+     * @return A new array holding just the compressed data.
+     */
+    public static byte[] compress(byte[] src, int offset, int length, SegmentCompression compression, CompressionDictionary dictionary) {
+        if (compression.getCodec() == SegmentCompression.Codec.NONE) {
+            return Arrays.copyOfRange(src, offset, offset + length);
+        }
+
+        if (compression.getCodec() == SegmentCompression.Codec.LZ4) {
+            LZ4Compressor compressor = compression.getLevel() == 0 ? LZ4_FACTORY.fastCompressor() : LZ4_FACTORY.highCompressor(compression.getLevel());
+            byte[] dst = getBuffer(COMPRESS_BUFFER, compressor.maxCompressedLength(length));
+            int compressedLength = compressor.compress(src, offset, length, dst, 0, dst.length);
+
+            return Arrays.copyOf(dst, compressedLength);
+        }
+
+        byte[] dst = getBuffer(COMPRESS_BUFFER, (int) Zstd.compressBound(length));
+        int compressedLength = getCompressContext(compression.getLevel(), dictionary).compressByteArray(dst, 0, dst.length, src, offset, length);
+
+        return Arrays.copyOf(dst, compressedLength);
+    }
+
+    /**
+     * Decompresses the given data into this thread's scratch buffer. The returned
+     * buffer is only valid until the next call to this method on the same thread.
+     *
+     * @param src The compressed data.
+     * @param length The size of the data once decompressed.
+     * @return A {@link ByteBuffer} wrapping exactly the decompressed data.
+     * @throws IOException if the data doesn't decompress to the expected size.
+     */
+    public static ByteBuffer decompress(byte[] src, int length) throws IOException {
+        return decompress(src, length, SegmentCompression.DEFAULT, null);
+    }
+
+    /**
+     * Decompresses the given data into this thread's scratch buffer, using the given codec and dictionary.
+     * Uncompressed data is wrapped as it is.
+     *
+     * @param compression The codec the data was compressed with.
+     * @param dictionary The dictionary the data was compressed with, or <code>null</code> if it wasn't.
+     * @see #decompress(byte[], int)
+     */
+    public static ByteBuffer decompress(byte[] src, int length, SegmentCompression compression, CompressionDictionary dictionary) throws IOException {
+        if (length < 0) {
+            throw new IOException("Invalid decompressed size " + length);
+        }
+
+        if (compression.getCodec() == SegmentCompression.Codec.NONE) {
+            if (src.length != length) {
+                throw new IOException("Expected " + length + " uncompressed bytes, got " + src.length);
+            }
+
+            return ByteBuffer.wrap(src);
+        }
+
+        byte[] dst = getBuffer(DECOMPRESS_BUFFER, length);
+
+        if (compression.getCodec() == SegmentCompression.Codec.LZ4) {
+            try {
+                // LZ4 blocks don't store their size, the safe decompressor checks the data against the expected one
+                int decompressedLength = LZ4_FACTORY.safeDecompressor().decompress(src, 0, src.length, dst, 0, length);
+
+                if (decompressedLength != length) {
+                    throw new IOException("Expected " + length + " decompressed bytes, got " + decompressedLength);
+                }
+            } catch (LZ4Exception ex) {
+                throw new IOException("Malformed LZ4 data", ex);
+            }
+
+            return ByteBuffer.wrap(dst, 0, length);
+        }
+
+        int decompressedLength;
+
+        try {
+            decompressedLength = getDecompressContext(dictionary).decompressByteArray(dst, 0, length, src, 0, src.length);
+        } catch (ZstdException ex) {
+            throw new IOException("Malformed zstd data", ex);
+        }
+
+        if (decompressedLength != length) {
+            throw new IOException("Expected " + length + " decompressed bytes, got " + decompressedLength);
+        }
+
+        return ByteBuffer.wrap(dst, 0, length);
+    }
+
+    /**
+     * Returns this thread's serialization stream, emptied and ready to be written to.
+     */
+    public static ScratchOutputStream getSerializeStream() {
+        ScratchOutputStream stream = SERIALIZE_STREAM.get();
+
+        if (stream.getBuffer().length > MAX_RETAINED_BUFFER_SIZE) {
+            stream = new ScratchOutputStream(16384);
+            SERIALIZE_STREAM.set(stream);
+        }
+
+        stream.reset();
+
+        return stream;
+    }
+
+    private static ZstdCompressCtx getCompressContext(int level, CompressionDictionary dictionary) {
+        if (dictionary == null) {
+            return COMPRESS_CONTEXT.get().setLevel(level);
+        }
+
+        // The raw dictionary is loaded instead of a digested one, as those come with their own compression level
+        long key = ((long) dictionary.getId() << 32) | (level & 0xFFFFFFFFL);
+
+        return DICTIONARY_COMPRESS_CONTEXTS.get().computeIfAbsent(key,
+                id -> new ZstdCompressCtx().setLevel(level).loadDict(dictionary.getData()));
+    }
+
+    private static ZstdDecompressCtx getDecompressContext(CompressionDictionary dictionary) {
+        if (dictionary == null) {
+            return DECOMPRESS_CONTEXT.get();
+        }
+
+        return DICTIONARY_DECOMPRESS_CONTEXTS.get().computeIfAbsent(dictionary.getId(),
+                id -> new ZstdDecompressCtx().loadDict(dictionary.getDecompressDictionary()));
+    }
+
+    private static byte[] getBuffer(ThreadLocal<byte[]> threadLocal, int size) {
+        byte[] buffer = threadLocal.get();
+
+        if (buffer.length < size) {
+            buffer = new byte[size];
+
+            if (size <= MAX_RETAINED_BUFFER_SIZE) {
+                threadLocal.set(buffer);
+            }
+        }
+
+        return buffer;
+    }
+
+    /**
+     * A {@link ByteArrayOutputStream} whose backing array can be read without copying it.
+     */
+    public static class ScratchOutputStream extends ByteArrayOutputStream {
+
+        public ScratchOutputStream(int size) {
+            super(size);
+        }
+
+        public byte[] getBuffer() {
+            return buf;
+        }
+    }
+}
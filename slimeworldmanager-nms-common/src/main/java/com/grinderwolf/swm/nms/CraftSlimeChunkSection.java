@@ -4,10 +4,14 @@ import com.flowpowered.nbt.CompoundTag;
 import com.flowpowered.nbt.ListTag;
 import com.grinderwolf.swm.api.utils.NibbleArray;
 import com.grinderwolf.swm.api.world.SlimeChunkSection;
-import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
-@Getter
+/**
+ * A chunk section that can't be changed once created. The same instance can be used by several chunks
+ * and worlds, like sections from the section table or from a clone template, so the getters of
+ * {@link SlimeChunkSection} hand out copies. Code that only reads a section uses the <code>getShared</code>
+ * getters instead, which return the section's own data and must never be used to modify it.
+ */
 @RequiredArgsConstructor
 public class CraftSlimeChunkSection implements SlimeChunkSection {
 
@@ -21,4 +25,79 @@ public class CraftSlimeChunkSection implements SlimeChunkSection {
 
     private final NibbleArray blockLight;
     private final NibbleArray skyLight;
+
+    /**
+     * Returns the given section if it's a {@link CraftSlimeChunkSection}, or an
+     * unshared copy of it otherwise, so it can be read through the shared getters.
+     */
+    public static CraftSlimeChunkSection of(SlimeChunkSection section) {
+        if (section == null || section instanceof CraftSlimeChunkSection) {
+            return (CraftSlimeChunkSection) section;
+        }
+
+        return new CraftSlimeChunkSection(section.getBlocks(), section.getData(), section.getPalette(), section.getBlockStates(),
+                section.getBlockLight(), section.getSkyLight());
+    }
+
+    @Override
+    public byte[] getBlocks() {
+        return blocks == null ? null : blocks.clone();
+    }
+
+    @Override
+    public NibbleArray getData() {
+        return copy(data);
+    }
+
+    @Override
+    public ListTag<CompoundTag> getPalette() {
+        return palette == null ? null : palette.clone();
+    }
+
+    @Override
+    public long[] getBlockStates() {
+        return blockStates == null ? null : blockStates.clone();
+    }
+
+    @Override
+    public NibbleArray getBlockLight() {
+        return copy(blockLight);
+    }
+
+    @Override
+    public NibbleArray getSkyLight() {
+        return copy(skyLight);
+    }
+
+    public byte[] getSharedBlocks() {
+        return blocks;
+    }
+
+    public NibbleArray getSharedData() {
+        return data;
+    }
+
+    /**
+     * Returns the palette of this section without copying it. Palettes decoded from a slime file use the
+     * tags of the world's {@link BlockPalette}, so neither the list nor its entries can be modified.
+     */
+    public ListTag<CompoundTag> getSharedPalette() {
+        return palette;
+    }
+
+    public long[] getSharedBlockStates() {
+        return blockStates;
+    }
+
+    public NibbleArray getSharedBlockLight() {
+        return blockLight;
+    }
+
+    public NibbleArray getSharedSkyLight() {
+        return skyLight;
+    }
+
+    private static NibbleArray copy(NibbleArray array) {
+        return array == null ? null : new NibbleArray(array.getBacking().clone());
+    }
 }
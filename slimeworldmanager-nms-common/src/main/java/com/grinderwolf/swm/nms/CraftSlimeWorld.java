@@ -1,9 +1,6 @@
 package com.grinderwolf.swm.nms;
 
 import com.flowpowered.nbt.*;
-import com.flowpowered.nbt.stream.NBTInputStream;
-import com.flowpowered.nbt.stream.NBTOutputStream;
-import com.github.luben.zstd.Zstd;
 import com.grinderwolf.swm.api.exceptions.WorldAlreadyExistsException;
 import com.grinderwolf.swm.api.loaders.SlimeLoader;
 import com.grinderwolf.swm.api.utils.SlimeFormat;
@@ -14,49 +11,553 @@ import org.bukkit.Bukkit;
 import org.bukkit.Difficulty;
 
 import java.io.*;
-import java.nio.ByteOrder;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.grinderwolf.swm.api.world.properties.SlimeProperties.*;
 
 @Getter
 @Setter
-@AllArgsConstructor
 public class CraftSlimeWorld implements SlimeWorld {
 
+    // Section tables smaller than this are never compacted
+    private static final int MIN_COMPACTED_SECTION_TABLE_SIZE = 64;
+
     private SlimeLoader loader;
     private final String name;
-    private final Map<Long, SlimeChunk> chunks;
+    private final ChunkMap<SlimeChunk> chunks;
+
+    // Chunks that haven't been requested yet, kept in their compressed form
+    @Getter(AccessLevel.NONE)
+    private final ChunkMap<EncodedSlimeChunk> encodedChunks = new ChunkMap<>();
+
+    // Frames from the last save, for chunks that haven't changed since then
+    @Getter(AccessLevel.NONE)
+    private final ChunkMap<EncodedSlimeChunk> cachedFrames = new ChunkMap<>();
+    @Getter(AccessLevel.NONE)
+    private final Set<Long> dirtyChunks = new HashSet<>();
+
+    // When each chunk was first found not to be in use by the server
+    @Getter(AccessLevel.NONE)
+    private final ChunkMap<Long> idleSince = new ChunkMap<>();
+
+    // Memory estimates of the chunks that haven't changed since they were last measured
+    @Getter(AccessLevel.NONE)
+    private final ChunkMap<MemoryEstimator.ChunkUsage> chunkMemoryUsage = new ChunkMap<>();
+
+    // Times a chunk was marked dirty, so estimates made while chunks changed aren't cached
+    @Getter(AccessLevel.NONE)
+    private volatile long chunkChanges;
+
     private final CompoundTag extraData;
     private final List<CompoundTag> worldMaps;
 
     private byte version;
 
+    // Dictionary the chunks and NBT segments are compressed with, null if they aren't
+    private volatile CompressionDictionary dictionary;
+
     private final SlimePropertyMap propertyMap;
 
     private final boolean readOnly;
 
     private final boolean locked;
 
+    // Hash of the last payload written to the loader, so saves that wouldn't change anything can be skipped
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<Long> savedHash = new AtomicReference<>();
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong skippedSaves = new AtomicLong();
+
+    // Sections shared by several chunks, which are stored once instead of inside every chunk using them
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<SectionTable> sectionTable = new AtomicReference<>(new SectionTable());
+
+    // Block states of the world, referred to by id from every section
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<BlockPalette> blockPalette = new AtomicReference<>(new BlockPalette());
+
+    // World this one was cloned from. Chunks that aren't in this world are read from it, so clones
+    // share the template's chunks until they replace them with their own
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private CraftSlimeWorld template;
+
+    // Frozen copy of this world handed out as the template of its clones, until this world changes
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private CraftSlimeWorld cloneTemplate;
+
+    // Whether this world is a clone template, whose chunks can't be changed anymore
+    @Setter(AccessLevel.NONE)
+    private boolean frozen;
+
+    public CraftSlimeWorld(SlimeLoader loader, String name, Map<Long, SlimeChunk> chunks, CompoundTag extraData,
+                           List<CompoundTag> worldMaps, byte version, CompressionDictionary dictionary, SlimePropertyMap propertyMap,
+                           boolean readOnly, boolean locked) {
+        this.loader = loader;
+        this.name = name;
+        this.chunks = new ChunkMap<>(chunks.size());
+        this.extraData = extraData;
+        this.worldMaps = worldMaps;
+        this.version = version;
+        this.dictionary = dictionary;
+        this.propertyMap = propertyMap;
+        this.readOnly = readOnly;
+        this.locked = locked;
+
+        for (SlimeChunk chunk : chunks.values()) {
+            this.chunks.put(getKey(chunk), chunk);
+        }
+    }
+
+    /**
+     * Returns the chunk at the given coordinates. Chunks of a clone that are still read from its template
+     * are shared with the template and every other clone, so they can't be modified. They have to be
+     * replaced through {@link #updateChunk(SlimeChunk)} instead, which gives this world its own copy.
+     */
     @Override
     public SlimeChunk getChunk(int x, int z) {
+        SlimeChunk chunk = getOwnChunk(x, z);
+
+        if (chunk == null && template != null) {
+            SlimeChunk templateChunk = template.getTemplateChunk(x, z);
+
+            if (templateChunk != null) {
+                chunk = new ReadOnlySlimeChunk(name, templateChunk);
+            }
+        }
+
+        return chunk;
+    }
+
+    /**
+     * Returns a chunk of this clone template, or of the template it was cloned from. Template chunks
+     * never change, so they're returned as they are, and only clones wrap them to hand them out.
+     */
+    private SlimeChunk getTemplateChunk(int x, int z) {
+        SlimeChunk chunk = getOwnChunk(x, z);
+
+        return chunk == null && template != null ? template.getTemplateChunk(x, z) : chunk;
+    }
+
+    private SlimeChunk getOwnChunk(int x, int z) {
+        long index = ChunkMap.getKey(x, z);
+
+        // Loaded chunks can be looked up without locking, unless they have to stop being idle
+        SlimeChunk chunk = chunks.get(index);
+
+        if (chunk != null && !idleSince.containsKey(index)) {
+            return chunk;
+        }
+
         synchronized (chunks) {
-            Long index = (((long) z) * Integer.MAX_VALUE + ((long) x));
+            chunk = chunks.get(index);
+
+            if (chunk == null) {
+                EncodedSlimeChunk encodedChunk = encodedChunks.remove(index);
 
-            return chunks.get(index);
+                if (encodedChunk != null) {
+                    chunk = loadEncodedChunk(index, encodedChunk);
+                }
+            }
+
+            // Whoever asked for the chunk may be about to use it, so it can't be compressed anymore
+            idleSince.remove(index);
+        }
+
+        return chunk;
+    }
+
+    /**
+     * Returns every chunk of this world, decoding the ones that haven't been requested yet. The
+     * chunks of a clone that are still read from its template can't be modified, just like the
+     * ones returned by {@link #getChunk(int, int)}.
+     *
+     * @return A {@link ChunkMap} containing all the chunks of this world.
+     */
+    public ChunkMap<SlimeChunk> getChunks() {
+        synchronized (chunks) {
+            loadEncodedChunks();
+
+            if (template == null) {
+                return chunks;
+            }
+        }
+
+        ChunkMap<SlimeChunk> templateChunks = new ChunkMap<>();
+        template.addTemplateChunks(templateChunks);
+
+        synchronized (chunks) {
+            ChunkMap<SlimeChunk> allChunks = new ChunkMap<>(chunks.size() + templateChunks.size());
+
+            for (SlimeChunk chunk : templateChunks) {
+                if (!chunks.containsKey(getKey(chunk))) {
+                    allChunks.put(getKey(chunk), new ReadOnlySlimeChunk(name, chunk));
+                }
+            }
+
+            allChunks.putAll(chunks);
+
+            return allChunks;
+        }
+    }
+
+    /**
+     * Adds the chunks of this clone template, and of the template it was cloned
+     * from, to the given map, unless there's already a chunk at their coordinates.
+     */
+    private void addTemplateChunks(ChunkMap<SlimeChunk> templateChunks) {
+        synchronized (chunks) {
+            loadEncodedChunks();
+
+            for (SlimeChunk chunk : chunks) {
+                if (!templateChunks.containsKey(getKey(chunk))) {
+                    templateChunks.put(getKey(chunk), chunk);
+                }
+            }
+        }
+
+        if (template != null) {
+            template.addTemplateChunks(templateChunks);
+        }
+    }
+
+    private void loadEncodedChunks() {
+        for (EncodedSlimeChunk encodedChunk : encodedChunks) {
+            loadEncodedChunk(getKey(encodedChunk), encodedChunk);
+        }
+
+        encodedChunks.clear();
+    }
+
+    private SlimeChunk loadEncodedChunk(long index, EncodedSlimeChunk encodedChunk) {
+        SlimeChunk chunk = decodeChunk(encodedChunk);
+        chunks.put(index, chunk);
+
+        // Chunks of a clone template never change, so the frame they were read from can be saved as it is
+        if (frozen) {
+            cachedFrames.put(index, encodedChunk.withoutEntities());
+        }
+
+        return chunk;
+    }
+
+    public void addEncodedChunks(Collection<EncodedSlimeChunk> encodedChunks) {
+        synchronized (chunks) {
+            for (EncodedSlimeChunk encodedChunk : encodedChunks) {
+                this.encodedChunks.put(getKey(encodedChunk), encodedChunk);
+            }
+        }
+    }
+
+    private SlimeChunk decodeChunk(EncodedSlimeChunk encodedChunk) {
+        try {
+            return encodedChunk.decode(name);
+        } catch (IOException | BufferUnderflowException ex) {
+            throw new IllegalStateException("Failed to decode chunk (" + encodedChunk.getX() + ", " + encodedChunk.getZ()
+                    + ") of world '" + name + "'", ex);
         }
     }
 
     public void updateChunk(SlimeChunk chunk) {
+        checkNotFrozen();
+
         if (!chunk.getWorldName().equals(getName())) {
             throw new IllegalArgumentException("Chunk (" + chunk.getX() + ", " + chunk.getZ() + ") belongs to world '"
                     + chunk.getWorldName() + "', not to '" + getName() + "'!");
         }
 
         synchronized (chunks) {
-            chunks.put(((long) chunk.getZ()) * Integer.MAX_VALUE + ((long) chunk.getX()), chunk);
+            long index = getKey(chunk);
+
+            encodedChunks.remove(index);
+            chunks.put(index, chunk);
+            markChunkDirty(index);
+        }
+    }
+
+    /**
+     * Marks a chunk as modified, so it gets serialized again on the next save.
+     *
+     * @param x The X coordinate of the chunk.
+     * @param z The Z coordinate of the chunk.
+     */
+    public void markChunkDirty(int x, int z) {
+        checkNotFrozen();
+
+        synchronized (chunks) {
+            markChunkDirty(ChunkMap.getKey(x, z));
+        }
+    }
+
+    private void markChunkDirty(long index) {
+        cachedFrames.remove(index);
+        dirtyChunks.add(index);
+        idleSince.remove(index);
+        chunkMemoryUsage.remove(index);
+        chunkChanges++;
+        cloneTemplate = null;
+    }
+
+    /**
+     * Returns the chunks of this world that the next save will have to encode again, because
+     * they changed since the last save or their frame can't be copied as it is.
+     *
+     * @return The chunks to encode, not including the ones read from a template.
+     */
+    public List<SlimeChunk> getChangedChunks() {
+        SegmentCompression chunkCompression = SegmentCompression.parse(propertyMap.getValue(CHUNK_COMPRESSION));
+        CompressionDictionary dictionary = this.dictionary;
+        BlockPalette blockPalette = this.blockPalette.get();
+        List<SlimeChunk> changedChunks = new ArrayList<>();
+
+        synchronized (chunks) {
+            for (SlimeChunk chunk : chunks) {
+                EncodedSlimeChunk frame = cachedFrames.get(getKey(chunk));
+
+                if (frame == null || !canCopyFrame(frame, chunkCompression, dictionary, blockPalette)) {
+                    changedChunks.add(chunk);
+                }
+            }
+        }
+
+        return changedChunks;
+    }
+
+    /**
+     * Checks which chunks of this world the server isn't using anymore. Chunks found unused
+     * for the first time are considered idle from now on, until they're used again.
+     *
+     * @param inUse Tells whether the server is currently using a chunk.
+     * @return The idle chunks, from the one that has been idle the longest.
+     */
+    public List<IdleChunk> updateIdleChunks(Predicate<SlimeChunk> inUse) {
+        long now = System.currentTimeMillis();
+        List<IdleChunk> idleChunks = new ArrayList<>();
+
+        synchronized (chunks) {
+            for (SlimeChunk chunk : chunks) {
+                long index = getKey(chunk);
+
+                if (inUse.test(chunk)) {
+                    idleSince.remove(index);
+                    continue;
+                }
+
+                Long since = idleSince.get(index);
+
+                if (since == null) {
+                    since = now;
+                    idleSince.put(index, since);
+                }
+
+                idleChunks.add(new IdleChunk(chunk, since));
+            }
+        }
+
+        idleChunks.sort(Comparator.comparingLong(IdleChunk::getIdleSince));
+
+        return idleChunks;
+    }
+
+    /**
+     * Copies the state of idle chunks backed by a server chunk, so they can be encoded
+     * off the main thread. Must be called from the main thread.
+     *
+     * @param idleChunks The chunks that are going to be compressed.
+     * @throws IOException if the sections of a chunk could not be serialized.
+     */
+    public void captureChunks(List<IdleChunk> idleChunks) throws IOException {
+        BlockPalette blockPalette = this.blockPalette.get();
+        boolean saveLight = propertyMap.getValue(SAVE_LIGHT);
+
+        for (IdleChunk idleChunk : idleChunks) {
+            SlimeChunk chunk = idleChunk.chunk;
+
+            // Chunks the server never loaded are plain data, which can be read from any thread
+            if (chunk instanceof CraftSlimeChunk) {
+                idleChunk.snapshot = chunk;
+                continue;
+            }
+
+            idleChunk.sections = ChunkSerializer.serializeSections(chunk, version, blockPalette, saveLight);
+            idleChunk.snapshot = new CraftSlimeChunk(name, chunk.getX(), chunk.getZ(), null, chunk.getHeightMaps(), chunk.getBiomes(),
+                    new ArrayList<>(chunk.getTileEntities()), new ArrayList<>(chunk.getEntities()));
+        }
+    }
+
+    /**
+     * Encodes captured idle chunks into compressed frames. Doesn't touch the chunks of this
+     * world, so it can be called from any thread.
+     *
+     * @param idleChunks The chunks passed to {@link #captureChunks(List)}.
+     * @throws IOException if a chunk could not be encoded.
+     */
+    public void encodeChunks(List<IdleChunk> idleChunks) throws IOException {
+        CompressionDictionary dictionary = this.dictionary;
+        SectionTable sectionTable = this.sectionTable.get();
+        BlockPalette blockPalette = this.blockPalette.get();
+        boolean saveLight = propertyMap.getValue(SAVE_LIGHT);
+        SegmentCompression chunkCompression = SegmentCompression.parse(propertyMap.getValue(CHUNK_COMPRESSION));
+
+        for (IdleChunk idleChunk : idleChunks) {
+            SlimeChunk snapshot = idleChunk.snapshot;
+
+            if (snapshot == null) {
+                continue;
+            }
+
+            // Frames are stored just like the ones read from the world file, so the next save can copy them as they are
+            byte[][] sections = idleChunk.sections != null ? idleChunk.sections
+                    : ChunkSerializer.serializeSections(snapshot, version, blockPalette, saveLight);
+            EncodedSlimeChunk frame = ChunkSerializer.encodeChunk(snapshot, sections, version, chunkCompression, dictionary, blockPalette,
+                    sectionTable, Collections.emptyMap());
+
+            if (frame != null) {
+                frame.getTileEntities().addAll(snapshot.getTileEntities());
+                frame.getEntities().addAll(snapshot.getEntities());
+            }
+
+            idleChunk.frame = frame;
+            idleChunk.encoded = true;
+        }
+    }
+
+    /**
+     * Replaces encoded idle chunks with their frames, so they take up a fraction of the memory
+     * until the server asks for them again. Chunks that were requested, changed or loaded by the
+     * server since they were found idle are left as they are. Must be called from the main thread.
+     *
+     * @param idleChunks The chunks passed to {@link #encodeChunks(List)}.
+     * @param inUse Tells whether the server is currently using a chunk.
+     * @return The amount of chunks that were compressed.
+     */
+    public int compressChunks(List<IdleChunk> idleChunks, Predicate<SlimeChunk> inUse) {
+        int compressedChunks = 0;
+
+        synchronized (chunks) {
+            for (IdleChunk idleChunk : idleChunks) {
+                SlimeChunk chunk = idleChunk.chunk;
+                long index = getKey(chunk);
+
+                if (!idleChunk.encoded || chunks.get(index) != chunk || !idleSince.containsKey(index) || inUse.test(chunk)) {
+                    continue;
+                }
+
+                chunks.remove(index);
+                cachedFrames.remove(index);
+                idleSince.remove(index);
+                chunkMemoryUsage.remove(index);
+
+                if (idleChunk.frame != null) { // Empty chunks don't have to be kept at all
+                    encodedChunks.put(index, idleChunk.frame);
+                }
+
+                compressedChunks++;
+            }
         }
+
+        return compressedChunks;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("World '" + name + "' is a clone template and can't be modified!");
+        }
+    }
+
+    /**
+     * Returns a frozen copy of this world, which its clones read the chunks they haven't
+     * modified from. The same copy is shared by every clone until this world changes, so
+     * the template's chunks are only decoded and kept in memory once.
+     *
+     * @return The clone template of this world, or this world itself if it's already one.
+     */
+    public CraftSlimeWorld getCloneTemplate() {
+        if (frozen) {
+            return this;
+        }
+
+        synchronized (chunks) {
+            if (cloneTemplate == null) {
+                CraftSlimeWorld world = new CraftSlimeWorld(loader, name, Collections.emptyMap(), extraData.clone(),
+                        new ArrayList<>(worldMaps), version, dictionary, propertyMap, true, false);
+                world.frozen = true;
+                world.template = template;
+                world.chunks.putAll(chunks);
+                world.encodedChunks.putAll(encodedChunks);
+                world.cachedFrames.putAll(cachedFrames);
+                world.sectionTable.set(sectionTable.get());
+
+                // States this world adds from now on don't belong to the template, so they shouldn't end up in its clones.
+                // Clones copy the template's palette, so it can't get any new states either, or its frames wouldn't be valid for them.
+                BlockPalette templatePalette = blockPalette.get().copy();
+                templatePalette.freeze();
+                world.blockPalette.set(templatePalette);
+
+                cloneTemplate = world;
+            }
+
+            return cloneTemplate;
+        }
+    }
+
+    public void setSectionTable(SectionTable sectionTable) {
+        this.sectionTable.set(sectionTable);
+    }
+
+    /**
+     * Returns the palette the sections of this world refer to their block states with.
+     */
+    public BlockPalette getBlockPalette() {
+        return blockPalette.get();
+    }
+
+    public void setBlockPalette(BlockPalette blockPalette) {
+        this.blockPalette.set(blockPalette);
+    }
+
+    /**
+     * Stores the hash of the payload that was last written to the loader.
+     *
+     * @param serializedWorld The serialized world as it was saved or loaded.
+     */
+    public void setSavedPayload(byte[] serializedWorld) {
+        savedHash.set(SlimeWorldWriter.hashPayload(serializedWorld));
+    }
+
+    /**
+     * Checks whether a serialized world is identical to the payload last
+     * written to the loader, counting it as a skipped save if it is.
+     *
+     * @param serializedWorld The serialized world.
+     * @return <code>true</code> if the loader already holds this exact payload.
+     */
+    public boolean isSavedPayload(byte[] serializedWorld) {
+        Long hash = savedHash.get();
+
+        if (hash != null && hash == SlimeWorldWriter.hashPayload(serializedWorld)) {
+            skippedSaves.incrementAndGet();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the amount of saves that were skipped because the world hadn't changed.
+     *
+     * @return The amount of skipped saves.
+     */
+    public long getSkippedSaves() {
+        return skippedSaves.get();
     }
 
     @Override
@@ -90,10 +591,19 @@ public class CraftSlimeWorld implements SlimeWorld {
 
         CraftSlimeWorld world;
 
-        synchronized (chunks) {
-            world = new CraftSlimeWorld(loader == null ? this.loader : loader, worldName, new HashMap<>(chunks), extraData.clone(),
-                    new ArrayList<>(worldMaps), version, propertyMap, loader == null, lock);
-        }
+        // Other data sources might not have this world's dictionary
+        CompressionDictionary cloneDictionary = loader == null || loader.equals(this.loader) ? dictionary : null;
+
+        // The clone doesn't copy any chunk, it reads them from the template until it changes them
+        CraftSlimeWorld template = getCloneTemplate();
+
+        world = new CraftSlimeWorld(loader == null ? this.loader : loader, worldName, Collections.emptyMap(), template.extraData.clone(),
+                new ArrayList<>(template.worldMaps), version, cloneDictionary, propertyMap, loader == null, lock);
+        world.template = template;
+
+        // Each clone adds its own states and sections, and only writes the ones it uses. The template's
+        // frames are moved to the clone's section table when it's saved.
+        world.blockPalette.set(template.blockPalette.get().copy());
 
         if (loader != null) {
             loader.saveWorld(worldName, world.serialize(), lock);
@@ -118,232 +628,392 @@ public class CraftSlimeWorld implements SlimeWorld {
     // World Serialization methods
 
     public byte[] serialize() {
-        List<SlimeChunk> sortedChunks;
+        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
+
+        try {
+            serialize(outByteStream);
+        } catch (IOException ex) { // Ignore
+            ex.printStackTrace();
+        }
+
+        return outByteStream.toByteArray();
+    }
 
+    /**
+     * Writes this world to the given stream. NBT segments are compressed as they are
+     * written, so the uncompressed world is never held in memory as a whole.
+     *
+     * @param outputStream The stream to write the world to. It's not closed afterwards.
+     * @throws IOException if the world could not be written.
+     */
+    public void serialize(OutputStream outputStream) throws IOException {
+        CompressionDictionary dictionary = this.dictionary;
+        SectionTable sectionTable = this.sectionTable.get();
+        BlockPalette blockPalette = this.blockPalette.get();
+        boolean saveLight = propertyMap.getValue(SAVE_LIGHT);
+        SegmentCompression chunkCompression = SegmentCompression.parse(propertyMap.getValue(CHUNK_COMPRESSION));
+        List<EncodedSlimeChunk> frames = new ArrayList<>();
+        List<SlimeChunk> savedChunks = new ArrayList<>();
+        List<SlimeChunk> changedChunks = new ArrayList<>();
+        Map<SlimeChunk, CraftSlimeWorld> templateChunks = new IdentityHashMap<>();
+
+        // Only chunks that changed since the last save have to be encoded again
         synchronized (chunks) {
-            sortedChunks = new ArrayList<>(chunks.values());
+            collectChunks(null, frames, savedChunks, changedChunks, templateChunks, chunkCompression, dictionary, blockPalette);
+            dirtyChunks.clear();
         }
 
-        sortedChunks.sort(Comparator.comparingLong(chunk -> (long) chunk.getZ() * Integer.MAX_VALUE + (long) chunk.getX()));
-        sortedChunks.removeIf(chunk -> chunk == null || Arrays.stream(chunk.getSections()).allMatch(Objects::isNull)); // Remove empty chunks to save space
+        for (ListIterator<EncodedSlimeChunk> iterator = frames.listIterator(); iterator.hasNext(); ) {
+            EncodedSlimeChunk frame = iterator.next();
 
-        // Store world properties
-        if(!extraData.getValue().containsKey("properties")) {
-            extraData.getValue().putIfAbsent("properties", propertyMap.toCompound());
-        }else{
-            extraData.getValue().replace("properties", propertyMap.toCompound());
+            // Frames written by another SRF or world version, or compressed differently, can't be copied as they are
+            if (!canCopyFrame(frame, chunkCompression, dictionary, blockPalette)) {
+                changedChunks.add(decodeChunk(frame));
+                iterator.remove();
+            } else if (frame.getSectionTable() != sectionTable && frame.getSharedSectionMask() != 0) {
+                iterator.set(frame.withSectionTable(sectionTable));
+            }
         }
 
-        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
-        DataOutputStream outStream = new DataOutputStream(outByteStream);
+        Map<SlimeChunk, byte[][]> chunksToEncode = new IdentityHashMap<>();
+        Map<Long, Integer> sectionCounts = new HashMap<>();
 
-        try {
-            // File Header and Slime version
-            outStream.write(SlimeFormat.SLIME_HEADER);
-            outStream.write(SlimeFormat.SLIME_VERSION);
+        for (SlimeChunk chunk : changedChunks) {
+            CraftSlimeWorld chunkTemplate = templateChunks.get(chunk);
 
-            // World version
-            outStream.writeByte(version);
+            // Chunks read from a clone template are encoded once for all of its clones
+            if (chunkTemplate != null) {
+                EncodedSlimeChunk frame = chunkTemplate.encodeTemplateChunk(chunk, chunkCompression, dictionary);
 
-            // Lowest chunk coordinates
-            int minX = sortedChunks.stream().mapToInt(SlimeChunk::getX).min().orElse(0);
-            int minZ = sortedChunks.stream().mapToInt(SlimeChunk::getZ).min().orElse(0);
-            int maxX = sortedChunks.stream().mapToInt(SlimeChunk::getX).max().orElse(0);
-            int maxZ = sortedChunks.stream().mapToInt(SlimeChunk::getZ).max().orElse(0);
+                if (frame != null) {
+                    frames.add(frame.getSharedSectionMask() != 0 ? frame.withSectionTable(sectionTable) : frame);
+                    savedChunks.add(chunk);
+                    continue;
+                }
+            }
 
-            outStream.writeShort(minX);
-            outStream.writeShort(minZ);
+            byte[][] sections = ChunkSerializer.serializeSections(chunk, version, blockPalette, saveLight);
 
-            // Width and depth
-            int width = maxX - minX + 1;
-            int depth = maxZ - minZ + 1;
+            for (byte[] section : sections) {
+                if (section != null) {
+                    sectionCounts.merge(XXHash64.hash(section), 1, Integer::sum);
+                }
+            }
 
-            outStream.writeShort(width);
-            outStream.writeShort(depth);
+            chunksToEncode.put(chunk, sections);
+        }
 
-            // Chunk Bitmask
-            BitSet chunkBitset = new BitSet(width * depth);
+        Map<SlimeChunk, EncodedSlimeChunk> newFrames = new IdentityHashMap<>();
 
-            for (SlimeChunk chunk : sortedChunks) {
-                int bitsetIndex = (chunk.getZ() - minZ) * width + (chunk.getX() - minX);
+        for (Map.Entry<SlimeChunk, byte[][]> entry : chunksToEncode.entrySet()) {
+            SlimeChunk chunk = entry.getKey();
+            EncodedSlimeChunk frame = ChunkSerializer.encodeChunk(chunk, entry.getValue(), version, chunkCompression, dictionary, blockPalette,
+                    sectionTable, sectionCounts);
 
-                chunkBitset.set(bitsetIndex, true);
+            if (frame == null) { // Remove empty chunks to save space
+                continue;
             }
 
-            int chunkMaskSize = (int) Math.ceil((width * depth) / 8.0D);
-            writeBitSetAsBytes(outStream, chunkBitset, chunkMaskSize);
+            newFrames.put(chunk, frame);
+            frames.add(frame);
+            savedChunks.add(chunk);
+        }
+
+        synchronized (chunks) {
+            for (Map.Entry<SlimeChunk, EncodedSlimeChunk> entry : newFrames.entrySet()) {
+                long index = getKey(entry.getKey());
 
-            // Chunks
-            byte[] chunkData = serializeChunks(sortedChunks, version);
-            byte[] compressedChunkData = Zstd.compress(chunkData);
+                // Don't cache frames of chunks that were modified while they were being encoded
+                if (!dirtyChunks.contains(index) && chunks.get(index) == entry.getKey()) {
+                    this.cachedFrames.put(index, entry.getValue());
+                }
+            }
+        }
 
-            outStream.writeInt(compressedChunkData.length);
-            outStream.writeInt(chunkData.length);
-            outStream.write(compressedChunkData);
+        frames.sort(Comparator.comparingInt(EncodedSlimeChunk::getZ).thenComparingInt(EncodedSlimeChunk::getX));
 
-            // Tile Entities
-            List<CompoundTag> tileEntitiesList = sortedChunks.stream().flatMap(chunk -> chunk.getTileEntities().stream()).collect(Collectors.toList());
-            ListTag<CompoundTag> tileEntitiesNbtList = new ListTag<>("tiles", TagType.TAG_COMPOUND, tileEntitiesList);
-            CompoundTag tileEntitiesCompound = new CompoundTag("", new CompoundMap(Collections.singletonList(tileEntitiesNbtList)));
-            byte[] tileEntitiesData = serializeCompoundTag(tileEntitiesCompound);
-            byte[] compressedTileEntitiesData = Zstd.compress(tileEntitiesData);
+        compactSectionTable(sectionTable, SlimeWorldWriter.getUsedSections(frames));
 
-            outStream.writeInt(compressedTileEntitiesData.length);
-            outStream.writeInt(tileEntitiesData.length);
-            outStream.write(compressedTileEntitiesData);
+        // Store world properties
+        if(!extraData.getValue().containsKey("properties")) {
+            extraData.getValue().putIfAbsent("properties", propertyMap.toCompound());
+        }else{
+            extraData.getValue().replace("properties", propertyMap.toCompound());
+        }
 
-            // Entities
-            List<CompoundTag> entitiesList = sortedChunks.stream().flatMap(chunk -> chunk.getEntities().stream()).collect(Collectors.toList());
+        List<CompoundTag> tileEntities = Stream.concat(savedChunks.stream().flatMap(chunk -> chunk.getTileEntities().stream()),
+                frames.stream().flatMap(chunk -> chunk.getTileEntities().stream())).collect(Collectors.toList());
+        List<CompoundTag> entities = Stream.concat(savedChunks.stream().flatMap(chunk -> chunk.getEntities().stream()),
+                frames.stream().flatMap(chunk -> chunk.getEntities().stream())).collect(Collectors.toList());
 
-            outStream.writeBoolean(!entitiesList.isEmpty());
+        SlimeWorldWriter.write(outputStream, version, frames, blockPalette, sectionTable, tileEntities, entities, extraData, worldMaps,
+                propertyMap, dictionary);
+    }
 
-            if (!entitiesList.isEmpty()) {
-                ListTag<CompoundTag> entitiesNbtList = new ListTag<>("entities", TagType.TAG_COMPOUND, entitiesList);
-                CompoundTag entitiesCompound = new CompoundTag("", new CompoundMap(Collections.singletonList(entitiesNbtList)));
-                byte[] entitiesData = serializeCompoundTag(entitiesCompound);
-                byte[] compressedEntitiesData = Zstd.compress(entitiesData);
+    /**
+     * Sorts the chunks of this world and its template into the frames that can be saved as they
+     * are and the chunks that have to be encoded again. Chunks in the given set are skipped, as
+     * they've been replaced by a clone of this world. Chunks to encode that belong to a clone
+     * template are mapped to it, so it can cache their frames for every clone.
+     */
+    private void collectChunks(Set<Long> replacedChunks, List<EncodedSlimeChunk> frames, List<SlimeChunk> savedChunks,
+                               List<SlimeChunk> changedChunks, Map<SlimeChunk, CraftSlimeWorld> templateChunks,
+                               SegmentCompression chunkCompression, CompressionDictionary dictionary, BlockPalette blockPalette) {
+        Set<Long> templateReplacedChunks = template == null ? null : replacedChunks == null ? new HashSet<>() : replacedChunks;
 
-                outStream.writeInt(compressedEntitiesData.length);
-                outStream.writeInt(entitiesData.length);
-                outStream.write(compressedEntitiesData);
-            }
+        synchronized (chunks) {
+            for (EncodedSlimeChunk encodedChunk : encodedChunks) {
+                if (isReplaced(getKey(encodedChunk), replacedChunks, templateReplacedChunks)) {
+                    continue;
+                }
 
-            // Extra Tag
-            byte[] extra = serializeCompoundTag(extraData);
-            byte[] compressedExtra = Zstd.compress(extra);
+                frames.add(encodedChunk);
+            }
 
-            outStream.writeInt(compressedExtra.length);
-            outStream.writeInt(extra.length);
-            outStream.write(compressedExtra);
+            for (SlimeChunk chunk : chunks) {
+                long index = getKey(chunk);
 
-            // World Maps
-            CompoundMap map = new CompoundMap();
-            map.put("maps", new ListTag<>("maps", TagType.TAG_COMPOUND, worldMaps));
+                if (isReplaced(index, replacedChunks, templateReplacedChunks)) {
+                    continue;
+                }
 
-            CompoundTag mapsCompound = new CompoundTag("", map);
+                EncodedSlimeChunk frame = cachedFrames.get(index);
 
-            byte[] mapArray = serializeCompoundTag(mapsCompound);
-            byte[] compressedMapArray = Zstd.compress(mapArray);
+                if (frame == null || !canCopyFrame(frame, chunkCompression, dictionary, blockPalette)) {
+                    changedChunks.add(chunk);
 
-            outStream.writeInt(compressedMapArray.length);
-            outStream.writeInt(mapArray.length);
-            outStream.write(compressedMapArray);
-        } catch (IOException ex) { // Ignore
-            ex.printStackTrace();
+                    if (frozen) {
+                        templateChunks.put(chunk, this);
+                    }
+                } else {
+                    frames.add(frame);
+                    savedChunks.add(chunk);
+                }
+            }
         }
 
-        return outByteStream.toByteArray();
+        if (template != null) {
+            template.collectChunks(templateReplacedChunks, frames, savedChunks, changedChunks, templateChunks, chunkCompression,
+                    dictionary, blockPalette);
+        }
     }
 
-    private static void writeBitSetAsBytes(DataOutputStream outStream, BitSet set, int fixedSize) throws IOException {
-        byte[] array = set.toByteArray();
-        outStream.write(array);
-
-        int chunkMaskPadding = fixedSize - array.length;
+    /**
+     * Encodes a chunk of this clone template with the template's own palette and section table, so
+     * the frame is valid for every clone, and caches it so other clones don't have to encode it again.
+     *
+     * @return The frame of the chunk, or <code>null</code> if the chunk is empty or uses block
+     * states the template's palette doesn't have, in which case the clone has to encode it.
+     * @throws IOException if the chunk could not be encoded.
+     */
+    private EncodedSlimeChunk encodeTemplateChunk(SlimeChunk chunk, SegmentCompression chunkCompression,
+                                                  CompressionDictionary dictionary) throws IOException {
+        BlockPalette blockPalette = this.blockPalette.get();
+        byte[][] sections;
 
-        for (int i = 0; i < chunkMaskPadding; i++) {
-            outStream.write(0);
+        try {
+            sections = ChunkSerializer.serializeSections(chunk, version, blockPalette, propertyMap.getValue(SAVE_LIGHT));
+        } catch (BlockPalette.FrozenPaletteException ex) {
+            return null;
         }
-    }
 
-    private static byte[] serializeChunks(List<SlimeChunk> chunks, byte worldVersion) throws IOException {
-        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream(16384);
-        DataOutputStream outStream = new DataOutputStream(outByteStream);
+        // Only sections that are already in the table are shared, so the table doesn't grow as clones are saved
+        EncodedSlimeChunk frame = ChunkSerializer.encodeChunk(chunk, sections, version, chunkCompression, dictionary, blockPalette,
+                sectionTable.get(), Collections.emptyMap());
 
-        for (SlimeChunk chunk : chunks) {
-            // Height Maps
-            if (worldVersion >= 0x04) {
-                byte[] heightMaps = serializeCompoundTag(chunk.getHeightMaps());
-                outStream.writeInt(heightMaps.length);
-                outStream.write(heightMaps);
-            } else {
-                int[] heightMap = chunk.getHeightMaps().getIntArrayValue("heightMap").get();
+        if (frame != null) {
+            long index = getKey(chunk);
 
-                for (int i = 0; i < 256; i++) {
-                    outStream.writeInt(heightMap[i]);
+            synchronized (chunks) {
+                if (chunks.get(index) == chunk && !cachedFrames.containsKey(index)) {
+                    cachedFrames.put(index, frame);
                 }
             }
+        }
 
-            // Biomes
-            int[] biomes = chunk.getBiomes();
-            if (worldVersion >= 0x04) {
-                outStream.writeInt(biomes.length);
-            }
+        return frame;
+    }
 
-            for (int biome : biomes) {
-                outStream.writeInt(biome);
-            }
+    private static boolean isReplaced(long index, Set<Long> replacedChunks, Set<Long> templateReplacedChunks) {
+        if (replacedChunks != null && replacedChunks.contains(index)) {
+            return true;
+        }
+
+        if (templateReplacedChunks != null) {
+            templateReplacedChunks.add(index);
+        }
 
-            // Chunk sections
-            SlimeChunkSection[] sections = chunk.getSections();
-            BitSet sectionBitmask = new BitSet(16);
+        return false;
+    }
+
+    /**
+     * Drops the sections no chunk uses anymore once they make up most of the table, so
+     * the sections of chunks that were modified or unloaded don't pile up in memory.
+     */
+    private void compactSectionTable(SectionTable table, BitSet usedSections) {
+        if (table.size() <= MIN_COMPACTED_SECTION_TABLE_SIZE || usedSections.cardinality() >= table.size() / 2) {
+            return;
+        }
+
+        SectionTable compactedTable = table.subset(usedSections);
 
-            for (int i = 0; i < sections.length; i++) {
-                sectionBitmask.set(i, sections[i] != null);
+        synchronized (chunks) {
+            if (!sectionTable.compareAndSet(table, compactedTable)) {
+                return;
             }
 
-            writeBitSetAsBytes(outStream, sectionBitmask, 2);
+            rehomeFrames(encodedChunks, table, compactedTable);
+            rehomeFrames(cachedFrames, table, compactedTable);
+        }
+    }
 
-            for (SlimeChunkSection section : sections) {
-                if (section == null) {
-                    continue;
-                }
+    private static void rehomeFrames(ChunkMap<EncodedSlimeChunk> frames, SectionTable oldTable, SectionTable newTable) {
+        frames.replaceAll(frame -> frame.getSectionTable() == oldTable && frame.getSharedSectionMask() != 0
+                ? frame.withSectionTable(newTable) : frame);
+    }
 
-                // Block Light
-                boolean hasBlockLight = section.getBlockLight() != null;
-                outStream.writeBoolean(hasBlockLight);
+    private boolean canCopyFrame(EncodedSlimeChunk frame, SegmentCompression compression, CompressionDictionary dictionary,
+                                 BlockPalette blockPalette) {
+        return frame.getFormatVersion() == SlimeFormat.SLIME_VERSION && frame.getWorldVersion() == version
+                && frame.getCompression().equals(compression) && frame.getDictionary() == dictionary
+                && blockPalette.isCopyOf(frame.getBlockPalette());
+    }
 
-                if (hasBlockLight) {
-                    outStream.write(section.getBlockLight().getBacking());
-                }
+    /**
+     * Returns the uncompressed data of every chunk in this world, to be used
+     * as samples when training a compression dictionary.
+     *
+     * @return A {@link List} containing the serialized chunks.
+     * @throws IOException if a chunk could not be serialized.
+     */
+    public List<byte[]> getDictionarySamples() throws IOException {
+        BlockPalette blockPalette = this.blockPalette.get();
+        List<SlimeChunk> chunkList = new ArrayList<>();
+        List<EncodedSlimeChunk> frames = new ArrayList<>();
+
+        if (template != null) { // Take the chunks of the template too
+            getChunks().forEach(chunkList::add);
+        } else {
+            synchronized (chunks) {
+                chunks.forEach(chunkList::add);
+                encodedChunks.forEach(frames::add);
+            }
+        }
 
-                // Block Data
-                if (worldVersion >= 0x04) {
-                    // Palette
-                    List<CompoundTag> palette = section.getPalette().getValue();
-                    outStream.writeInt(palette.size());
+        List<byte[]> samples = new ArrayList<>(chunkList.size() + frames.size());
 
-                    for (CompoundTag value : palette) {
-                        byte[] serializedValue = serializeCompoundTag(value);
+        for (EncodedSlimeChunk frame : frames) {
+            if (frame.getWorldVersion() == version && frame.getFormatVersion() == SlimeFormat.SLIME_VERSION) {
+                ByteBuffer data = CompressionPool.decompress(frame.getCompressedData(), frame.getDataLength(), frame.getCompression(), frame.getDictionary());
+                samples.add(Arrays.copyOfRange(data.array(), data.arrayOffset(), data.arrayOffset() + data.remaining()));
+            } else {
+                chunkList.add(decodeChunk(frame));
+            }
+        }
 
-                        outStream.writeInt(serializedValue.length);
-                        outStream.write(serializedValue);
-                    }
+        for (SlimeChunk chunk : chunkList) {
+            byte[][] sections = ChunkSerializer.serializeSections(chunk, version, blockPalette, true);
 
-                    // Block states
-                    long[] blockStates = section.getBlockStates();
+            if (Arrays.stream(sections).allMatch(Objects::isNull)) {
+                continue;
+            }
 
-                    outStream.writeInt(blockStates.length);
+            ByteArrayOutputStream chunkByteStream = new ByteArrayOutputStream();
+            ChunkSerializer.serializeChunk(new DataOutputStream(chunkByteStream), chunk, sections, 0, version);
+            samples.add(chunkByteStream.toByteArray());
+        }
 
-                    for (long value : section.getBlockStates()) {
-                        outStream.writeLong(value);
-                    }
-                } else {
-                    outStream.write(section.getBlocks());
-                    outStream.write(section.getData().getBacking());
-                }
+        return samples;
+    }
 
-                // Sky Light
-                boolean hasSkyLight = section.getSkyLight() != null;
-                outStream.writeBoolean(hasSkyLight);
+    /**
+     * Estimates how much memory this world takes up. Only chunks that changed since they were
+     * last measured are measured again, but the first estimate of a big world can take a while,
+     * so this shouldn't be called from the main thread.
+     *
+     * @return The memory usage of the world.
+     */
+    public SlimeWorldMemoryUsage getMemoryUsage() {
+        List<SlimeChunk> chunkList = new ArrayList<>();
+        List<EncodedSlimeChunk> frames = new ArrayList<>();
 
-                if (hasSkyLight) {
-                    outStream.write(section.getSkyLight().getBacking());
+        synchronized (chunks) {
+            chunks.forEach(chunkList::add);
+            encodedChunks.forEach(frames::add);
+        }
+
+        long blockStates = 0;
+        long palettes = blockPalette.get().getMemoryUsage();
+        long light = 0;
+        long entities = 0;
+        long tileEntities = 0;
+        long other = MemoryEstimator.tagSize(extraData);
+
+        for (SlimeChunk chunk : chunkList) {
+            long index = getKey(chunk);
+            MemoryEstimator.ChunkUsage usage = chunkMemoryUsage.get(index);
+
+            if (usage == null || usage.getChunk() != chunk) {
+                long changes = chunkChanges;
+                usage = MemoryEstimator.estimateChunk(chunk);
+
+                // The chunk may have been replaced or changed while it was being measured
+                synchronized (chunks) {
+                    if (chunkChanges == changes && chunks.get(index) == chunk) {
+                        chunkMemoryUsage.put(index, usage);
+                    }
                 }
             }
+
+            blockStates += usage.getBlockStatesSize();
+            palettes += usage.getPalettesSize();
+            light += usage.getLightSize();
+            entities += usage.getEntitiesSize();
+            tileEntities += usage.getTileEntitiesSize();
+            other += usage.getOtherSize();
         }
 
-        return outByteStream.toByteArray();
-    }
+        long compressedChunks = sectionTable.get().getMemoryUsage();
 
-    private static byte[] serializeCompoundTag(CompoundTag tag) throws IOException {
-        if (tag == null || tag.getValue().isEmpty()) {
-            return new byte[0];
+        for (EncodedSlimeChunk frame : frames) {
+            compressedChunks += MemoryEstimator.frameSize(frame);
+            entities += MemoryEstimator.tagsSize(frame.getEntities());
+            tileEntities += MemoryEstimator.tagsSize(frame.getTileEntities());
         }
-        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
-        NBTOutputStream outStream = new NBTOutputStream(outByteStream, NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN);
-        outStream.writeTag(tag);
 
-        return outByteStream.toByteArray();
+        long maps = MemoryEstimator.tagsSize(worldMaps);
+
+        return new SlimeWorldMemoryUsage(name, chunkList.size(), frames.size(), blockStates, palettes, light, entities, tileEntities,
+                maps, compressedChunks, other);
+    }
+
+    private static long getKey(SlimeChunk chunk) {
+        return ChunkMap.getKey(chunk.getX(), chunk.getZ());
+    }
+
+    private static long getKey(EncodedSlimeChunk chunk) {
+        return ChunkMap.getKey(chunk.getX(), chunk.getZ());
+    }
+
+    /**
+     * A chunk the server isn't using, and since when.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class IdleChunk {
+
+        private final SlimeChunk chunk;
+        private final long idleSince;
+
+        // Copy of the chunk made on the main thread, and what it was encoded into
+        @Getter(AccessLevel.NONE)
+        private SlimeChunk snapshot;
+        @Getter(AccessLevel.NONE)
+        private byte[][] sections;
+        @Getter(AccessLevel.NONE)
+        private EncodedSlimeChunk frame;
+        @Getter(AccessLevel.NONE)
+        private boolean encoded;
+
     }
 }
@@ -0,0 +1,21 @@
+package com.grinderwolf.swm.nms;
+
+import java.io.IOException;
+
+/**
+ * A chunk backed by a server chunk, which can write its 1.13+ sections straight into the
+ * slime format instead of building the NBT palettes {@link com.grinderwolf.swm.api.world.SlimeChunk#getSections()} returns.
+ */
+public interface DirectSerializableChunk {
+
+    /**
+     * Serializes every section of the chunk, exactly like
+     * {@link ChunkSerializer#serializeSections(com.grinderwolf.swm.api.world.SlimeChunkSection[], byte, BlockPalette, boolean)}
+     * would serialize the sections returned by {@link com.grinderwolf.swm.api.world.SlimeChunk#getSections()}.
+     *
+     * @return The serialized sections, with <code>null</code> for empty ones.
+     * @throws IOException if a section could not be serialized.
+     */
+    byte[][] serializeSections(BlockPalette blockPalette, boolean saveLight) throws IOException;
+
+}
@@ -0,0 +1,91 @@
+package com.grinderwolf.swm.nms;
+
+import com.flowpowered.nbt.CompoundTag;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A chunk that is still stored as its compressed SRF frame. It
+ * is only decoded once the server actually asks for it.
+ */
+@Getter
+@RequiredArgsConstructor
+public class EncodedSlimeChunk {
+
+    private final int x;
+    private final int z;
+
+    private final byte[] compressedData;
+    private final int dataLength;
+
+    private final byte worldVersion;
+    private final int formatVersion;
+
+    // How the frame was compressed, and with which dictionary if any
+    private final SegmentCompression compression;
+    private final CompressionDictionary dictionary;
+
+    // Block states the sections refer to
+    private final BlockPalette blockPalette;
+
+    // Sections stored in the world's section table instead of the frame
+    private final SectionTable sectionTable;
+    private final int sharedSectionMask;
+    private final int[] sharedSections;
+
+    private final List<CompoundTag> tileEntities = new ArrayList<>();
+    private final List<CompoundTag> entities = new ArrayList<>();
+
+    public CraftSlimeChunk decode(String worldName) throws IOException {
+        CraftSlimeChunkSection[] shared = null;
+
+        if (sharedSectionMask != 0) {
+            shared = new CraftSlimeChunkSection[16];
+            int sharedIndex = 0;
+
+            for (int i = 0; i < 16; i++) {
+                if ((sharedSectionMask & (1 << i)) != 0) {
+                    shared[i] = sectionTable.getSection(sharedSections[sharedIndex++], worldVersion, formatVersion, blockPalette);
+                }
+            }
+        }
+
+        ByteBuffer data = CompressionPool.decompress(compressedData, dataLength, compression, dictionary);
+
+        return ChunkDeserializer.readChunk(data, worldVersion, formatVersion, worldName, x, z,
+                new ArrayList<>(tileEntities), new ArrayList<>(entities), blockPalette, shared);
+    }
+
+    /**
+     * Returns a copy of this frame whose shared sections point to another table.
+     * The frame itself doesn't change, just the indices of its shared sections.
+     */
+    public EncodedSlimeChunk withSectionTable(SectionTable table) {
+        int[] indices = new int[sharedSections.length];
+
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = table.add(sectionTable.get(sharedSections[i]));
+        }
+
+        EncodedSlimeChunk chunk = new EncodedSlimeChunk(x, z, compressedData, dataLength, worldVersion, formatVersion,
+                compression, dictionary, blockPalette, table, sharedSectionMask, indices);
+        chunk.getTileEntities().addAll(tileEntities);
+        chunk.getEntities().addAll(entities);
+
+        return chunk;
+    }
+
+    /**
+     * Returns a copy of this frame without its tile entities and entities, for
+     * frames cached alongside the decoded chunk, which keeps its own.
+     */
+    public EncodedSlimeChunk withoutEntities() {
+        return new EncodedSlimeChunk(x, z, compressedData, dataLength, worldVersion, formatVersion,
+                compression, dictionary, blockPalette, sectionTable, sharedSectionMask, sharedSections);
+    }
+}
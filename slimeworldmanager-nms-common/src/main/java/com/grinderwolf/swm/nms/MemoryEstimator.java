@@ -0,0 +1,178 @@
+package com.grinderwolf.swm.nms;
+
+import com.flowpowered.nbt.*;
+import com.grinderwolf.swm.api.utils.NibbleArray;
+import com.grinderwolf.swm.api.world.SlimeChunk;
+import com.grinderwolf.swm.api.world.SlimeChunkSection;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collection;
+
+/**
+ * Estimates the heap taken up by the contents of a slime world, assuming the object layout of a
+ * 64 bit JVM with compressed references. The figures aren't exact, but they're close enough to
+ * compare worlds with each other and find the ones using the most memory.
+ *
+ * Chunks backed by a server chunk are measured through their {@link SlimeChunk} view, whose arrays
+ * have the same sizes as the ones the server keeps.
+ */
+public class MemoryEstimator {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+
+    // Entry of the linked hash map behind every compound tag
+    private static final int MAP_ENTRY = 40;
+
+    public static ChunkUsage estimateChunk(SlimeChunk chunk) {
+        long blockStates = 0;
+        long palettes = 0;
+        long light = 0;
+
+        for (SlimeChunkSection slimeSection : chunk.getSections()) {
+            CraftSlimeChunkSection section = CraftSlimeChunkSection.of(slimeSection);
+
+            if (section == null) {
+                continue;
+            }
+
+            blockStates += objectSize(6 * REFERENCE);
+
+            if (section.getSharedBlocks() != null) {
+                blockStates += arraySize(section.getSharedBlocks().length, 1) + nibbleArraySize(section.getSharedData());
+            }
+
+            if (section.getSharedBlockStates() != null) {
+                blockStates += arraySize(section.getSharedBlockStates().length, 8);
+            }
+
+            // Palette entries are shared by the whole world, sections only hold references to them
+            if (section.getSharedPalette() != null) {
+                palettes += objectSize(3 * REFERENCE) + listSize(section.getSharedPalette().getValue().size());
+            }
+
+            light += nibbleArraySize(section.getSharedBlockLight()) + nibbleArraySize(section.getSharedSkyLight());
+        }
+
+        long other = objectSize(8 * REFERENCE) + arraySize(chunk.getSections().length, REFERENCE) + tagSize(chunk.getHeightMaps());
+
+        if (chunk.getBiomes() != null) {
+            other += arraySize(chunk.getBiomes().length, 4);
+        }
+
+        return new ChunkUsage(chunk, blockStates, palettes, light, tagsSize(chunk.getTileEntities()), tagsSize(chunk.getEntities()), other);
+    }
+
+    /**
+     * Estimates the size of a compressed frame, not counting the tile entities and entities it holds.
+     */
+    public static long frameSize(EncodedSlimeChunk frame) {
+        return objectSize(8 * REFERENCE + 16) + arraySize(frame.getCompressedData().length, 1)
+                + arraySize(frame.getSharedSections().length, 4);
+    }
+
+    public static long tagsSize(Collection<? extends Tag<?>> tags) {
+        if (tags == null) {
+            return 0;
+        }
+
+        long size = listSize(tags.size());
+
+        for (Tag<?> tag : tags) {
+            size += tagSize(tag);
+        }
+
+        return size;
+    }
+
+    public static long tagSize(Tag<?> tag) {
+        if (tag == null) {
+            return 0;
+        }
+
+        // Names are shared between tags, so only the reference to them is counted
+        long size = objectSize(2 * REFERENCE);
+
+        if (tag instanceof ByteTag || tag instanceof ShortTag || tag instanceof IntTag || tag instanceof FloatTag) {
+            return size + objectSize(4);
+        } else if (tag instanceof LongTag || tag instanceof DoubleTag) {
+            return size + objectSize(8);
+        } else if (tag instanceof ByteArrayTag) {
+            return size + arraySize(((ByteArrayTag) tag).getValue().length, 1);
+        } else if (tag instanceof IntArrayTag) {
+            return size + arraySize(((IntArrayTag) tag).getValue().length, 4);
+        } else if (tag instanceof LongArrayTag) {
+            return size + arraySize(((LongArrayTag) tag).getValue().length, 8);
+        } else if (tag instanceof StringTag) {
+            return size + stringSize(((StringTag) tag).getValue());
+        } else if (tag instanceof ListTag) {
+            return size + tagsSize(((ListTag<?>) tag).getValue());
+        } else if (tag instanceof CompoundTag) {
+            CompoundMap map = ((CompoundTag) tag).getValue();
+            size += objectSize(2 * REFERENCE) + objectSize(6 * REFERENCE) + arraySize(tableSize(map.size()), REFERENCE);
+
+            for (Tag<?> child : map.values()) {
+                size += MAP_ENTRY + tagSize(child);
+            }
+
+            return size;
+        }
+
+        return size;
+    }
+
+    public static long nibbleArraySize(NibbleArray array) {
+        return array == null ? 0 : objectSize(REFERENCE) + arraySize(array.getBacking().length, 1);
+    }
+
+    public static long stringSize(String string) {
+        return string == null ? 0 : objectSize(REFERENCE + 8) + arraySize(string.length(), 1);
+    }
+
+    public static long arraySize(int length, int elementSize) {
+        return align(ARRAY_HEADER + (long) length * elementSize);
+    }
+
+    public static long objectSize(int fieldsSize) {
+        return align(OBJECT_HEADER + fieldsSize);
+    }
+
+    private static long listSize(int size) {
+        return objectSize(REFERENCE + 8) + arraySize(size, REFERENCE);
+    }
+
+    private static int tableSize(int size) {
+        int tableSize = 16;
+
+        while (tableSize * 0.75 < size) {
+            tableSize <<= 1;
+        }
+
+        return tableSize;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * The estimated memory usage of a single chunk.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class ChunkUsage {
+
+        // Chunk the estimate was made for
+        private final SlimeChunk chunk;
+
+        private final long blockStatesSize;
+        private final long palettesSize;
+        private final long lightSize;
+        private final long tileEntitiesSize;
+        private final long entitiesSize;
+        private final long otherSize;
+
+    }
+}
@@ -0,0 +1,447 @@
+package com.grinderwolf.swm.nms;
+
+import com.flowpowered.nbt.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads and writes uncompressed, big endian NBT, producing the same bytes as flow-nbt's streams.
+ *
+ * Tags are read straight from a buffer and written straight into a byte array, so none of
+ * the stream wrappers flow-nbt needs are involved, arrays are copied in bulk and ASCII strings,
+ * which are nearly all of them, skip the modified UTF-8 decoder. Tag names are shared between
+ * every tag read, as the same few keys are repeated in each tile entity and block state.
+ *
+ * Reading still builds a tree of flow-nbt tags, just like {@link com.flowpowered.nbt.stream.NBTInputStream}
+ * does, as they are part of the API and every caller needs them. Only the overhead around them is removed.
+ */
+public class NbtCodec {
+
+    private static final int TAG_END = 0;
+    private static final int TAG_BYTE = 1;
+    private static final int TAG_SHORT = 2;
+    private static final int TAG_INT = 3;
+    private static final int TAG_LONG = 4;
+    private static final int TAG_FLOAT = 5;
+    private static final int TAG_DOUBLE = 6;
+    private static final int TAG_BYTE_ARRAY = 7;
+    private static final int TAG_STRING = 8;
+    private static final int TAG_LIST = 9;
+    private static final int TAG_COMPOUND = 10;
+    private static final int TAG_INT_ARRAY = 11;
+    private static final int TAG_LONG_ARRAY = 12;
+
+    private static final int MAX_DEPTH = 512;
+    private static final int MAX_CACHED_NAMES = 8192;
+    private static final Map<String, String> nameCache = new ConcurrentHashMap<>();
+
+    /**
+     * Reads a compound tag of the given length, moving the buffer past it.
+     *
+     * @return The compound tag, or <code>null</code> if the length is 0.
+     */
+    public static CompoundTag readCompound(ByteBuffer buffer, int length) throws IOException {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        if (length == 0) {
+            return null;
+        }
+
+        ByteBuffer tagBuffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        tagBuffer.limit(tagBuffer.position() + length);
+        buffer.position(buffer.position() + length);
+
+        return readRoot(tagBuffer);
+    }
+
+    /**
+     * Reads a serialized compound tag.
+     *
+     * @return The compound tag, or <code>null</code> if the array is empty.
+     */
+    public static CompoundTag readCompound(byte[] serializedCompound) throws IOException {
+        if (serializedCompound.length == 0) {
+            return null;
+        }
+
+        return readRoot(ByteBuffer.wrap(serializedCompound));
+    }
+
+    /**
+     * Serializes a compound tag into a new array.
+     */
+    public static byte[] serialize(CompoundTag tag) throws IOException {
+        Writer writer = new Writer(null);
+        writer.writeRoot(tag);
+
+        return Arrays.copyOf(writer.buffer, writer.position);
+    }
+
+    /**
+     * Writes a compound tag to the given stream. The stream is neither flushed nor closed afterwards.
+     *
+     * @return The amount of bytes written.
+     */
+    public static long write(OutputStream outputStream, CompoundTag tag) throws IOException {
+        Writer writer = new Writer(outputStream);
+        writer.writeRoot(tag);
+        writer.flush();
+
+        return writer.written;
+    }
+
+    private static CompoundTag readRoot(ByteBuffer buffer) throws IOException {
+        int type = buffer.get() & 0xFF;
+
+        if (type != TAG_COMPOUND) {
+            throw new IOException("Root tag is not a compound tag, but a tag of type " + type);
+        }
+
+        return readCompound(buffer, readString(buffer), 0);
+    }
+
+    private static Tag<?> readTag(ByteBuffer buffer, int type, String name, int depth) throws IOException {
+        switch (type) {
+            case TAG_BYTE:
+                return new ByteTag(name, buffer.get());
+            case TAG_SHORT:
+                return new ShortTag(name, buffer.getShort());
+            case TAG_INT:
+                return new IntTag(name, buffer.getInt());
+            case TAG_LONG:
+                return new LongTag(name, buffer.getLong());
+            case TAG_FLOAT:
+                return new FloatTag(name, buffer.getFloat());
+            case TAG_DOUBLE:
+                return new DoubleTag(name, buffer.getDouble());
+            case TAG_BYTE_ARRAY: {
+                byte[] array = new byte[checkLength(buffer, buffer.getInt(), 1)];
+                buffer.get(array);
+
+                return new ByteArrayTag(name, array);
+            }
+            case TAG_STRING:
+                return new StringTag(name, readString(buffer));
+            case TAG_LIST:
+                return readList(buffer, name, depth + 1);
+            case TAG_COMPOUND:
+                return readCompound(buffer, name, depth + 1);
+            case TAG_INT_ARRAY: {
+                int[] array = new int[checkLength(buffer, buffer.getInt(), 4) / 4];
+                buffer.asIntBuffer().get(array);
+                buffer.position(buffer.position() + array.length * 4);
+
+                return new IntArrayTag(name, array);
+            }
+            case TAG_LONG_ARRAY: {
+                long[] array = new long[checkLength(buffer, buffer.getInt(), 8) / 8];
+                buffer.asLongBuffer().get(array);
+                buffer.position(buffer.position() + array.length * 8);
+
+                return new LongArrayTag(name, array);
+            }
+            default:
+                throw new IOException("Invalid tag type " + type);
+        }
+    }
+
+    private static CompoundTag readCompound(ByteBuffer buffer, String name, int depth) throws IOException {
+        checkDepth(depth);
+        CompoundMap map = new CompoundMap();
+
+        for (int type = buffer.get() & 0xFF; type != TAG_END; type = buffer.get() & 0xFF) {
+            String childName = internName(readString(buffer));
+            map.put(childName, readTag(buffer, type, childName, depth));
+        }
+
+        return new CompoundTag(name, map);
+    }
+
+    private static ListTag<?> readList(ByteBuffer buffer, String name, int depth) throws IOException {
+        checkDepth(depth);
+        int elementType = buffer.get() & 0xFF;
+
+        if (elementType > TAG_LONG_ARRAY) {
+            throw new IOException("Invalid tag type " + elementType);
+        }
+
+        // Every element takes at least a byte, so this also keeps corrupted lengths from allocating huge lists
+        int length = checkLength(buffer, buffer.getInt(), 1);
+
+        if (elementType == TAG_END && length > 0) {
+            throw new IOException("List tag " + name + " has elements, but no element type");
+        }
+
+        List<Tag> list = new ArrayList<>(length);
+
+        for (int i = 0; i < length; i++) {
+            list.add(readTag(buffer, elementType, "", depth));
+        }
+
+        return new ListTag<>(name, TagType.getById(elementType), list);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = checkLength(buffer, buffer.getShort() & 0xFFFF, 1);
+        byte[] array;
+        int offset;
+
+        if (buffer.hasArray()) {
+            array = buffer.array();
+            offset = buffer.arrayOffset() + buffer.position();
+            buffer.position(buffer.position() + length);
+        } else {
+            array = new byte[length];
+            offset = 0;
+            buffer.get(array);
+        }
+
+        // flow-nbt stores strings as standard UTF-8, not as the modified UTF-8 of DataOutputStream
+        for (int i = offset; i < offset + length; i++) {
+            if (array[i] < 0) {
+                return new String(array, offset, length, StandardCharsets.UTF_8);
+            }
+        }
+
+        return new String(array, offset, length, StandardCharsets.ISO_8859_1);
+    }
+
+    private static String internName(String name) {
+        String cachedName = nameCache.get(name);
+
+        if (cachedName != null) {
+            return cachedName;
+        }
+
+        if (nameCache.size() >= MAX_CACHED_NAMES) {
+            return name;
+        }
+
+        cachedName = nameCache.putIfAbsent(name, name);
+
+        return cachedName == null ? name : cachedName;
+    }
+
+    private static int checkLength(ByteBuffer buffer, int length, int elementSize) {
+        if (length < 0 || (long) length * elementSize > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        return length * elementSize;
+    }
+
+    private static void checkDepth(int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("NBT tags are nested more than " + MAX_DEPTH + " levels deep");
+        }
+    }
+
+    /**
+     * Writes tags into a byte array, which is either handed over to a stream
+     * whenever it gets full, or grown if there's no stream to write to.
+     */
+    private static class Writer {
+
+        private final OutputStream outputStream;
+
+        private byte[] buffer = new byte[8192];
+        private int position;
+        private long written;
+
+        private Writer(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        private void writeRoot(CompoundTag tag) throws IOException {
+            ensure(1);
+            buffer[position++] = TAG_COMPOUND;
+            writeString(tag.getName());
+            writeCompound(tag, 0);
+        }
+
+        private void writeTag(Tag<?> tag, int depth) throws IOException {
+            switch (tag.getType()) {
+                case TAG_BYTE:
+                    ensure(1);
+                    buffer[position++] = ((ByteTag) tag).getValue();
+                    break;
+                case TAG_SHORT:
+                    writeShort(((ShortTag) tag).getValue());
+                    break;
+                case TAG_INT:
+                    writeInt(((IntTag) tag).getValue());
+                    break;
+                case TAG_LONG:
+                    writeLong(((LongTag) tag).getValue());
+                    break;
+                case TAG_FLOAT:
+                    writeInt(Float.floatToIntBits(((FloatTag) tag).getValue()));
+                    break;
+                case TAG_DOUBLE:
+                    writeLong(Double.doubleToLongBits(((DoubleTag) tag).getValue()));
+                    break;
+                case TAG_BYTE_ARRAY: {
+                    byte[] array = ((ByteArrayTag) tag).getValue();
+                    writeInt(array.length);
+                    writeBytes(array);
+                    break;
+                }
+                case TAG_STRING:
+                    writeString(((StringTag) tag).getValue());
+                    break;
+                case TAG_LIST:
+                    writeList((ListTag<?>) tag, depth + 1);
+                    break;
+                case TAG_COMPOUND:
+                    writeCompound((CompoundTag) tag, depth + 1);
+                    break;
+                case TAG_INT_ARRAY: {
+                    int[] array = ((IntArrayTag) tag).getValue();
+                    writeInt(array.length);
+
+                    for (int value : array) {
+                        writeInt(value);
+                    }
+
+                    break;
+                }
+                case TAG_LONG_ARRAY: {
+                    long[] array = ((LongArrayTag) tag).getValue();
+                    writeInt(array.length);
+
+                    for (long value : array) {
+                        writeLong(value);
+                    }
+
+                    break;
+                }
+                default:
+                    throw new IOException("Invalid tag type " + tag.getType().name());
+            }
+        }
+
+        private void writeCompound(CompoundTag tag, int depth) throws IOException {
+            checkDepth(depth);
+
+            for (Tag<?> child : tag.getValue().values()) {
+                ensure(1);
+                buffer[position++] = (byte) child.getType().getId();
+                writeString(child.getName());
+                writeTag(child, depth);
+            }
+
+            ensure(1);
+            buffer[position++] = TAG_END;
+        }
+
+        private void writeList(ListTag<?> tag, int depth) throws IOException {
+            checkDepth(depth);
+            List<? extends Tag> list = tag.getValue();
+
+            // The declared element type is written even for empty lists, just like flow-nbt does
+            ensure(1);
+            buffer[position++] = (byte) tag.getElementType().getId();
+            writeInt(list.size());
+
+            for (Tag element : list) {
+                writeTag(element, depth);
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            int length = value.length();
+
+            for (int i = 0; i < length; i++) {
+                if (value.charAt(i) >= 0x80) {
+                    // Same encoding as flow-nbt, which uses standard UTF-8 rather than modified UTF-8
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    checkStringLength(bytes.length);
+                    writeShort((short) bytes.length);
+                    writeBytes(bytes);
+
+                    return;
+                }
+            }
+
+            checkStringLength(length);
+            writeShort((short) length);
+            ensure(length);
+
+            for (int i = 0; i < length; i++) {
+                buffer[position++] = (byte) value.charAt(i);
+            }
+        }
+
+        private void checkStringLength(int length) throws IOException {
+            if (length > 0xFFFF) {
+                throw new UTFDataFormatException("String is too long to be stored: " + length + " bytes");
+            }
+        }
+
+        private void writeShort(short value) throws IOException {
+            ensure(2);
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeInt(int value) throws IOException {
+            ensure(4);
+            buffer[position++] = (byte) (value >>> 24);
+            buffer[position++] = (byte) (value >>> 16);
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeLong(long value) throws IOException {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        private void writeBytes(byte[] array) throws IOException {
+            if (outputStream != null && array.length > buffer.length) {
+                flush();
+                outputStream.write(array);
+                written += array.length;
+
+                return;
+            }
+
+            ensure(array.length);
+            System.arraycopy(array, 0, buffer, position, array.length);
+            position += array.length;
+        }
+
+        private void ensure(int length) throws IOException {
+            if (position + length <= buffer.length) {
+                return;
+            }
+
+            if (outputStream != null) {
+                flush();
+            }
+
+            if (position + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+            }
+        }
+
+        private void flush() throws IOException {
+            outputStream.write(buffer, 0, position);
+            written += position;
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.grinderwolf.swm.nms;
+
+import com.flowpowered.nbt.CompoundTag;
+import com.grinderwolf.swm.api.world.SlimeChunk;
+import com.grinderwolf.swm.api.world.SlimeChunkSection;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A chunk of a clone template, as seen by one of its clones. It shares the template's data instead
+ * of copying it, so it can't be changed: the clone replaces it with a chunk of its own once it's
+ * written to, and neither the template nor the other clones ever see those changes.
+ */
+class ReadOnlySlimeChunk extends CraftSlimeChunk {
+
+    ReadOnlySlimeChunk(String worldName, SlimeChunk chunk) {
+        super(worldName, chunk.getX(), chunk.getZ(), chunk.getSections(), chunk.getHeightMaps(), chunk.getBiomes(),
+                chunk.getTileEntities(), chunk.getEntities(), chunk instanceof CraftSlimeChunk ? ((CraftSlimeChunk) chunk).getUpgradeData() : null);
+    }
+
+    @Override
+    public SlimeChunkSection[] getSections() {
+        // Sections hand out copies of their data, so only the array has to be copied
+        SlimeChunkSection[] sections = super.getSections();
+
+        return sections == null ? null : sections.clone();
+    }
+
+    @Override
+    public CompoundTag getHeightMaps() {
+        CompoundTag heightMaps = super.getHeightMaps();
+
+        return heightMaps == null ? null : heightMaps.clone();
+    }
+
+    @Override
+    public int[] getBiomes() {
+        int[] biomes = super.getBiomes();
+
+        return biomes == null ? null : biomes.clone();
+    }
+
+    /**
+     * Returns the tile entities of the chunk. The tags are shared with the template, so they must not be modified.
+     */
+    @Override
+    public List<CompoundTag> getTileEntities() {
+        List<CompoundTag> tileEntities = super.getTileEntities();
+
+        return tileEntities == null ? null : Collections.unmodifiableList(tileEntities);
+    }
+
+    /**
+     * Returns the entities of the chunk. The tags are shared with the template, so they must not be modified.
+     */
+    @Override
+    public List<CompoundTag> getEntities() {
+        List<CompoundTag> entities = super.getEntities();
+
+        return entities == null ? null : Collections.unmodifiableList(entities);
+    }
+
+    @Override
+    public CompoundTag getUpgradeData() {
+        CompoundTag upgradeData = super.getUpgradeData();
+
+        return upgradeData == null ? null : upgradeData.clone();
+    }
+}
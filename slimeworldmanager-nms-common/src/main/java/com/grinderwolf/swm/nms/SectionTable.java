@@ -0,0 +1,144 @@
+package com.grinderwolf.swm.nms;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chunk sections that are used by more than one chunk of a world. Each of them
+ * is stored once, and chunk frames refer to them by their index in the table.
+ *
+ * Slime chunk sections are never modified once created (changes made by the server
+ * end up in new sections when the chunk is saved), so every chunk using a shared
+ * section gets the same decoded instance.
+ */
+public class SectionTable {
+
+    private final List<byte[]> sections = new ArrayList<>();
+    private final List<CraftSlimeChunkSection> decodedSections = new ArrayList<>();
+    private final Map<ByteArrayKey, Integer> sectionIndices = new HashMap<>();
+
+    /**
+     * Returns the index of a serialized section, or -1 if it's not in the table.
+     */
+    public synchronized int indexOf(byte[] section) {
+        return sectionIndices.getOrDefault(new ByteArrayKey(section), -1);
+    }
+
+    /**
+     * Adds a serialized section to the table, unless it's already there.
+     *
+     * @return The index of the section.
+     */
+    public synchronized int add(byte[] section) {
+        return sectionIndices.computeIfAbsent(new ByteArrayKey(section), key -> {
+            sections.add(section);
+            decodedSections.add(null);
+
+            return sections.size() - 1;
+        });
+    }
+
+    public synchronized byte[] get(int index) {
+        return sections.get(index);
+    }
+
+    public synchronized int size() {
+        return sections.size();
+    }
+
+    /**
+     * Estimates the heap taken up by the sections of this table, both serialized and decoded, in bytes.
+     */
+    public synchronized long getMemoryUsage() {
+        long size = 0;
+
+        for (int i = 0; i < sections.size(); i++) {
+            size += MemoryEstimator.arraySize(sections.get(i).length, 1);
+            CraftSlimeChunkSection section = decodedSections.get(i);
+
+            if (section != null) {
+                size += MemoryEstimator.objectSize(24) + MemoryEstimator.nibbleArraySize(section.getSharedBlockLight())
+                        + MemoryEstimator.nibbleArraySize(section.getSharedSkyLight());
+
+                if (section.getSharedBlockStates() != null) {
+                    size += MemoryEstimator.arraySize(section.getSharedBlockStates().length, 8);
+                }
+
+                if (section.getSharedBlocks() != null) {
+                    size += MemoryEstimator.arraySize(section.getSharedBlocks().length, 1) + MemoryEstimator.nibbleArraySize(section.getSharedData());
+                }
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns the decoded section at the given index, decoding it if no chunk has used it yet.
+     */
+    public synchronized CraftSlimeChunkSection getSection(int index, byte worldVersion, int version, BlockPalette blockPalette) throws IOException {
+        CraftSlimeChunkSection section = decodedSections.get(index);
+
+        if (section == null) {
+            section = ChunkDeserializer.readChunkSection(ByteBuffer.wrap(sections.get(index)), worldVersion, version, blockPalette);
+            decodedSections.set(index, section);
+        }
+
+        return section;
+    }
+
+    /**
+     * Creates a new table with just some of the sections of this one, in the same order.
+     *
+     * @param used The indices of the sections to keep.
+     */
+    public synchronized SectionTable subset(BitSet used) {
+        SectionTable table = new SectionTable();
+
+        for (int index = used.nextSetBit(0); index >= 0; index = used.nextSetBit(index + 1)) {
+            table.sectionIndices.put(new ByteArrayKey(sections.get(index)), table.sections.size());
+            table.sections.add(sections.get(index));
+            table.decodedSections.add(decodedSections.get(index));
+        }
+
+        return table;
+    }
+
+    /**
+     * Writes some of the sections of this table, in the same order.
+     *
+     * @param used The indices of the sections to write.
+     */
+    public synchronized void write(DataOutputStream outStream, BitSet used) throws IOException {
+        outStream.writeInt(used.cardinality());
+
+        for (int index = used.nextSetBit(0); index >= 0; index = used.nextSetBit(index + 1)) {
+            byte[] section = sections.get(index);
+
+            outStream.writeInt(section.length);
+            outStream.write(section);
+        }
+    }
+
+    public static SectionTable read(ByteBuffer buffer) {
+        SectionTable table = new SectionTable();
+        int sectionCount = buffer.getInt();
+
+        // Sections are added as they are, so their indices match the ones in the chunk index
+        for (int i = 0; i < sectionCount; i++) {
+            byte[] section = ChunkDeserializer.readByteArray(buffer, buffer.getInt());
+
+            table.sectionIndices.putIfAbsent(new ByteArrayKey(section), table.sections.size());
+            table.sections.add(section);
+            table.decodedSections.add(null);
+        }
+
+        return table;
+    }
+}
@@ -0,0 +1,127 @@
+package com.grinderwolf.swm.nms;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * How a segment of a slime world is compressed. Set through the
+ * world's compression properties, as <code>none</code>,
+ * <code>zstd</code>, <code>zstd:&lt;level&gt;</code>, <code>lz4</code>
+ * or <code>lz4:&lt;level&gt;</code>.
+ */
+@Getter
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class SegmentCompression {
+
+    /** How every segment was compressed before the SRF stored it **/
+    public static final SegmentCompression DEFAULT = new SegmentCompression(Codec.ZSTD, 3);
+    public static final SegmentCompression NONE = new SegmentCompression(Codec.NONE, 0);
+
+    /** LZ4's fast compressor, level 0 **/
+    public static final SegmentCompression LZ4 = new SegmentCompression(Codec.LZ4, 0);
+
+    public static final int MIN_ZSTD_LEVEL = -7;
+    public static final int MAX_ZSTD_LEVEL = 22;
+
+    // Levels of LZ4's high compression mode, which is used for any level above 0
+    public static final int MIN_LZ4_LEVEL = 1;
+    public static final int MAX_LZ4_LEVEL = 17;
+
+    private final Codec codec;
+    private final int level;
+
+    /**
+     * Parses a compression property value.
+     *
+     * @throws IllegalArgumentException if the codec is unknown or the level is out of its range.
+     */
+    public static SegmentCompression parse(String value) {
+        String[] split = value.toLowerCase().split(":", 2);
+
+        switch (split[0]) {
+            case "none":
+                if (split.length == 1) {
+                    return NONE;
+                }
+
+                throw new IllegalArgumentException("Compression 'none' doesn't take a level");
+            case "zstd":
+                if (split.length == 1) {
+                    return DEFAULT;
+                }
+
+                return new SegmentCompression(Codec.ZSTD, parseLevel(split[1], MIN_ZSTD_LEVEL, MAX_ZSTD_LEVEL));
+            case "lz4":
+                if (split.length == 1) {
+                    return LZ4;
+                }
+
+                return new SegmentCompression(Codec.LZ4, parseLevel(split[1], MIN_LZ4_LEVEL, MAX_LZ4_LEVEL));
+            default:
+                throw new IllegalArgumentException("Unknown compression codec '" + split[0] + "'");
+        }
+    }
+
+    private static int parseLevel(String value, int minLevel, int maxLevel) {
+        int level;
+
+        try {
+            level = Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid compression level '" + value + "'");
+        }
+
+        if (level < minLevel || level > maxLevel) {
+            throw new IllegalArgumentException("Compression level " + level + " is not between " + minLevel + " and " + maxLevel);
+        }
+
+        return level;
+    }
+
+    public static SegmentCompression read(ByteBuffer buffer) throws IOException {
+        byte codecId = buffer.get();
+        byte level = buffer.get();
+
+        for (Codec codec : Codec.values()) {
+            if (codec.getId() == codecId) {
+                return codec == Codec.NONE ? NONE : new SegmentCompression(codec, level);
+            }
+        }
+
+        throw new IOException("Unknown compression codec " + codecId);
+    }
+
+    public void write(DataOutputStream outStream) throws IOException {
+        outStream.writeByte(codec.getId());
+        outStream.writeByte(level);
+    }
+
+    @Override
+    public String toString() {
+        switch (codec) {
+            case NONE:
+                return "none";
+            case LZ4:
+                return level == 0 ? "lz4" : "lz4:" + level;
+            default:
+                return "zstd:" + level;
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public enum Codec {
+
+        NONE(0),
+        ZSTD(1),
+        LZ4(2);
+
+        private final int id;
+    }
+}
@@ -17,4 +17,12 @@ public interface SlimeNMS {
     default CompoundTag convertChunk(CompoundTag chunkTag) {
         return chunkTag;
     }
+
+    /**
+     * Runs an action that reads the entities of many chunks of a world from the main thread,
+     * letting the server save the entities and sort them by chunk once instead of once per chunk.
+     */
+    default void captureEntities(World world, Runnable action) {
+        action.run();
+    }
 }
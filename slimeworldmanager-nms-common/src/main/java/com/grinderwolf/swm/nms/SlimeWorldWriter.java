@@ -0,0 +1,281 @@
+package com.grinderwolf.swm.nms;
+
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.TagType;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.grinderwolf.swm.api.utils.SlimeFormat;
+import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
+import lombok.RequiredArgsConstructor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import static com.grinderwolf.swm.api.world.properties.SlimeProperties.*;
+
+/**
+ * Writes slime files. Both the plugin and the importer go through this class, so
+ * there's a single place that knows how the segments of a world are laid out.
+ */
+public class SlimeWorldWriter {
+
+    // Position of the save timestamp inside the metadata: header, version, metadata length and world version come before it
+    private static final int TIMESTAMP_OFFSET = SlimeFormat.SLIME_HEADER.length + 1 + 4 + 1;
+
+    /**
+     * Writes a world to the given stream.
+     *
+     * @param frames The chunks of the world, already compressed using the chunk compression of
+     *               the property map and sorted by their key. They must all share the same section table.
+     * @param extraData The "extra" tag, which should already contain the world properties.
+     * @param dictionary The dictionary the frames were compressed with, and the NBT segments will be.
+     * @throws IOException if the world could not be written.
+     */
+    public static void write(OutputStream outputStream, byte worldVersion, List<EncodedSlimeChunk> frames, BlockPalette blockPalette,
+                             SectionTable sectionTable, List<CompoundTag> tileEntities, List<CompoundTag> entities, CompoundTag extraData,
+                             List<CompoundTag> worldMaps, SlimePropertyMap propertyMap, CompressionDictionary dictionary) throws IOException {
+        // Segment compression
+        SegmentCompression chunkCompression = SegmentCompression.parse(propertyMap.getValue(CHUNK_COMPRESSION));
+        SegmentCompression tileEntityCompression = SegmentCompression.parse(propertyMap.getValue(TILE_ENTITY_COMPRESSION));
+        SegmentCompression entityCompression = SegmentCompression.parse(propertyMap.getValue(ENTITY_COMPRESSION));
+        SegmentCompression extraCompression = SegmentCompression.parse(propertyMap.getValue(EXTRA_COMPRESSION));
+        SegmentCompression mapCompression = SegmentCompression.parse(propertyMap.getValue(MAP_COMPRESSION));
+
+        // Lowest chunk coordinates
+        int minX = frames.stream().mapToInt(EncodedSlimeChunk::getX).min().orElse(0);
+        int minZ = frames.stream().mapToInt(EncodedSlimeChunk::getZ).min().orElse(0);
+        int maxX = frames.stream().mapToInt(EncodedSlimeChunk::getX).max().orElse(0);
+        int maxZ = frames.stream().mapToInt(EncodedSlimeChunk::getZ).max().orElse(0);
+
+        // Width and depth
+        int width = maxX - minX + 1;
+        int depth = maxZ - minZ + 1;
+
+        // Segments are compressed before anything is written, as their sizes go into the metadata
+        BitSet usedSections = getUsedSections(frames);
+
+        // Block palette
+        ByteArrayOutputStream blockPaletteByteStream = new ByteArrayOutputStream();
+        blockPalette.write(new DataOutputStream(blockPaletteByteStream));
+
+        byte[] blockPaletteData = blockPaletteByteStream.toByteArray();
+        CompressedSegment blockPaletteSegment = new CompressedSegment(CompressionPool.compress(blockPaletteData, 0, blockPaletteData.length,
+                chunkCompression, dictionary), blockPaletteData.length);
+
+        // Section table
+        ByteArrayOutputStream sectionTableByteStream = new ByteArrayOutputStream();
+        sectionTable.write(new DataOutputStream(sectionTableByteStream), usedSections);
+
+        byte[] sectionTableData = sectionTableByteStream.toByteArray();
+        CompressedSegment sectionTableSegment = new CompressedSegment(CompressionPool.compress(sectionTableData, 0, sectionTableData.length,
+                chunkCompression, dictionary), sectionTableData.length);
+
+        // Tile Entities
+        ListTag<CompoundTag> tileEntitiesNbtList = new ListTag<>("tiles", TagType.TAG_COMPOUND, tileEntities);
+        CompoundTag tileEntitiesCompound = new CompoundTag("", new CompoundMap(Collections.singletonList(tileEntitiesNbtList)));
+        CompressedSegment tileEntitiesSegment = compressTag(tileEntitiesCompound, tileEntityCompression, dictionary);
+
+        // Entities
+        CompressedSegment entitiesSegment = null;
+
+        if (!entities.isEmpty()) {
+            ListTag<CompoundTag> entitiesNbtList = new ListTag<>("entities", TagType.TAG_COMPOUND, entities);
+            CompoundTag entitiesCompound = new CompoundTag("", new CompoundMap(Collections.singletonList(entitiesNbtList)));
+            entitiesSegment = compressTag(entitiesCompound, entityCompression, dictionary);
+        }
+
+        // Extra Tag
+        CompressedSegment extraSegment = compressTag(extraData, extraCompression, dictionary);
+
+        // World Maps
+        CompoundMap map = new CompoundMap();
+        map.put("maps", new ListTag<>("maps", TagType.TAG_COMPOUND, worldMaps));
+
+        CompoundTag mapsCompound = new CompoundTag("", map);
+        CompressedSegment mapsSegment = compressTag(mapsCompound, mapCompression, dictionary);
+
+        DataOutputStream outStream = new DataOutputStream(outputStream);
+
+        // File Header and Slime version
+        outStream.write(SlimeFormat.SLIME_HEADER);
+        outStream.write(SlimeFormat.SLIME_VERSION);
+
+        // Metadata, never compressed so the world can be inspected without reading the rest of the file
+        ByteArrayOutputStream metadataByteStream = new ByteArrayOutputStream();
+        DataOutputStream metadataStream = new DataOutputStream(metadataByteStream);
+        byte[] properties = NbtCodec.serialize(propertyMap.toCompound());
+
+        metadataStream.writeByte(worldVersion);
+        metadataStream.writeLong(System.currentTimeMillis());
+        metadataStream.writeShort(minX);
+        metadataStream.writeShort(minZ);
+        metadataStream.writeShort(width);
+        metadataStream.writeShort(depth);
+        metadataStream.writeInt(frames.size());
+        metadataStream.writeInt(blockPaletteSegment.compressedData.length);
+        metadataStream.writeInt(sectionTableSegment.compressedData.length);
+        metadataStream.writeInt(frames.stream().mapToInt(frame -> frame.getCompressedData().length).sum());
+        metadataStream.writeInt(tileEntitiesSegment.compressedData.length);
+        metadataStream.writeInt(entitiesSegment == null ? 0 : entitiesSegment.compressedData.length);
+        metadataStream.writeInt(extraSegment.compressedData.length);
+        metadataStream.writeInt(mapsSegment.compressedData.length);
+        metadataStream.writeInt(properties.length);
+        metadataStream.write(properties);
+
+        outStream.writeInt(metadataByteStream.size());
+        metadataByteStream.writeTo(outStream);
+
+        // Compression dictionary
+        outStream.writeInt(dictionary == null ? 0 : dictionary.getId());
+
+        chunkCompression.write(outStream);
+        tileEntityCompression.write(outStream);
+        entityCompression.write(outStream);
+        extraCompression.write(outStream);
+        mapCompression.write(outStream);
+
+        // Chunk Bitmask
+        BitSet chunkBitset = new BitSet(width * depth);
+
+        for (EncodedSlimeChunk frame : frames) {
+            int bitsetIndex = (frame.getZ() - minZ) * width + (frame.getX() - minX);
+
+            chunkBitset.set(bitsetIndex, true);
+        }
+
+        int chunkMaskSize = (int) Math.ceil((width * depth) / 8.0D);
+        ChunkSerializer.writeBitSetAsBytes(outStream, chunkBitset, chunkMaskSize);
+
+        blockPaletteSegment.write(outStream);
+        sectionTableSegment.write(outStream);
+
+        // Chunk index, with the shared sections pointing to their index in the table that gets written
+        int[] sectionIndices = new int[usedSections.length()];
+        int usedSectionCount = 0;
+
+        for (int index = usedSections.nextSetBit(0); index >= 0; index = usedSections.nextSetBit(index + 1)) {
+            sectionIndices[index] = usedSectionCount++;
+        }
+
+        for (EncodedSlimeChunk frame : frames) {
+            outStream.writeInt(frame.getCompressedData().length);
+            outStream.writeInt(frame.getDataLength());
+            outStream.writeLong(XXHash64.hash(frame.getCompressedData()));
+            outStream.writeShort(frame.getSharedSectionMask());
+
+            for (int index : frame.getSharedSections()) {
+                outStream.writeInt(sectionIndices[index]);
+            }
+        }
+
+        // Chunks
+        for (EncodedSlimeChunk frame : frames) {
+            outStream.write(frame.getCompressedData());
+        }
+
+        tileEntitiesSegment.write(outStream);
+        outStream.writeBoolean(entitiesSegment != null);
+
+        if (entitiesSegment != null) {
+            entitiesSegment.write(outStream);
+        }
+
+        extraSegment.write(outStream);
+        mapsSegment.write(outStream);
+
+        outStream.flush();
+    }
+
+    /**
+     * Hashes a serialized world, leaving out the time it was saved at. Two saves of a world
+     * that didn't change in between hash the same, even though they were written at different times.
+     *
+     * @param serializedWorld A world written by this class.
+     * @return The hash of everything but the save timestamp.
+     */
+    public static long hashPayload(byte[] serializedWorld) {
+        if (serializedWorld.length < TIMESTAMP_OFFSET + 8) {
+            return XXHash64.hash(serializedWorld);
+        }
+
+        long hash = XXHash64.hash(serializedWorld, 0, TIMESTAMP_OFFSET, 0L);
+        int dataStart = TIMESTAMP_OFFSET + 8;
+
+        return XXHash64.hash(serializedWorld, dataStart, serializedWorld.length - dataStart, hash);
+    }
+
+    /**
+     * Returns the indices of the section table entries used by some frames.
+     */
+    public static BitSet getUsedSections(List<EncodedSlimeChunk> frames) {
+        BitSet usedSections = new BitSet();
+
+        for (EncodedSlimeChunk frame : frames) {
+            for (int index : frame.getSharedSections()) {
+                usedSections.set(index);
+            }
+        }
+
+        return usedSections;
+    }
+
+    private static CompressedSegment compressTag(CompoundTag tag, SegmentCompression compression, CompressionDictionary dictionary) throws IOException {
+        if (tag == null || tag.getValue().isEmpty()) {
+            return new CompressedSegment(CompressionPool.compress(new byte[0], 0, 0, compression, dictionary), 0);
+        }
+
+        // LZ4 blocks are compressed in one go, so the tag has to be serialized first
+        if (compression.getCodec() == SegmentCompression.Codec.LZ4) {
+            CompressionPool.ScratchOutputStream tagByteStream = CompressionPool.getSerializeStream();
+            NbtCodec.write(tagByteStream, tag);
+
+            return new CompressedSegment(CompressionPool.compress(tagByteStream.getBuffer(), 0, tagByteStream.size(), compression, dictionary),
+                    tagByteStream.size());
+        }
+
+        // The tag goes straight into the compressor, only the compressed bytes are kept around
+        ByteArrayOutputStream compressedByteStream = new ByteArrayOutputStream();
+        OutputStream compressingStream = compressedByteStream;
+
+        if (compression.getCodec() == SegmentCompression.Codec.ZSTD) {
+            ZstdOutputStream zstdStream = new ZstdOutputStream(compressedByteStream, compression.getLevel());
+
+            if (dictionary != null) {
+                zstdStream.setDict(dictionary.getData());
+            }
+
+            compressingStream = zstdStream;
+        }
+
+        long dataLength;
+
+        try (OutputStream stream = compressingStream) {
+            dataLength = NbtCodec.write(stream, tag);
+        }
+
+        return new CompressedSegment(compressedByteStream.toByteArray(), (int) dataLength);
+    }
+
+    /**
+     * A compressed segment, kept around until the rest of the world file is written.
+     */
+    @RequiredArgsConstructor
+    private static class CompressedSegment {
+
+        private final byte[] compressedData;
+        private final int dataLength;
+
+        private void write(DataOutputStream outStream) throws IOException {
+            outStream.writeInt(compressedData.length);
+            outStream.writeInt(dataLength);
+            outStream.writeLong(XXHash64.hash(compressedData));
+            outStream.write(compressedData);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.grinderwolf.swm.nms;
+
+/**
+ * Plain Java implementation of the 64-bit xxHash algorithm,
+ * used to tell whether a serialized world has changed.
+ */
+public class XXHash64 {
+
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+
+    public static long hash(byte[] data) {
+        return hash(data, 0, data.length, 0L);
+    }
+
+    public static long hash(byte[] data, int offset, int length, long seed) {
+        int end = offset + length;
+        int index = offset;
+        long hash;
+
+        if (length >= 32) {
+            long v1 = seed + PRIME_1 + PRIME_2;
+            long v2 = seed + PRIME_2;
+            long v3 = seed;
+            long v4 = seed - PRIME_1;
+
+            do {
+                v1 = round(v1, readLong(data, index));
+                v2 = round(v2, readLong(data, index + 8));
+                v3 = round(v3, readLong(data, index + 16));
+                v4 = round(v4, readLong(data, index + 24));
+                index += 32;
+            } while (index <= end - 32);
+
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = seed + PRIME_5;
+        }
+
+        hash += length;
+
+        while (index <= end - 8) {
+            hash ^= round(0, readLong(data, index));
+            hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_4;
+            index += 8;
+        }
+
+        if (index <= end - 4) {
+            hash ^= (readInt(data, index) & 0xFFFFFFFFL) * PRIME_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME_2 + PRIME_3;
+            index += 4;
+        }
+
+        while (index < end) {
+            hash ^= (data[index] & 0xFF) * PRIME_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME_1;
+            index++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME_3;
+        hash ^= hash >>> 32;
+
+        return hash;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME_2;
+        acc = Long.rotateLeft(acc, 31);
+
+        return acc * PRIME_1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+
+        return acc * PRIME_1 + PRIME_4;
+    }
+
+    // xxHash reads its input as little-endian
+    private static long readLong(byte[] data, int index) {
+        return (data[index] & 0xFFL) | (data[index + 1] & 0xFFL) << 8 | (data[index + 2] & 0xFFL) << 16 | (data[index + 3] & 0xFFL) << 24
+                | (data[index + 4] & 0xFFL) << 32 | (data[index + 5] & 0xFFL) << 40 | (data[index + 6] & 0xFFL) << 48 | (data[index + 7] & 0xFFL) << 56;
+    }
+
+    private static int readInt(byte[] data, int index) {
+        return (data[index] & 0xFF) | (data[index + 1] & 0xFF) << 8 | (data[index + 2] & 0xFF) << 16 | (data[index + 3] & 0xFF) << 24;
+    }
+}
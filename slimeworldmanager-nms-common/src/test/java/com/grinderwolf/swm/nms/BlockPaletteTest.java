@@ -0,0 +1,107 @@
+package com.grinderwolf.swm.nms;
+
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.StringTag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockPaletteTest {
+
+    @Test
+    void sameContentGetsTheSameId() throws IOException {
+        BlockPalette palette = new BlockPalette();
+
+        assertEquals(0, palette.getId(createState("minecraft:stone")));
+        assertEquals(1, palette.getId(createState("minecraft:dirt")));
+        assertEquals(0, palette.getId(createState("minecraft:stone")));
+        assertEquals(2, palette.size());
+    }
+
+    @Test
+    void modifiedTagsAreLookedUpByContent() throws IOException {
+        BlockPalette palette = new BlockPalette();
+        CompoundTag state = createState("minecraft:stone");
+
+        assertEquals(0, palette.getId(state));
+
+        state.getValue().put(new StringTag("Name", "minecraft:granite"));
+        assertEquals(1, palette.getId(state));
+    }
+
+    @Test
+    void copiesOfHandedOutStatesKeepTheirId() throws IOException {
+        BlockPalette palette = readBack(createState("minecraft:air"), createState("minecraft:stone"));
+        CompoundTag state = palette.get(1);
+
+        assertSame(state, palette.get(1));
+        assertEquals(1, palette.getId(state));
+
+        CompoundTag renamedState = state.clone();
+        renamedState.getValue().put(new StringTag("Name", "minecraft:granite"));
+
+        assertEquals(2, palette.getId(renamedState));
+        assertEquals("minecraft:stone", palette.get(1).getStringValue("Name").orElse(null));
+        assertEquals(1, palette.getId(state.clone()));
+    }
+
+    @Test
+    void copiesDontChangeTheOriginal() throws IOException {
+        BlockPalette palette = new BlockPalette();
+        palette.getId(createState("minecraft:stone"));
+
+        BlockPalette copy = palette.copy();
+        assertEquals(1, copy.getId(createState("minecraft:dirt")));
+        assertEquals(1, palette.size());
+        assertTrue(copy.isCopyOf(palette));
+        assertFalse(palette.isCopyOf(copy));
+    }
+
+    @Test
+    void frozenPalettesOnlyGiveExistingIds() throws IOException {
+        BlockPalette palette = new BlockPalette();
+        palette.getId(createState("minecraft:stone"));
+        palette.freeze();
+
+        assertEquals(0, palette.getId(createState("minecraft:stone")));
+        assertThrows(BlockPalette.FrozenPaletteException.class, () -> palette.getId(createState("minecraft:dirt")));
+        assertEquals(1, palette.size());
+
+        // Copies of a frozen palette can grow, as nothing else relies on them
+        assertEquals(1, palette.copy().getId(createState("minecraft:dirt")));
+    }
+
+    @Test
+    void unknownIdsAreRejected() {
+        BlockPalette palette = new BlockPalette();
+
+        assertThrows(IOException.class, () -> palette.get(0));
+        assertThrows(IOException.class, () -> palette.get(-1));
+    }
+
+    private static BlockPalette readBack(CompoundTag... states) throws IOException {
+        BlockPalette palette = new BlockPalette();
+
+        for (CompoundTag state : states) {
+            palette.getId(state);
+        }
+
+        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
+        palette.write(new DataOutputStream(outByteStream));
+
+        return BlockPalette.read(ByteBuffer.wrap(outByteStream.toByteArray()));
+    }
+
+    private static CompoundTag createState(String name) {
+        CompoundMap map = new CompoundMap();
+        map.put(new StringTag("Name", name));
+
+        return new CompoundTag("", map);
+    }
+}
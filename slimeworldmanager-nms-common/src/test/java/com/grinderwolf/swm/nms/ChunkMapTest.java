@@ -0,0 +1,218 @@
+package com.grinderwolf.swm.nms;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkMapTest {
+
+    @Test
+    void putGetAndRemove() {
+        ChunkMap<String> map = new ChunkMap<>();
+
+        assertTrue(map.isEmpty());
+        assertNull(map.put(ChunkMap.getKey(1, 2), "a"));
+        assertEquals("a", map.put(ChunkMap.getKey(1, 2), "b"));
+        assertEquals("b", map.get(1, 2));
+        assertTrue(map.containsKey(ChunkMap.getKey(1, 2)));
+        assertEquals(1, map.size());
+
+        assertEquals("b", map.remove(ChunkMap.getKey(1, 2)));
+        assertNull(map.remove(ChunkMap.getKey(1, 2)));
+        assertNull(map.get(1, 2));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void negativeCoordinatesHaveTheirOwnKeys() {
+        ChunkMap<String> map = new ChunkMap<>();
+        int[][] coordinates = { { 0, 0 }, { -1, 0 }, { 0, -1 }, { -1, -1 }, { 1, -1 }, { -1, 1 },
+                { Integer.MIN_VALUE, Integer.MAX_VALUE }, { Integer.MAX_VALUE, Integer.MIN_VALUE } };
+
+        for (int[] coordinate : coordinates) {
+            map.put(ChunkMap.getKey(coordinate[0], coordinate[1]), coordinate[0] + "," + coordinate[1]);
+        }
+
+        assertEquals(coordinates.length, map.size());
+
+        for (int[] coordinate : coordinates) {
+            assertEquals(coordinate[0] + "," + coordinate[1], map.get(coordinate[0], coordinate[1]));
+        }
+    }
+
+    @Test
+    void removalsDontBreakProbeChains() {
+        ChunkMap<Integer> map = new ChunkMap<>();
+
+        // Enough keys for some of them to collide in the table
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, i);
+        }
+
+        for (int i = 0; i < 1000; i += 3) {
+            assertEquals(i, map.remove(i));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 3 == 0 ? null : Integer.valueOf(i), map.get(i));
+        }
+
+        // Removed keys can be added back, taking the place of their tombstones
+        for (int i = 0; i < 1000; i += 3) {
+            assertNull(map.put(i, -i));
+        }
+
+        assertEquals(1000, map.size());
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 3 == 0 ? -i : i, map.get(i));
+        }
+    }
+
+    @Test
+    void tombstonesDontFillTheTable() {
+        ChunkMap<Integer> map = new ChunkMap<>();
+
+        // Every key is new, so each cycle leaves a tombstone behind until the table is rebuilt
+        for (int i = 0; i < 100000; i++) {
+            map.put(i, i);
+            map.put(i + 1_000_000L, i);
+            assertEquals(i, map.remove(i));
+        }
+
+        assertEquals(100000, map.size());
+        assertNull(map.get(-1));
+
+        for (int i = 0; i < 100000; i++) {
+            assertEquals(i, map.get(i + 1_000_000L));
+        }
+    }
+
+    @Test
+    void nullValuesAreRejected() {
+        ChunkMap<String> map = new ChunkMap<>();
+
+        assertThrows(NullPointerException.class, () -> map.put(0, null));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void putAllAndReplaceAll() {
+        ChunkMap<Integer> map = new ChunkMap<>();
+        ChunkMap<Integer> other = new ChunkMap<>(100);
+
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+            other.put(i + 50, -i);
+        }
+
+        other.remove(50);
+        map.putAll(other);
+        assertEquals(149, map.size());
+        assertEquals(0, map.get(0));
+        assertEquals(-1, map.get(51));
+
+        map.replaceAll(value -> value * 2);
+        assertEquals(-2, map.get(51));
+        assertEquals(20, map.get(10));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(10));
+        assertFalse(map.iterator().hasNext());
+    }
+
+    @Test
+    void iteratorsSurviveModification() {
+        ChunkMap<Integer> map = new ChunkMap<>();
+
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+
+        Set<Integer> seen = new HashSet<>();
+        Iterator<Integer> iterator = map.iterator();
+
+        // Iterators are weakly consistent: changes may or may not show up, but nothing is handed out twice
+        int i = 100;
+
+        while (iterator.hasNext()) {
+            Integer value = iterator.next();
+            assertTrue(seen.add(value));
+            assertTrue(value < i);
+
+            map.put(i, i);
+            map.remove(i - 100);
+            i++;
+        }
+
+        assertFalse(seen.isEmpty());
+        assertEquals(100, map.size());
+
+        Iterator<Integer> newIterator = map.iterator();
+        newIterator.next();
+        assertThrows(UnsupportedOperationException.class, newIterator::remove);
+    }
+
+    @Test
+    void readersSeeEveryEntryWhileTheTableGrows() throws InterruptedException {
+        ChunkMap<Long> map = new ChunkMap<>();
+        AtomicInteger published = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        int entries = 200000;
+
+        Thread[] readers = new Thread[4];
+
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                try {
+                    int count;
+
+                    do {
+                        count = published.get();
+
+                        // Even keys are never removed, so they must always be found once published
+                        for (int key = 0; key < count; key += 2) {
+                            Long value = map.get(key);
+
+                            if (value == null || value != key * 3L) {
+                                throw new AssertionError("Key " + key + " maps to " + value);
+                            }
+                        }
+                    } while (count < entries && failure.get() == null);
+                } catch (Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                }
+            });
+            readers[i].start();
+        }
+
+        for (int key = 0; key < entries; key++) {
+            map.put(key, key * 3L);
+
+            // Odd keys leave tombstones behind, so the table is rebuilt as well as resized
+            if (key % 2 == 1) {
+                map.remove(key);
+            }
+
+            if (key % 1000 == 999) {
+                published.set(key + 1);
+            }
+        }
+
+        published.set(entries);
+
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(entries / 2, map.size());
+    }
+}
@@ -0,0 +1,109 @@
+package com.grinderwolf.swm.nms;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionPoolTest {
+
+    private static final String[] COMPRESSIONS = { "none", "zstd:-7", "zstd", "zstd:19", "lz4", "lz4:9" };
+
+    @Test
+    void compressedDataReadsBack() throws IOException {
+        byte[] data = createData(100000);
+
+        for (String value : COMPRESSIONS) {
+            SegmentCompression compression = SegmentCompression.parse(value);
+            byte[] compressedData = CompressionPool.compress(data, 0, data.length, compression, null);
+
+            assertArrayEquals(data, toArray(CompressionPool.decompress(compressedData, data.length, compression, null)), value);
+        }
+    }
+
+    @Test
+    void compressesJustTheGivenRange() throws IOException {
+        byte[] data = createData(1000);
+        byte[] compressedData = CompressionPool.compress(data, 100, 500);
+
+        assertArrayEquals(Arrays.copyOfRange(data, 100, 600), toArray(CompressionPool.decompress(compressedData, 500)));
+    }
+
+    @Test
+    void emptyDataReadsBack() throws IOException {
+        for (String value : COMPRESSIONS) {
+            SegmentCompression compression = SegmentCompression.parse(value);
+            byte[] compressedData = CompressionPool.compress(new byte[0], 0, 0, compression, null);
+
+            assertEquals(0, CompressionPool.decompress(compressedData, 0, compression, null).remaining(), value);
+        }
+    }
+
+    @Test
+    void dictionaryCompressedDataReadsBack() throws IOException {
+        List<byte[]> samples = new ArrayList<>();
+
+        for (int i = 0; i < 2000; i++) {
+            samples.add(("{\"id\":\"minecraft:chest\",\"x\":" + i + ",\"y\":" + (i % 256) + ",\"z\":" + (i * 31)
+                    + ",\"Items\":[{\"id\":\"minecraft:stone\",\"Count\":" + (i % 64) + "}]}").getBytes(StandardCharsets.US_ASCII));
+        }
+
+        CompressionDictionary dictionary = CompressionDictionary.train(samples, 16 * 1024);
+        byte[] data = samples.get(1234);
+
+        for (String value : new String[] { "zstd", "zstd:19" }) {
+            SegmentCompression compression = SegmentCompression.parse(value);
+            byte[] compressedData = CompressionPool.compress(data, 0, data.length, compression, dictionary);
+
+            assertArrayEquals(data, toArray(CompressionPool.decompress(compressedData, data.length, compression, dictionary)), value);
+        }
+    }
+
+    @Test
+    void wrongLengthsAreRejected() {
+        byte[] data = createData(1000);
+
+        for (String value : COMPRESSIONS) {
+            SegmentCompression compression = SegmentCompression.parse(value);
+            byte[] compressedData = CompressionPool.compress(data, 0, data.length, compression, null);
+
+            assertThrows(IOException.class, () -> CompressionPool.decompress(compressedData, data.length - 1, compression, null), value);
+            assertThrows(IOException.class, () -> CompressionPool.decompress(compressedData, data.length + 1, compression, null), value);
+            assertThrows(IOException.class, () -> CompressionPool.decompress(compressedData, -1, compression, null), value);
+        }
+    }
+
+    @Test
+    void malformedDataIsRejected() {
+        byte[] data = createData(1000);
+        byte[] compressedData = CompressionPool.compress(data, 0, data.length, SegmentCompression.LZ4, null);
+        byte[] truncatedData = Arrays.copyOf(compressedData, compressedData.length / 2);
+
+        assertThrows(IOException.class, () -> CompressionPool.decompress(truncatedData, data.length, SegmentCompression.LZ4, null));
+        assertThrows(IOException.class, () -> CompressionPool.decompress(new byte[] { (byte) 0xFF, 1, 2, 3 }, data.length, SegmentCompression.LZ4, null));
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] array = new byte[buffer.remaining()];
+        buffer.get(array);
+
+        return array;
+    }
+
+    private static byte[] createData(int length) {
+        byte[] data = new byte[length];
+
+        // Compressible, but not trivially so
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ((i / 16) * 31 + (i % 7));
+        }
+
+        return data;
+    }
+}
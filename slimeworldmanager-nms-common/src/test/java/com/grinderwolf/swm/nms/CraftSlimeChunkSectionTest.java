@@ -0,0 +1,64 @@
+package com.grinderwolf.swm.nms;
+
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.StringTag;
+import com.flowpowered.nbt.TagType;
+import com.grinderwolf.swm.api.utils.NibbleArray;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CraftSlimeChunkSectionTest {
+
+    @Test
+    void gettersReturnCopies() {
+        CraftSlimeChunkSection section = createSection();
+
+        section.getBlockStates()[0] = 42;
+        section.getBlockLight().set(0, 15);
+        section.getSkyLight().set(0, 15);
+        section.getPalette().getValue().get(0).getValue().put(new StringTag("Name", "minecraft:stone"));
+        section.getPalette().getValue().clear();
+
+        assertEquals(0, section.getSharedBlockStates()[0]);
+        assertEquals(0, section.getSharedBlockLight().get(0));
+        assertEquals(0, section.getSharedSkyLight().get(0));
+        assertEquals(1, section.getSharedPalette().getValue().size());
+        assertEquals("minecraft:air", section.getSharedPalette().getValue().get(0).getStringValue("Name").orElse(null));
+    }
+
+    @Test
+    void copiesHaveTheSameContent() {
+        CraftSlimeChunkSection section = createSection();
+
+        assertArrayEquals(section.getSharedBlockStates(), section.getBlockStates());
+        assertArrayEquals(section.getSharedBlockLight().getBacking(), section.getBlockLight().getBacking());
+        assertEquals("minecraft:air", section.getPalette().getValue().get(0).getStringValue("Name").orElse(null));
+        assertNull(section.getBlocks());
+        assertNull(section.getData());
+    }
+
+    @Test
+    void ofKeepsCraftSections() {
+        CraftSlimeChunkSection section = createSection();
+
+        assertSame(section, CraftSlimeChunkSection.of(section));
+        assertNull(CraftSlimeChunkSection.of(null));
+    }
+
+    private static CraftSlimeChunkSection createSection() {
+        CompoundMap air = new CompoundMap();
+        air.put(new StringTag("Name", "minecraft:air"));
+
+        List<CompoundTag> palette = new ArrayList<>();
+        palette.add(new CompoundTag("", air));
+
+        return new CraftSlimeChunkSection(null, null, new ListTag<>("", TagType.TAG_COMPOUND, palette), new long[256],
+                new NibbleArray(new byte[2048]), new NibbleArray(new byte[2048]));
+    }
+}
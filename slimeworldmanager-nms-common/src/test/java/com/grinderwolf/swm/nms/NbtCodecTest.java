@@ -0,0 +1,193 @@
+package com.grinderwolf.swm.nms;
+
+import com.flowpowered.nbt.*;
+import com.flowpowered.nbt.stream.NBTInputStream;
+import com.flowpowered.nbt.stream.NBTOutputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NbtCodecTest {
+
+    @Test
+    void serializesLikeFlowNbt() throws IOException {
+        CompoundTag tag = createTag();
+
+        assertArrayEquals(writeWithFlowNbt(tag), NbtCodec.serialize(tag));
+    }
+
+    @Test
+    void writesLikeFlowNbt() throws IOException {
+        CompoundTag tag = createTag();
+        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
+        long written = NbtCodec.write(outByteStream, tag);
+
+        byte[] expected = writeWithFlowNbt(tag);
+        assertArrayEquals(expected, outByteStream.toByteArray());
+        assertEquals(expected.length, written);
+    }
+
+    @Test
+    void emptyListsKeepTheirElementType() throws IOException {
+        CompoundMap map = new CompoundMap();
+        map.put(new ListTag<>("compounds", TagType.TAG_COMPOUND, new ArrayList<CompoundTag>()));
+        map.put(new ListTag<>("strings", TagType.TAG_STRING, new ArrayList<StringTag>()));
+        CompoundTag tag = new CompoundTag("", map);
+
+        byte[] serializedTag = NbtCodec.serialize(tag);
+        assertArrayEquals(writeWithFlowNbt(tag), serializedTag);
+
+        ListTag<?> list = (ListTag<?>) NbtCodec.readCompound(serializedTag).getValue().get("compounds");
+        assertEquals(TagType.TAG_COMPOUND, list.getElementType());
+        assertTrue(list.getValue().isEmpty());
+    }
+
+    @Test
+    void readsWhatFlowNbtWrites() throws IOException {
+        byte[] serializedTag = writeWithFlowNbt(createTag());
+        CompoundTag tag = NbtCodec.readCompound(serializedTag);
+
+        // Writing the tag back with flow-nbt gives the exact same bytes only if nothing was lost
+        assertArrayEquals(serializedTag, writeWithFlowNbt(tag));
+    }
+
+    @Test
+    void flowNbtReadsWhatIsWritten() throws IOException {
+        byte[] serializedTag = NbtCodec.serialize(createTag());
+
+        try (NBTInputStream inStream = new NBTInputStream(new ByteArrayInputStream(serializedTag), NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN)) {
+            assertArrayEquals(serializedTag, NbtCodec.serialize((CompoundTag) inStream.readTag()));
+        }
+    }
+
+    @Test
+    void readsFromTheMiddleOfABuffer() throws IOException {
+        byte[] serializedTag = NbtCodec.serialize(createTag());
+        ByteBuffer buffer = ByteBuffer.allocate(serializedTag.length + 8);
+        buffer.putInt(42).put(serializedTag).putInt(43).flip();
+
+        assertEquals(42, buffer.getInt());
+        assertArrayEquals(serializedTag, NbtCodec.serialize(NbtCodec.readCompound(buffer, serializedTag.length)));
+        assertEquals(43, buffer.getInt());
+        assertNull(NbtCodec.readCompound(buffer, 0));
+        assertNull(NbtCodec.readCompound(new byte[0]));
+    }
+
+    @Test
+    void rejectsCorruptedTags() throws IOException {
+        byte[] serializedTag = NbtCodec.serialize(createTag());
+
+        for (int length : new int[] { 1, 10, serializedTag.length / 2, serializedTag.length - 1 }) {
+            byte[] truncatedTag = Arrays.copyOf(serializedTag, length);
+
+            assertThrows(BufferUnderflowException.class, () -> NbtCodec.readCompound(truncatedTag));
+        }
+
+        byte[] notACompound = serializedTag.clone();
+        notACompound[0] = 8;
+        assertThrows(IOException.class, () -> NbtCodec.readCompound(notACompound));
+
+        assertThrows(BufferUnderflowException.class, () -> NbtCodec.readCompound(ByteBuffer.wrap(serializedTag), serializedTag.length + 1));
+    }
+
+    @Test
+    void rejectsTagsNestedTooDeep() throws IOException {
+        CompoundTag tag = new CompoundTag("", new CompoundMap());
+
+        for (int i = 0; i < 600; i++) {
+            CompoundMap map = new CompoundMap();
+            map.put(new CompoundTag("child", tag.getValue()));
+            tag = new CompoundTag("", map);
+        }
+
+        CompoundTag deepTag = tag;
+        assertThrows(IOException.class, () -> NbtCodec.serialize(deepTag));
+
+        byte[] serializedTag = writeWithFlowNbt(deepTag);
+        assertThrows(IOException.class, () -> NbtCodec.readCompound(serializedTag));
+    }
+
+    @Test
+    void rejectsStringsTooLong() {
+        char[] chars = new char[0x10000];
+        Arrays.fill(chars, 'a');
+
+        CompoundMap map = new CompoundMap();
+        map.put(new StringTag("string", new String(chars)));
+
+        assertThrows(IOException.class, () -> NbtCodec.serialize(new CompoundTag("", map)));
+    }
+
+    private static byte[] writeWithFlowNbt(CompoundTag tag) throws IOException {
+        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
+
+        try (NBTOutputStream outStream = new NBTOutputStream(outByteStream, NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN)) {
+            outStream.writeTag(tag);
+        }
+
+        return outByteStream.toByteArray();
+    }
+
+    private static CompoundTag createTag() {
+        CompoundMap map = new CompoundMap();
+        map.put(new ByteTag("byte", (byte) -3));
+        map.put(new ShortTag("short", (short) -12345));
+        map.put(new IntTag("int", 0x12345678));
+        map.put(new LongTag("long", 0x123456789ABCDEF0L));
+        map.put(new FloatTag("float", 1.5f));
+        map.put(new DoubleTag("double", -0.1));
+        map.put(new StringTag("ascii", "minecraft:oak_log"));
+        map.put(new StringTag("unicode", "caf\u00e9 \u2603 \ud83d\ude00 nul\u0000"));
+        map.put(new StringTag("empty", ""));
+        map.put(new StringTag("n\u00e4me", "non-ASCII tag name"));
+
+        char[] chars = new char[10000];
+        Arrays.fill(chars, 'x');
+        map.put(new StringTag("longString", new String(chars)));
+
+        // Bigger than the codec's own buffer, so it's written straight to the stream
+        byte[] bytes = new byte[20000];
+
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+
+        map.put(new ByteArrayTag("bytes", bytes));
+        map.put(new IntArrayTag("ints", new int[] { 1, -2, Integer.MAX_VALUE, Integer.MIN_VALUE }));
+        map.put(new LongArrayTag("longs", new long[] { 1, -2, Long.MAX_VALUE, Long.MIN_VALUE }));
+        map.put(new IntArrayTag("noInts", new int[0]));
+
+        List<CompoundTag> compounds = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            CompoundMap element = new CompoundMap();
+            element.put(new StringTag("id", "minecraft:chest"));
+            element.put(new IntTag("x", i));
+            compounds.add(new CompoundTag("", element));
+        }
+
+        map.put(new ListTag<>("compounds", TagType.TAG_COMPOUND, compounds));
+        map.put(new ListTag<>("doubles", TagType.TAG_DOUBLE, Arrays.asList(new DoubleTag("", 1), new DoubleTag("", 2))));
+        map.put(new ListTag<>("lists", TagType.TAG_LIST, Collections.singletonList(
+                new ListTag<>("", TagType.TAG_STRING, Collections.singletonList(new StringTag("", "nested"))))));
+        map.put(new ListTag<>("noCompounds", TagType.TAG_COMPOUND, new ArrayList<CompoundTag>()));
+
+        CompoundMap child = new CompoundMap();
+        child.put(new ByteTag("flag", (byte) 1));
+        map.put(new CompoundTag("child", child));
+        map.put(new CompoundTag("noChildren", new CompoundMap()));
+
+        return new CompoundTag("root", map);
+    }
+}
@@ -0,0 +1,131 @@
+package com.grinderwolf.swm.nms;
+
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.StringTag;
+import com.flowpowered.nbt.TagType;
+import com.grinderwolf.swm.api.utils.NibbleArray;
+import com.grinderwolf.swm.api.utils.SlimeFormat;
+import com.grinderwolf.swm.api.world.SlimeChunkSection;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SectionTableTest {
+
+    private static final byte WORLD_VERSION = 0x06;
+
+    @Test
+    void sameSectionsShareAnIndex() {
+        SectionTable table = new SectionTable();
+
+        assertEquals(-1, table.indexOf(new byte[] { 1, 2, 3 }));
+        assertEquals(0, table.add(new byte[] { 1, 2, 3 }));
+        assertEquals(1, table.add(new byte[] { 4 }));
+        assertEquals(0, table.add(new byte[] { 1, 2, 3 }));
+        assertEquals(0, table.indexOf(new byte[] { 1, 2, 3 }));
+        assertEquals(2, table.size());
+        assertArrayEquals(new byte[] { 4 }, table.get(1));
+    }
+
+    @Test
+    void subsetsKeepTheirOrder() {
+        SectionTable table = createTable(5);
+        BitSet used = new BitSet();
+        used.set(1);
+        used.set(3);
+        used.set(4);
+
+        SectionTable subset = table.subset(used);
+        assertEquals(3, subset.size());
+        assertArrayEquals(table.get(1), subset.get(0));
+        assertArrayEquals(table.get(3), subset.get(1));
+        assertArrayEquals(table.get(4), subset.get(2));
+        assertEquals(1, subset.indexOf(table.get(3)));
+        assertEquals(-1, subset.indexOf(table.get(0)));
+    }
+
+    @Test
+    void writtenTablesReadBack() throws IOException {
+        SectionTable table = createTable(5);
+        BitSet used = new BitSet();
+        used.set(0);
+        used.set(2);
+
+        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
+        table.write(new DataOutputStream(outByteStream), used);
+
+        SectionTable readTable = SectionTable.read(ByteBuffer.wrap(outByteStream.toByteArray()));
+        assertEquals(2, readTable.size());
+        assertArrayEquals(table.get(0), readTable.get(0));
+        assertArrayEquals(table.get(2), readTable.get(1));
+        assertEquals(1, readTable.indexOf(table.get(2)));
+
+        ByteArrayOutputStream emptyByteStream = new ByteArrayOutputStream();
+        table.write(new DataOutputStream(emptyByteStream), new BitSet());
+        assertEquals(0, SectionTable.read(ByteBuffer.wrap(emptyByteStream.toByteArray())).size());
+    }
+
+    @Test
+    void sectionsAreDecodedOnce() throws IOException {
+        BlockPalette palette = new BlockPalette();
+        byte[][] serializedSections = ChunkSerializer.serializeSections(new SlimeChunkSection[] { createSection() }, WORLD_VERSION, palette, true);
+
+        SectionTable table = new SectionTable();
+        int index = table.add(serializedSections[0]);
+
+        CraftSlimeChunkSection section = table.getSection(index, WORLD_VERSION, SlimeFormat.SLIME_VERSION, palette);
+        assertSame(section, table.getSection(index, WORLD_VERSION, SlimeFormat.SLIME_VERSION, palette));
+        assertArrayEquals(createSection().getBlockStates(), section.getBlockStates());
+        assertEquals("minecraft:stone", section.getPalette().getValue().get(1).getStringValue("Name").orElse(null));
+    }
+
+    private static SectionTable createTable(int sectionCount) {
+        SectionTable table = new SectionTable();
+
+        for (int i = 0; i < sectionCount; i++) {
+            byte[] section = new byte[i + 1];
+            section[i] = (byte) (i + 1);
+            table.add(section);
+        }
+
+        return table;
+    }
+
+    private static CraftSlimeChunkSection createSection() {
+        List<CompoundTag> palette = new ArrayList<>();
+        palette.add(createState("minecraft:air"));
+        palette.add(createState("minecraft:stone"));
+
+        int[] indices = new int[4096];
+
+        for (int i = 0; i < indices.length; i += 3) {
+            indices[i] = 1;
+        }
+
+        byte[] light = new byte[2048];
+
+        for (int i = 0; i < light.length; i++) {
+            light[i] = (byte) i;
+        }
+
+        return new CraftSlimeChunkSection(null, null, new ListTag<>("", TagType.TAG_COMPOUND, palette),
+                ChunkSerializer.packBlockStates(indices, palette.size()), new NibbleArray(light), new NibbleArray(light.clone()));
+    }
+
+    private static CompoundTag createState(String name) {
+        CompoundMap map = new CompoundMap();
+        map.put(new StringTag("Name", name));
+
+        return new CompoundTag("", map);
+    }
+}
@@ -0,0 +1,55 @@
+package com.grinderwolf.swm.nms;
+
+import com.grinderwolf.swm.api.world.properties.SlimeProperties;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentCompressionTest {
+
+    private static final String[] VALUES = { "none", "none:3", "zstd", "zstd:-7", "zstd:-8", "zstd:22", "zstd:23", "zstd:fast",
+            "lz4", "LZ4", "lz4:0", "lz4:1", "lz4:17", "lz4:18", "gzip", "gzip:6", "" };
+
+    @Test
+    void parseAgreesWithThePropertyValidator() {
+        for (String value : VALUES) {
+            boolean valid = SlimeProperties.CHUNK_COMPRESSION.getValidator().apply(value);
+
+            if (valid) {
+                assertDoesNotThrow(() -> SegmentCompression.parse(value), value);
+            } else {
+                assertThrows(IllegalArgumentException.class, () -> SegmentCompression.parse(value), value);
+            }
+        }
+    }
+
+    @Test
+    void parsedValuesPrintBack() {
+        assertEquals("none", SegmentCompression.parse("none").toString());
+        assertEquals("zstd:3", SegmentCompression.parse("zstd").toString());
+        assertEquals("zstd:-5", SegmentCompression.parse("zstd:-5").toString());
+        assertEquals("lz4", SegmentCompression.parse("lz4").toString());
+        assertEquals("lz4:9", SegmentCompression.parse("lz4:9").toString());
+    }
+
+    @Test
+    void compressionTableEntriesReadBack() throws IOException {
+        for (String value : new String[] { "none", "zstd:-7", "zstd:19", "lz4", "lz4:17" }) {
+            SegmentCompression compression = SegmentCompression.parse(value);
+            ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
+            compression.write(new DataOutputStream(outByteStream));
+
+            assertEquals(compression, SegmentCompression.read(ByteBuffer.wrap(outByteStream.toByteArray())));
+        }
+    }
+
+    @Test
+    void unknownCodecsAreRejected() {
+        assertThrows(IOException.class, () -> SegmentCompression.read(ByteBuffer.wrap(new byte[] { 9, 0 })));
+    }
+}
@@ -0,0 +1,48 @@
+package com.grinderwolf.swm.nms;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XXHash64Test {
+
+    @Test
+    void matchesReferenceHashes() {
+        assertEquals(0xEF46DB3751D8E999L, XXHash64.hash(new byte[0]));
+        assertEquals(0xD24EC4F1A98C6E5BL, XXHash64.hash(bytes("a")));
+        assertEquals(0x44BC2CF5AD770999L, XXHash64.hash(bytes("abc")));
+
+        // Long enough to go through the 32 byte stripes
+        assertEquals(0xFBCEA83C8A378BF1L, XXHash64.hash(bytes("Nobody inspects the spammish repetition")));
+    }
+
+    @Test
+    void usesTheSeed() {
+        byte[] data = bytes("xxhash");
+
+        assertEquals(0xB559B98D844E0635L, XXHash64.hash(data, 0, data.length, 20141025));
+        assertEquals(XXHash64.hash(data), XXHash64.hash(data, 0, data.length, 0));
+    }
+
+    @Test
+    void hashesJustTheGivenRange() {
+        byte[] data = new byte[100];
+
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+
+        assertEquals(0x8E2272C08247D5DBL, XXHash64.hash(data));
+        assertEquals(0xAEA084C7FB3D1C9FL, XXHash64.hash(data, 3, 90, 42));
+
+        byte[] range = new byte[90];
+        System.arraycopy(data, 3, range, 0, range.length);
+        assertEquals(XXHash64.hash(range, 0, range.length, 42), XXHash64.hash(data, 3, 90, 42));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -6,10 +6,10 @@ import com.flowpowered.nbt.LongArrayTag;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
 import com.grinderwolf.swm.api.world.SlimeChunk;
-import com.grinderwolf.swm.api.world.SlimeChunkSection;
 import com.grinderwolf.swm.api.world.properties.SlimeProperties;
 import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
 import com.grinderwolf.swm.nms.CraftSlimeChunk;
+import com.grinderwolf.swm.nms.CraftSlimeChunkSection;
 import com.grinderwolf.swm.nms.CraftSlimeWorld;
 import lombok.Getter;
 import lombok.Setter;
@@ -106,7 +106,15 @@ public class CustomWorldServer extends WorldServer {
                 LOGGER.info("Saving world " + slimeWorld.getName() + "...");
                 long start = System.currentTimeMillis();
                 byte[] serializedWorld = slimeWorld.serialize();
+
+                if (slimeWorld.isSavedPayload(serializedWorld)) {
+                    LOGGER.info("World " + slimeWorld.getName() + " hasn't changed since its last save, skipping it ("
+                            + slimeWorld.getSkippedSaves() + " saves skipped so far).");
+                    return;
+                }
+
                 slimeWorld.getLoader().saveWorld(slimeWorld.getName(), serializedWorld, false);
+                slimeWorld.setSavedPayload(serializedWorld);
                 LOGGER.info("World " + slimeWorld.getName() + " saved in " + (System.currentTimeMillis() - start) + "ms.");
             } catch (IOException ex) {
                 ex.printStackTrace();
@@ -178,28 +186,29 @@ public class CustomWorldServer extends WorldServer {
         lightEngine.b(pos, true);
 
         for (int sectionId = 0; sectionId < chunk.getSections().length; sectionId++) {
-            SlimeChunkSection slimeSection = chunk.getSections()[sectionId];
+            CraftSlimeChunkSection slimeSection = CraftSlimeChunkSection.of(chunk.getSections()[sectionId]);
 
             if (slimeSection != null) {
                 ChunkSection section = new ChunkSection(sectionId << 4);
 
                 LOGGER.debug("ChunkSection #" + sectionId + " - Chunk (" + pos.x + ", " + pos.z + ") - World " + slimeWorld.getName() + ":");
                 LOGGER.debug("Block palette:");
-                LOGGER.debug(slimeSection.getPalette().toString());
+                LOGGER.debug(slimeSection.getSharedPalette().toString());
                 LOGGER.debug("Block states array:");
-                LOGGER.debug(slimeSection.getBlockStates());
+                LOGGER.debug(slimeSection.getSharedBlockStates());
                 LOGGER.debug("Block light array:");
-                LOGGER.debug(slimeSection.getBlockLight() != null ? slimeSection.getBlockLight().getBacking() : "Not present");
+                LOGGER.debug(slimeSection.getSharedBlockLight() != null ? slimeSection.getSharedBlockLight().getBacking() : "Not present");
                 LOGGER.debug("Sky light array:");
-                LOGGER.debug(slimeSection.getSkyLight() != null ? slimeSection.getSkyLight().getBacking() : "Not present");
+                LOGGER.debug(slimeSection.getSharedSkyLight() != null ? slimeSection.getSharedSkyLight().getBacking() : "Not present");
 
-                section.getBlocks().a((NBTTagList) Converter.convertTag(slimeSection.getPalette()), slimeSection.getBlockStates());
+                section.getBlocks().a((NBTTagList) Converter.convertTag(slimeSection.getSharedPalette()), slimeSection.getSharedBlockStates());
 
-                if (slimeSection.getBlockLight() != null) {
+                // The light engine keeps and modifies the arrays it's given, so it gets copies
+                if (slimeSection.getSharedBlockLight() != null) {
                     lightEngine.a(EnumSkyBlock.BLOCK, SectionPosition.a(pos, sectionId), Converter.convertArray(slimeSection.getBlockLight()), true);
                 }
 
-                if (slimeSection.getSkyLight() != null) {
+                if (slimeSection.getSharedSkyLight() != null) {
                     lightEngine.a(EnumSkyBlock.SKY, SectionPosition.a(pos, sectionId), Converter.convertArray(slimeSection.getSkyLight()), true);
                 }
 
@@ -260,6 +269,12 @@ public class CustomWorldServer extends WorldServer {
 
             LOGGER.debug("Loaded " + loadedEntities + " entities for chunk (" + pos.x + ", " + pos.z + ") on world " + slimeWorld.getName());
 
+            // Worlds that don't save light are relit by the light engine's worker, the same way as newly generated chunks.
+            // This has to wait until the chunk is in the chunk map, as the worker looks it up there to read its blocks
+            if (!slimeWorld.getPropertyMap().getValue(SlimeProperties.SAVE_LIGHT)) {
+                getChunkProvider().getLightEngine().a(nmsChunk, false);
+            }
+
         };
 
         CompoundTag upgradeDataTag = ((CraftSlimeChunk) chunk).getUpgradeData();
@@ -293,6 +308,7 @@ public class CustomWorldServer extends WorldServer {
 
         if (slimeChunk instanceof NMSSlimeChunk) { // In case somehow the chunk object changes (might happen for some reason)
             ((NMSSlimeChunk) slimeChunk).setChunk(chunk);
+            slimeWorld.markChunkDirty(chunk.getPos().x, chunk.getPos().z);
         } else {
             slimeWorld.updateChunk(new NMSSlimeChunk(chunk));
         }
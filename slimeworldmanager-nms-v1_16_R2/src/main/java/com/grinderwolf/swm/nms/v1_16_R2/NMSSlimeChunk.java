@@ -7,6 +7,7 @@ import com.flowpowered.nbt.LongArrayTag;
 import com.grinderwolf.swm.api.utils.NibbleArray;
 import com.grinderwolf.swm.api.world.SlimeChunk;
 import com.grinderwolf.swm.api.world.SlimeChunkSection;
+import com.grinderwolf.swm.api.world.properties.SlimeProperties;
 import com.grinderwolf.swm.nms.CraftSlimeChunkSection;
 import net.minecraft.server.v1_16_R2.Chunk;
 import net.minecraft.server.v1_16_R2.ChunkSection;
@@ -52,6 +53,10 @@ public class NMSSlimeChunk implements SlimeChunk {
         SlimeChunkSection[] sections = new SlimeChunkSection[16];
         LightEngine lightEngine = chunk.world.getChunkProvider().getLightEngine();
 
+        // There's no point in capturing light that won't be saved
+        boolean saveLight = !(chunk.world instanceof CustomWorldServer)
+                || ((CustomWorldServer) chunk.world).getSlimeWorld().getPropertyMap().getValue(SlimeProperties.SAVE_LIGHT);
+
         for (int sectionId = 0; sectionId < chunk.getSections().length; sectionId++) {
             ChunkSection section = chunk.getSections()[sectionId];
 
@@ -60,10 +65,10 @@ public class NMSSlimeChunk implements SlimeChunk {
 
                 if (!section.c()) { // If the section is empty, just ignore it to save space
                     // Block Light Nibble Array
-                    NibbleArray blockLightArray = Converter.convertArray(lightEngine.a(EnumSkyBlock.BLOCK).a(SectionPosition.a(chunk.getPos(), sectionId)));
+                    NibbleArray blockLightArray = saveLight ? Converter.convertArray(lightEngine.a(EnumSkyBlock.BLOCK).a(SectionPosition.a(chunk.getPos(), sectionId))) : null;
 
                     // Sky light Nibble Array
-                    NibbleArray skyLightArray = Converter.convertArray(lightEngine.a(EnumSkyBlock.SKY).a(SectionPosition.a(chunk.getPos(), sectionId)));
+                    NibbleArray skyLightArray = saveLight ? Converter.convertArray(lightEngine.a(EnumSkyBlock.SKY).a(SectionPosition.a(chunk.getPos(), sectionId))) : null;
 
                     // Block Data
                     DataPaletteBlock dataPaletteBlock = section.getBlocks();
@@ -6,10 +6,10 @@ import com.flowpowered.nbt.LongArrayTag;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
 import com.grinderwolf.swm.api.world.SlimeChunk;
-import com.grinderwolf.swm.api.world.SlimeChunkSection;
 import com.grinderwolf.swm.api.world.properties.SlimeProperties;
 import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
 import com.grinderwolf.swm.nms.CraftSlimeChunk;
+import com.grinderwolf.swm.nms.CraftSlimeChunkSection;
 import com.grinderwolf.swm.nms.CraftSlimeWorld;
 import lombok.Getter;
 import lombok.Setter;
@@ -100,7 +100,15 @@ public class CustomWorldServer extends WorldServer {
                 Bukkit.getLogger().log(Level.INFO, "Saving world " + slimeWorld.getName() + "...");
                 long start = System.currentTimeMillis();
                 byte[] serializedWorld = slimeWorld.serialize();
+
+                if (slimeWorld.isSavedPayload(serializedWorld)) {
+                    Bukkit.getLogger().log(Level.INFO, "World " + slimeWorld.getName() + " hasn't changed since its last save, skipping it ("
+                            + slimeWorld.getSkippedSaves() + " saves skipped so far).");
+                    return;
+                }
+
                 slimeWorld.getLoader().saveWorld(slimeWorld.getName(), serializedWorld, false);
+                slimeWorld.setSavedPayload(serializedWorld);
                 Bukkit.getLogger().log(Level.INFO, "World " + slimeWorld.getName() + " saved in " + (System.currentTimeMillis() - start) + "ms.");
             } catch (IOException | IllegalStateException ex) {
                 ex.printStackTrace();
@@ -169,18 +177,19 @@ public class CustomWorldServer extends WorldServer {
         lightEngine.b(pos, true);
 
         for (int sectionId = 0; sectionId < chunk.getSections().length; sectionId++) {
-            SlimeChunkSection slimeSection = chunk.getSections()[sectionId];
+            CraftSlimeChunkSection slimeSection = CraftSlimeChunkSection.of(chunk.getSections()[sectionId]);
 
             if (slimeSection != null) {
                 ChunkSection section = new ChunkSection(sectionId << 4);
 
-                section.getBlocks().a((NBTTagList) Converter.convertTag(slimeSection.getPalette()), slimeSection.getBlockStates());
+                section.getBlocks().a((NBTTagList) Converter.convertTag(slimeSection.getSharedPalette()), slimeSection.getSharedBlockStates());
 
-                if (slimeSection.getBlockLight() != null) {
+                // The light engine keeps and modifies the arrays it's given, so it gets copies
+                if (slimeSection.getSharedBlockLight() != null) {
                     lightEngine.a(EnumSkyBlock.BLOCK, SectionPosition.a(pos, sectionId), Converter.convertArray(slimeSection.getBlockLight()), true);
                 }
 
-                if (slimeSection.getSkyLight() != null) {
+                if (slimeSection.getSharedSkyLight() != null) {
                     lightEngine.a(EnumSkyBlock.SKY, SectionPosition.a(pos, sectionId), Converter.convertArray(slimeSection.getSkyLight()), true);
                 }
 
@@ -236,6 +245,12 @@ public class CustomWorldServer extends WorldServer {
                     loadedEntities++;
                 }
             }
+
+            // Worlds that don't save light are relit by the light engine's worker, the same way as newly generated chunks.
+            // This has to wait until the chunk is in the chunk map, as the worker looks it up there to read its blocks
+            if (!slimeWorld.getPropertyMap().getValue(SlimeProperties.SAVE_LIGHT)) {
+                getChunkProvider().getLightEngine().a(nmsChunk, false);
+            }
         };
 
         CompoundTag upgradeDataTag = ((CraftSlimeChunk) chunk).getUpgradeData();
@@ -273,6 +288,7 @@ public class CustomWorldServer extends WorldServer {
         // In case somehow the chunk object changes (might happen for some reason)
         if (slimeChunk instanceof NMSSlimeChunk) {
             ((NMSSlimeChunk) slimeChunk).setChunk(chunk);
+            slimeWorld.markChunkDirty(chunk.getPos().x, chunk.getPos().z);
         } else {
             slimeWorld.updateChunk(new NMSSlimeChunk(chunk));
         }
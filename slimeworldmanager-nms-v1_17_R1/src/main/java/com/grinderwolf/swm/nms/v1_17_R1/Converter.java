@@ -46,7 +46,10 @@ public class Converter {
                     return NBTTagString.a(((StringTag) tag).getValue());
                 case TAG_LIST:
                     NBTTagList list = new NBTTagList();
-                    ((ListTag<?>) tag).getValue().stream().map(Converter::convertTag).forEach(list::add);
+
+                    for (Tag element : ((ListTag<?>) tag).getValue()) {
+                        list.add(convertTag(element));
+                    }
 
                     return list;
                 case TAG_COMPOUND:
@@ -88,8 +91,8 @@ public class Converter {
             case 8:
                 return new StringTag(name, ((NBTTagString) base).asString());
             case 9:
-                List<Tag> list = new ArrayList<>();
                 NBTTagList originalList = ((NBTTagList) base);
+                List<Tag> list = new ArrayList<>(originalList.size());
 
                 for (NBTBase entry : originalList) {
                     list.add(convertTag("", entry));
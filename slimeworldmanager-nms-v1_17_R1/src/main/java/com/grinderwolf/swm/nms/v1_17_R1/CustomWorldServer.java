@@ -2,14 +2,17 @@ package com.grinderwolf.swm.nms.v1_17_R1;
 
 import com.flowpowered.nbt.CompoundMap;
 import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.ListTag;
 import com.flowpowered.nbt.LongArrayTag;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
 import com.grinderwolf.swm.api.world.SlimeChunk;
-import com.grinderwolf.swm.api.world.SlimeChunkSection;
 import com.grinderwolf.swm.api.world.properties.SlimeProperties;
 import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
+import com.grinderwolf.swm.nms.BlockPalette;
+import com.grinderwolf.swm.nms.ChunkMap;
 import com.grinderwolf.swm.nms.CraftSlimeChunk;
+import com.grinderwolf.swm.nms.CraftSlimeChunkSection;
 import com.grinderwolf.swm.nms.CraftSlimeWorld;
 import com.grinderwolf.swm.nms.v1_17_R1_V2.Utils_1_17_R1_V2;
 import lombok.Getter;
@@ -27,6 +30,7 @@ import net.minecraft.server.level.WorldServer;
 import net.minecraft.util.IProgressUpdate;
 import net.minecraft.util.Unit;
 import net.minecraft.world.EnumDifficulty;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.EntityTypes;
 import net.minecraft.world.level.ChunkCoordIntPair;
 import net.minecraft.world.level.EnumSkyBlock;
@@ -69,6 +73,12 @@ public class CustomWorldServer extends WorldServer {
     private final Object saveLock = new Object();
     private final BiomeBase defaultBiome;
 
+    // Entities of every chunk, serialized on the main thread for the thread that's reading the entities of many chunks
+    private final ThreadLocal<ChunkMap<List<NBTTagCompound>>> entitySnapshot = new ThreadLocal<>();
+
+    // Sections of the chunks that changed since the last save, copied on the main thread for the thread saving the world
+    private final ThreadLocal<ChunkMap<NMSSlimeChunk.CapturedSection[]>> sectionSnapshot = new ThreadLocal<>();
+
     @Getter
     @Setter
     private boolean ready = false;
@@ -111,8 +121,13 @@ public class CustomWorldServer extends WorldServer {
             NBTTagCompound nbtTagCompound = E.a(MinecraftServer.getServer().getCustomRegistry(), compound);
             slimeWorld.getExtraData().getValue().put(Converter.convertTag("LevelData", nbtTagCompound));
 
+            // Entities can only be saved from the main thread. Sorting them by chunk while doing so is
+            // also much cheaper than looking through all of them for every chunk
+            ChunkMap<List<NBTTagCompound>> entities = serializeEntitiesByChunk();
+            ChunkMap<NMSSlimeChunk.CapturedSection[]> sections = captureChangedSections();
+
             if (MinecraftServer.getServer().isStopped()) { // Make sure the world gets saved before stopping the server by running it from the main thread
-                save();
+                save(entities, sections);
 
                 // Have to manually unlock the world as well
                 try {
@@ -123,23 +138,131 @@ public class CustomWorldServer extends WorldServer {
 
                 }
             } else {
-                WORLD_SAVER_SERVICE.execute(this::save);
+                WORLD_SAVER_SERVICE.execute(() -> save(entities, sections));
             }
         }
     }
 
-    private void save() {
+    private void save(ChunkMap<List<NBTTagCompound>> entities, ChunkMap<NMSSlimeChunk.CapturedSection[]> sections) {
         synchronized (saveLock) { // Don't want to save the SlimeWorld from multiple threads simultaneously
+            entitySnapshot.set(entities);
+            sectionSnapshot.set(sections);
+
             try {
                 Bukkit.getLogger().log(Level.INFO, "Saving world " + slimeWorld.getName() + "...");
                 long start = System.currentTimeMillis();
                 byte[] serializedWorld = slimeWorld.serialize();
+
+                if (slimeWorld.isSavedPayload(serializedWorld)) {
+                    Bukkit.getLogger().log(Level.INFO, "World " + slimeWorld.getName() + " hasn't changed since its last save, skipping it ("
+                            + slimeWorld.getSkippedSaves() + " saves skipped so far).");
+                    return;
+                }
+
                 slimeWorld.getLoader().saveWorld(slimeWorld.getName(), serializedWorld, false);
+                slimeWorld.setSavedPayload(serializedWorld);
                 Bukkit.getLogger().log(Level.INFO, "World " + slimeWorld.getName() + " saved in " + (System.currentTimeMillis() - start) + "ms.");
             } catch (IOException | IllegalStateException ex) {
                 ex.printStackTrace();
+            } finally {
+                entitySnapshot.remove();
+                sectionSnapshot.remove();
+            }
+        }
+    }
+
+    /**
+     * Copies the sections of the loaded chunks that will be encoded again on the next save. Chunks that
+     * didn't change are saved from the frames of the last save, so they don't have to be copied.
+     */
+    private ChunkMap<NMSSlimeChunk.CapturedSection[]> captureChangedSections() {
+        ChunkMap<NMSSlimeChunk.CapturedSection[]> sections = new ChunkMap<>();
+        boolean saveLight = slimeWorld.getPropertyMap().getValue(SlimeProperties.SAVE_LIGHT);
+
+        for (SlimeChunk chunk : slimeWorld.getChangedChunks()) {
+            if (chunk instanceof NMSSlimeChunk) {
+                sections.put(ChunkMap.getKey(chunk.getX(), chunk.getZ()), ((NMSSlimeChunk) chunk).captureSections(saveLight));
+            }
+        }
+
+        return sections;
+    }
+
+    private ChunkMap<List<NBTTagCompound>> serializeEntitiesByChunk() {
+        ChunkMap<List<NBTTagCompound>> entities = new ChunkMap<>();
+
+        for (Entity entity : G.d().a()) {
+            NBTTagCompound entityNbt = new NBTTagCompound();
+
+            if (!entity.d(entityNbt)) {
+                continue;
+            }
+
+            ChunkCoordIntPair pos = entity.cU();
+            long index = ChunkMap.getKey(pos.b, pos.c);
+            List<NBTTagCompound> chunkEntities = entities.get(index);
+
+            if (chunkEntities == null) {
+                chunkEntities = new ArrayList<>();
+                entities.put(index, chunkEntities);
+
+                SlimeChunk slimeChunk = slimeWorld.getChunk(pos.b, pos.c);
+
+                if (slimeChunk instanceof NMSSlimeChunk) {
+                    ((NMSSlimeChunk) slimeChunk).getChunk().b(true);
+                }
             }
+
+            chunkEntities.add(entityNbt);
+        }
+
+        return entities;
+    }
+
+    /**
+     * Runs an action with the entities of this world serialized and sorted by chunk, so it can read
+     * the entities of many chunks, even from another thread, without looking through all of them every time.
+     * Must be called from the main thread.
+     */
+    void captureEntities(Runnable action) {
+        if (entitySnapshot.get() != null) {
+            action.run();
+            return;
+        }
+
+        entitySnapshot.set(serializeEntitiesByChunk());
+
+        try {
+            action.run();
+        } finally {
+            entitySnapshot.remove();
+        }
+    }
+
+    /**
+     * Returns the entities a chunk had when the current thread took its snapshot of them, already
+     * serialized, or <code>null</code> if there's no snapshot. The returned tags must not be modified.
+     */
+    List<NBTTagCompound> getSnapshotEntities(int x, int z) {
+        ChunkMap<List<NBTTagCompound>> entities = entitySnapshot.get();
+
+        if (entities == null) {
+            return null;
         }
+
+        List<NBTTagCompound> chunkEntities = entities.get(x, z);
+
+        return chunkEntities == null ? Collections.emptyList() : chunkEntities;
+    }
+
+    /**
+     * Returns the sections a chunk had when the current thread took its snapshot of them, or
+     * <code>null</code> if there's no snapshot or the chunk wasn't in it. The returned sections must not be modified.
+     */
+    NMSSlimeChunk.CapturedSection[] getSnapshotSections(int x, int z) {
+        ChunkMap<NMSSlimeChunk.CapturedSection[]> sections = sectionSnapshot.get();
+
+        return sections == null ? null : sections.get(x, z);
     }
 
     ProtoChunkExtension getChunk(int x, int z) {
@@ -203,18 +326,19 @@ public class CustomWorldServer extends WorldServer {
         lightEngine.b(pos, true);
 
         for (int sectionId = 0; sectionId < chunk.getSections().length; sectionId++) {
-            SlimeChunkSection slimeSection = chunk.getSections()[sectionId];
+            CraftSlimeChunkSection slimeSection = CraftSlimeChunkSection.of(chunk.getSections()[sectionId]);
 
             if (slimeSection != null) {
                 ChunkSection section = new ChunkSection(sectionId << 4);
 
-                section.getBlocks().a((NBTTagList) Converter.convertTag(slimeSection.getPalette()), slimeSection.getBlockStates());
+                section.getBlocks().a(convertPalette(slimeSection.getSharedPalette()), slimeSection.getSharedBlockStates());
 
-                if (slimeSection.getBlockLight() != null) {
+                // The light engine keeps and modifies the arrays it's given, so it gets copies
+                if (slimeSection.getSharedBlockLight() != null) {
                     lightEngine.a(EnumSkyBlock.b, SectionPosition.a(pos, sectionId), Converter.convertArray(slimeSection.getBlockLight()), true);
                 }
 
-                if (slimeSection.getSkyLight() != null) {
+                if (slimeSection.getSharedSkyLight() != null) {
                     lightEngine.a(EnumSkyBlock.a, SectionPosition.a(pos, sectionId), Converter.convertArray(slimeSection.getSkyLight()), true);
                 }
 
@@ -264,6 +388,12 @@ public class CustomWorldServer extends WorldServer {
                                 .collect(Collectors.toList()),
                         this));
             }
+
+            // Worlds that don't save light are relit by the light engine's worker, the same way as newly generated chunks.
+            // This has to wait until the chunk is in the chunk map, as the worker looks it up there to read its blocks
+            if (!slimeWorld.getPropertyMap().getValue(SlimeProperties.SAVE_LIGHT)) {
+                getChunkProvider().getLightEngine().a(nmsChunk, false);
+            }
         };
 
         CompoundTag upgradeDataTag = ((CraftSlimeChunk) chunk).getUpgradeData();
@@ -294,12 +424,28 @@ public class CustomWorldServer extends WorldServer {
         return nmsChunk;
     }
 
+    /**
+     * Converts a section palette to NMS NBT. Palette entries are shared by every section of the world, so
+     * each one is converted once and then reused instead of being converted again for every section.
+     */
+    private NBTTagList convertPalette(ListTag<CompoundTag> palette) {
+        BlockPalette blockPalette = slimeWorld.getBlockPalette();
+        NBTTagList paletteList = new NBTTagList();
+
+        for (CompoundTag state : palette.getValue()) {
+            paletteList.add(blockPalette.getNativeState(state, tag -> (NBTTagCompound) Converter.convertTag(tag)));
+        }
+
+        return paletteList;
+    }
+
     void saveChunk(Chunk chunk) {
         SlimeChunk slimeChunk = slimeWorld.getChunk(chunk.getPos().b, chunk.getPos().c);
 
         // In case somehow the chunk object changes (might happen for some reason)
         if (slimeChunk instanceof NMSSlimeChunk) {
             ((NMSSlimeChunk) slimeChunk).setChunk(chunk);
+            slimeWorld.markChunkDirty(chunk.getPos().b, chunk.getPos().c);
         } else {
             slimeWorld.updateChunk(new NMSSlimeChunk(chunk));
         }
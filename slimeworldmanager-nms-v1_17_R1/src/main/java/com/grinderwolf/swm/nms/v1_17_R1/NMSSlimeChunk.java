@@ -7,20 +7,31 @@ import com.flowpowered.nbt.LongArrayTag;
 import com.grinderwolf.swm.api.utils.NibbleArray;
 import com.grinderwolf.swm.api.world.SlimeChunk;
 import com.grinderwolf.swm.api.world.SlimeChunkSection;
+import com.grinderwolf.swm.api.world.properties.SlimeProperties;
+import com.grinderwolf.swm.nms.BlockPalette;
+import com.grinderwolf.swm.nms.ChunkSerializer;
 import com.grinderwolf.swm.nms.CraftSlimeChunkSection;
+import com.grinderwolf.swm.nms.DirectSerializableChunk;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.RequiredArgsConstructor;
 import net.minecraft.core.SectionPosition;
+import net.minecraft.nbt.GameProfileSerializer;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.level.ChunkCoordIntPair;
 import net.minecraft.world.level.EnumSkyBlock;
+import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.entity.TileEntity;
+import net.minecraft.world.level.block.state.IBlockData;
 import net.minecraft.world.level.chunk.Chunk;
 import net.minecraft.world.level.chunk.ChunkSection;
 import net.minecraft.world.level.chunk.DataPaletteBlock;
@@ -31,7 +42,9 @@ import net.minecraft.world.level.storage.WorldDataServer;
 
 @Data
 @AllArgsConstructor
-public class NMSSlimeChunk implements SlimeChunk {
+public class NMSSlimeChunk implements SlimeChunk, DirectSerializableChunk {
+
+    private static final IBlockData AIR = Blocks.a.getBlockData();
 
     private Chunk chunk;
 
@@ -55,6 +68,10 @@ public class NMSSlimeChunk implements SlimeChunk {
         SlimeChunkSection[] sections = new SlimeChunkSection[16];
         LightEngine lightEngine = chunk.getWorld().getChunkProvider().getLightEngine();
 
+        // There's no point in capturing light that won't be saved
+        boolean saveLight = !(chunk.getWorld() instanceof CustomWorldServer)
+                || ((CustomWorldServer) chunk.getWorld()).getSlimeWorld().getPropertyMap().getValue(SlimeProperties.SAVE_LIGHT);
+
         for (int sectionId = 0; sectionId < chunk.getSections().length; sectionId++) {
             ChunkSection section = chunk.getSections()[sectionId];
 
@@ -63,10 +80,10 @@ public class NMSSlimeChunk implements SlimeChunk {
 
                 if (!section.c()) { // If the section is empty, just ignore it to save space
                     // Block Light Nibble Array
-                    NibbleArray blockLightArray = Converter.convertArray(lightEngine.a(EnumSkyBlock.b).a(SectionPosition.a(chunk.getPos(), sectionId)));
+                    NibbleArray blockLightArray = saveLight ? Converter.convertArray(lightEngine.a(EnumSkyBlock.b).a(SectionPosition.a(chunk.getPos(), sectionId))) : null;
 
                     // Sky light Nibble Array
-                    NibbleArray skyLightArray = Converter.convertArray(lightEngine.a(EnumSkyBlock.a).a(SectionPosition.a(chunk.getPos(), sectionId)));
+                    NibbleArray skyLightArray = saveLight ? Converter.convertArray(lightEngine.a(EnumSkyBlock.a).a(SectionPosition.a(chunk.getPos(), sectionId))) : null;
 
                     // Tile/Entity Data
 
@@ -86,6 +103,88 @@ public class NMSSlimeChunk implements SlimeChunk {
         return sections;
     }
 
+    /**
+     * Serializes the sections of this chunk. During a save, they're read from the copy the
+     * main thread took when the save started, so the server can keep changing the chunk meanwhile.
+     */
+    @Override
+    public byte[][] serializeSections(BlockPalette blockPalette, boolean saveLight) throws IOException {
+        CapturedSection[] capturedSections = chunk.i instanceof CustomWorldServer ? ((CustomWorldServer) chunk.i).getSnapshotSections(getX(), getZ()) : null;
+
+        if (capturedSections == null) {
+            capturedSections = captureSections(saveLight);
+        }
+
+        byte[][] sections = new byte[16][];
+
+        for (int sectionId = 0; sectionId < capturedSections.length; sectionId++) {
+            if (capturedSections[sectionId] != null) {
+                sections[sectionId] = capturedSections[sectionId].serialize(blockPalette, saveLight);
+            }
+        }
+
+        return sections;
+    }
+
+    /**
+     * Copies the block states and light of every section of this chunk, so they can be serialized from
+     * another thread while the server keeps using the chunk. Must be called from the main thread.
+     *
+     * @return The copied sections, with <code>null</code> for empty ones.
+     */
+    CapturedSection[] captureSections(boolean saveLight) {
+        CapturedSection[] sections = new CapturedSection[16];
+        LightEngine lightEngine = chunk.getWorld().getChunkProvider().getLightEngine();
+
+        for (int sectionId = 0; sectionId < chunk.getSections().length; sectionId++) {
+            ChunkSection section = chunk.getSections()[sectionId];
+
+            if (section == null) {
+                continue;
+            }
+
+            section.recalcBlockCounts();
+
+            if (section.c()) { // If the section is empty, just ignore it to save space
+                continue;
+            }
+
+            // Block Data, read block by block into a local palette, without any NBT
+            Map<IBlockData, Integer> localIds = new IdentityHashMap<>();
+            List<IBlockData> localPalette = new ArrayList<>();
+            int[] indices = new int[4096];
+
+            // Air always comes first, just like in the palettes the server writes
+            localIds.put(AIR, 0);
+            localPalette.add(AIR);
+
+            for (int index = 0; index < indices.length; index++) {
+                IBlockData state = section.getType(index & 15, index >> 8 & 15, index >> 4 & 15);
+                Integer localId = localIds.get(state);
+
+                if (localId == null) {
+                    localId = localPalette.size();
+                    localIds.put(state, localId);
+                    localPalette.add(state);
+                }
+
+                indices[index] = localId;
+            }
+
+            // The light engine keeps changing its arrays, so they're copied too
+            NibbleArray blockLight = saveLight ? copyLight(lightEngine.a(EnumSkyBlock.b).a(SectionPosition.a(chunk.getPos(), sectionId))) : null;
+            NibbleArray skyLight = saveLight ? copyLight(lightEngine.a(EnumSkyBlock.a).a(SectionPosition.a(chunk.getPos(), sectionId))) : null;
+
+            sections[sectionId] = new CapturedSection(localPalette, indices, blockLight, skyLight);
+        }
+
+        return sections;
+    }
+
+    private static NibbleArray copyLight(net.minecraft.world.level.chunk.NibbleArray array) {
+        return array == null ? null : new NibbleArray(array.asBytes().clone());
+    }
+
     @Override
     public CompoundTag getHeightMaps() {
         // HeightMap
@@ -119,27 +218,75 @@ public class NMSSlimeChunk implements SlimeChunk {
         return tileEntities;
     }
 
+    /**
+     * Returns the entities of this chunk. During a save, or while the world's entities are captured, they
+     * come from the snapshot the main thread took, so this can be called from any thread. Otherwise,
+     * the entities are saved right away, which has to be done from the main thread.
+     */
     @Override
     public List<CompoundTag> getEntities() {
-        List<CompoundTag> entities = new ArrayList<>();
+        List<NBTTagCompound> chunkEntities = chunk.i instanceof CustomWorldServer ? ((CustomWorldServer) chunk.i).getSnapshotEntities(getX(), getZ()) : null;
 
-        PersistentEntitySectionManager<Entity> entityManager = chunk.i.G;
-        Iterator<Entity> entitySlices = entityManager.d().a().iterator();
-
-        while(entitySlices.hasNext()) {
-            Entity entity = entitySlices.next();
+        if (chunkEntities == null) {
+            chunkEntities = new ArrayList<>();
 
+            PersistentEntitySectionManager<Entity> entityManager = chunk.i.G;
             ChunkCoordIntPair chunkPos = chunk.getPos();
-            ChunkCoordIntPair entityPos = entity.cU();
 
-            if(chunkPos.b == entityPos.b && chunkPos.c == entityPos.c) {
-                NBTTagCompound entityNbt = new NBTTagCompound();
-                if(entity.d(entityNbt)) {
-                    chunk.b(true);
-                    entities.add((CompoundTag) Converter.convertTag("", entityNbt));
+            for (Entity entity : entityManager.d().a()) {
+                ChunkCoordIntPair entityPos = entity.cU();
+
+                if (chunkPos.b == entityPos.b && chunkPos.c == entityPos.c) {
+                    NBTTagCompound entityNbt = new NBTTagCompound();
+
+                    if (entity.d(entityNbt)) {
+                        chunk.b(true);
+                        chunkEntities.add(entityNbt);
+                    }
                 }
             }
         }
+
+        List<CompoundTag> entities = new ArrayList<>(chunkEntities.size());
+
+        for (NBTTagCompound entityNbt : chunkEntities) {
+            entities.add((CompoundTag) Converter.convertTag("", entityNbt));
+        }
+
         return entities;
     }
+
+    /**
+     * A copy of a section of a server chunk, with its block states mapped to a palette of its own.
+     */
+    @RequiredArgsConstructor
+    static class CapturedSection {
+
+        private final List<IBlockData> palette;
+        private final int[] indices;
+        private final NibbleArray blockLight;
+        private final NibbleArray skyLight;
+
+        private byte[] serialize(BlockPalette blockPalette, boolean saveLight) throws IOException {
+            ByteArrayOutputStream sectionByteStream = new ByteArrayOutputStream();
+            DataOutputStream outStream = new DataOutputStream(sectionByteStream);
+
+            // Block Light
+            ChunkSerializer.writeLight(outStream, saveLight ? blockLight : null);
+
+            // Block Data, mapped straight to ids of the world's block palette
+            int[] paletteIds = new int[palette.size()];
+
+            for (int i = 0; i < paletteIds.length; i++) {
+                paletteIds[i] = blockPalette.getId(palette.get(i), state -> (CompoundTag) Converter.convertTag("", GameProfileSerializer.a(state)));
+            }
+
+            ChunkSerializer.writeBlockData(outStream, paletteIds, ChunkSerializer.packBlockStates(indices, paletteIds.length));
+
+            // Sky Light
+            ChunkSerializer.writeLight(outStream, saveLight ? skyLight : null);
+
+            return sectionByteStream.toByteArray();
+        }
+    }
 }
@@ -291,6 +291,17 @@ public class v1_17_R1SlimeNMS implements SlimeNMS {
         return worldServer.getSlimeWorld();
     }
 
+    @Override
+    public void captureEntities(World world, Runnable action) {
+        CraftWorld craftWorld = (CraftWorld) world;
+
+        if (craftWorld.getHandle() instanceof CustomWorldServer) {
+            ((CustomWorldServer) craftWorld.getHandle()).captureEntities(action);
+        } else {
+            action.run();
+        }
+    }
+
     @Override
     public CompoundTag convertChunk(CompoundTag tag) {
         NBTTagCompound nmsTag = (NBTTagCompound) Converter.convertTag(tag);
@@ -6,7 +6,10 @@ import com.grinderwolf.swm.api.SlimePlugin;
 import com.grinderwolf.swm.api.exceptions.*;
 import com.grinderwolf.swm.api.loaders.SlimeLoader;
 import com.grinderwolf.swm.api.world.SlimeWorld;
+import com.grinderwolf.swm.api.world.SlimeWorldMemoryUsage;
+import com.grinderwolf.swm.api.world.SlimeWorldMetadata;
 import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
+import com.grinderwolf.swm.nms.CompressionDictionary;
 import com.grinderwolf.swm.nms.CraftSlimeWorld;
 import com.grinderwolf.swm.nms.SlimeNMS;
 import com.grinderwolf.swm.nms.v1_16_R1.v1_16_R1SlimeNMS;
@@ -21,6 +24,8 @@ import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
 import com.grinderwolf.swm.plugin.log.Logging;
 import com.grinderwolf.swm.plugin.update.Updater;
 import com.grinderwolf.swm.plugin.upgrade.WorldUpgrader;
+import com.grinderwolf.swm.plugin.world.IdleChunkCompressor;
+import com.grinderwolf.swm.plugin.world.MemoryReporter;
 import com.grinderwolf.swm.plugin.world.WorldUnlocker;
 import com.grinderwolf.swm.plugin.world.importer.WorldImporter;
 import lombok.Getter;
@@ -35,6 +40,7 @@ import org.bukkit.plugin.java.JavaPlugin;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.*;
 
 import static com.grinderwolf.swm.api.world.properties.SlimeProperties.*;
@@ -46,6 +52,9 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
 
     private final List<SlimeWorld> worlds = new ArrayList<>();
 
+    // Worlds loaded as templates, kept for as long as any of their clones is
+    private final Map<String, WeakReference<CraftSlimeWorld>> templateWorlds = new HashMap<>();
+
     private static boolean isPaperMC = false;
 
     private static boolean checkIsPaper() {
@@ -128,6 +137,8 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
         }
 
         getServer().getPluginManager().registerEvents(new WorldUnlocker(), this);
+        getServer().getScheduler().runTaskTimer(this, new IdleChunkCompressor(), IdleChunkCompressor.PERIOD, IdleChunkCompressor.PERIOD);
+        getServer().getScheduler().runTaskTimer(this, new MemoryReporter(), MemoryReporter.PERIOD, MemoryReporter.PERIOD);
 
         if (ConfigManager.getMainConfig().getUpdaterOptions().isEnabled()) {
             getServer().getPluginManager().registerEvents(new Updater(), this);
@@ -226,6 +237,12 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
 
         long start = System.currentTimeMillis();
 
+        if (!readOnly) { // The world might be changed from now on, so it shouldn't be used as a template anymore
+            synchronized (templateWorlds) {
+                templateWorlds.remove(worldName);
+            }
+        }
+
         Logging.info("Loading world " + worldName + ".");
         byte[] serializedWorld = loader.loadWorld(worldName, readOnly);
         CraftSlimeWorld world;
@@ -251,6 +268,30 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
         return world;
     }
 
+    /**
+     * Loads a world to be used as a template for temporary worlds. The template is reused for as long
+     * as any of its clones is still around, so its chunks are only loaded and kept in memory once.
+     */
+    public SlimeWorld loadTemplateWorld(SlimeLoader loader, String worldName, SlimePropertyMap propertyMap) throws UnknownWorldException,
+            IOException, CorruptedWorldException, NewerFormatException, WorldInUseException {
+        synchronized (templateWorlds) {
+            WeakReference<CraftSlimeWorld> reference = templateWorlds.get(worldName);
+            CraftSlimeWorld template = reference == null ? null : reference.get();
+
+            if (template != null && loader.equals(template.getLoader())) {
+                return template;
+            }
+        }
+
+        CraftSlimeWorld template = ((CraftSlimeWorld) loadWorld(loader, worldName, true, propertyMap)).getCloneTemplate();
+
+        synchronized (templateWorlds) {
+            templateWorlds.put(worldName, new WeakReference<>(template));
+        }
+
+        return template;
+    }
+
     public SlimeWorld getWorld(SlimeLoader loader, String worldName) {
         return worlds.stream().filter(world -> world.getName().equals(worldName)).findFirst().orElse(null);
     }
@@ -275,7 +316,7 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
         Logging.info("Creating empty world " + worldName + ".");
         long start = System.currentTimeMillis();
         CraftSlimeWorld world = new CraftSlimeWorld(loader, worldName, new HashMap<>(), new CompoundTag("",
-                new CompoundMap()), new ArrayList<>(), nms.getWorldVersion(), propertyMap, readOnly, !readOnly);
+                new CompoundMap()), new ArrayList<>(), nms.getWorldVersion(), LoaderUtils.getActiveDictionary(loader), propertyMap, readOnly, !readOnly);
         loader.saveWorld(worldName, world.serialize(), !readOnly);
 
         Logging.info("World " + worldName + " created in " + (System.currentTimeMillis() - start) + "ms.");
@@ -340,6 +381,7 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
 
         byte[] serializedWorld = currentLoader.loadWorld(worldName, false);
 
+        LoaderUtils.copyDictionary(serializedWorld, currentLoader, newLoader);
         newLoader.saveWorld(worldName, serializedWorld, leaveLock);
         currentLoader.deleteWorld(worldName);
     }
@@ -377,6 +419,7 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
         }
 
         CraftSlimeWorld world = WorldImporter.readFromDirectory(worldDir);
+        world.setDictionary(LoaderUtils.getActiveDictionary(loader));
 
         byte[] serializedWorld;
 
@@ -389,6 +432,78 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
         loader.saveWorld(worldName, serializedWorld, false);
     }
 
+    @Override
+    public SlimeWorldMetadata getWorldMetadata(SlimeLoader loader, String worldName) throws UnknownWorldException, IOException,
+            CorruptedWorldException, NewerFormatException {
+        Objects.requireNonNull(loader, "Loader cannot be null");
+        Objects.requireNonNull(worldName, "World name cannot be null");
+
+        return LoaderUtils.readWorldMetadata(loader, worldName);
+    }
+
+    @Override
+    public int trainDictionary(SlimeLoader loader, List<String> worldNames, int dictionarySize) throws UnknownWorldException,
+            CorruptedWorldException, NewerFormatException, IOException {
+        Objects.requireNonNull(loader, "Loader cannot be null");
+        Objects.requireNonNull(worldNames, "World names cannot be null");
+
+        Logging.info("Training compression dictionary from " + worldNames.size() + " worlds.");
+        long start = System.currentTimeMillis();
+
+        // Stop reading worlds once there's enough data, there's no point in keeping more in memory
+        long maxSamplesSize = (long) dictionarySize * CompressionDictionary.SAMPLES_SIZE_RATIO;
+        long samplesSize = 0;
+        List<byte[]> samples = new ArrayList<>();
+
+        for (String worldName : worldNames) {
+            if (samplesSize >= maxSamplesSize) {
+                break;
+            }
+
+            byte[] serializedWorld;
+
+            try {
+                serializedWorld = loader.loadWorld(worldName, true);
+            } catch (WorldInUseException ignored) {
+                continue; // Never going to happen, as the world is loaded in read-only mode
+            }
+
+            CraftSlimeWorld world = LoaderUtils.deserializeWorld(loader, worldName, serializedWorld, null, true);
+
+            for (byte[] sample : world.getDictionarySamples()) {
+                samples.add(sample);
+                samplesSize += sample.length;
+            }
+        }
+
+        CompressionDictionary dictionary = CompressionDictionary.train(samples, dictionarySize);
+
+        loader.saveDictionary(dictionary.getId(), dictionary.getData());
+        loader.setActiveDictionary(dictionary.getId());
+        LoaderUtils.cacheDictionary(dictionary);
+
+        // Loaded worlds start using the new dictionary on their next save
+        for (World bukkitWorld : Bukkit.getWorlds()) {
+            CraftSlimeWorld slimeWorld = (CraftSlimeWorld) nms.getSlimeWorld(bukkitWorld);
+
+            if (slimeWorld != null && loader.equals(slimeWorld.getLoader())) {
+                slimeWorld.setDictionary(dictionary);
+            }
+        }
+
+        Logging.info("Compression dictionary " + Integer.toUnsignedString(dictionary.getId()) + " trained from " + samples.size()
+                + " chunks in " + (System.currentTimeMillis() - start) + "ms.");
+
+        return dictionary.getId();
+    }
+
+    @Override
+    public SlimeWorldMemoryUsage getMemoryUsage(SlimeWorld world) {
+        Objects.requireNonNull(world, "World cannot be null");
+
+        return ((CraftSlimeWorld) world).getMemoryUsage();
+    }
+
     public static boolean isPaperMC() {
         return isPaperMC;
     }
@@ -36,6 +36,10 @@ public class CommandManager implements TabExecutor {
         commands.put("import", new ImportWorldCmd());
         commands.put("reload", new ReloadConfigCmd());
         commands.put("create", new CreateWorldCmd());
+        commands.put("dictionary", new DictionaryCmd());
+        commands.put("verify", new VerifyCmd());
+        commands.put("memory", new MemoryCmd());
+        commands.put("benchmark", new BenchmarkCmd());
     }
 
     @Override
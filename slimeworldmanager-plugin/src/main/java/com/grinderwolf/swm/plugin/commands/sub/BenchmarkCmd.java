@@ -0,0 +1,126 @@
+package com.grinderwolf.swm.plugin.commands.sub;
+
+import com.grinderwolf.swm.api.exceptions.CorruptedWorldException;
+import com.grinderwolf.swm.api.exceptions.NewerFormatException;
+import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
+import com.grinderwolf.swm.api.exceptions.WorldInUseException;
+import com.grinderwolf.swm.api.loaders.SlimeLoader;
+import com.grinderwolf.swm.nms.CompressionBenchmark;
+import com.grinderwolf.swm.nms.CraftSlimeWorld;
+import com.grinderwolf.swm.nms.SegmentCompression;
+import com.grinderwolf.swm.plugin.SWMPlugin;
+import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
+import com.grinderwolf.swm.plugin.log.Logging;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import static com.grinderwolf.swm.plugin.world.MemoryReporter.formatSize;
+
+@Getter
+public class BenchmarkCmd implements Subcommand {
+
+    private final String usage = "benchmark <world> <data-source> [compression...]";
+    private final String description = "Compare how small and how fast each compression setting makes the chunks of a world.";
+    private final String permission = "swm.benchmark";
+
+    @Override
+    public boolean onCommand(CommandSender sender, String[] args) {
+        if (args.length > 1) {
+            String worldName = args[0];
+            String source = args[1];
+            SlimeLoader loader = LoaderUtils.getLoader(source);
+
+            if (loader == null) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Unknown data source " + source + ".");
+
+                return true;
+            }
+
+            List<SegmentCompression> settings = new ArrayList<>();
+
+            try {
+                for (String setting : args.length > 2 ? Arrays.asList(args).subList(2, args.length) : CompressionBenchmark.DEFAULT_SETTINGS) {
+                    settings.add(SegmentCompression.parse(setting));
+                }
+            } catch (IllegalArgumentException ex) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + ex.getMessage() + ".");
+
+                return true;
+            }
+
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GRAY + "Benchmarking the compression of world " + worldName + "...");
+
+            Bukkit.getScheduler().runTaskAsynchronously(SWMPlugin.getInstance(), () -> {
+                try {
+                    // The world is read from the data source, so worlds in use by the server can be benchmarked too
+                    byte[] serializedWorld = loader.loadWorld(worldName, true);
+                    CraftSlimeWorld world = LoaderUtils.deserializeWorld(loader, worldName, serializedWorld, null, true);
+                    List<byte[]> samples = world.getDictionarySamples();
+                    List<CompressionBenchmark.Result> results = CompressionBenchmark.run(samples, settings, world.getDictionary());
+
+                    sender.sendMessage(Logging.COMMAND_PREFIX + "Compression of " + samples.size() + " chunks of world " + ChatColor.YELLOW
+                            + worldName + ChatColor.GRAY + " (" + formatSize(results.isEmpty() ? 0 : results.get(0).getUncompressedSize()) + "):");
+
+                    for (CompressionBenchmark.Result result : results) {
+                        sender.sendMessage(ChatColor.GRAY + " - " + ChatColor.AQUA + result.getCompression() + ChatColor.GRAY + ": "
+                                + ChatColor.GREEN + formatSize(result.getCompressedSize()) + ChatColor.GRAY
+                                + String.format(" (%.1f%%), compresses at %.1f MB/s, decompresses at %.1f MB/s", result.getRatio() * 100,
+                                result.getCompressSpeed(), result.getDecompressSpeed()));
+                    }
+                } catch (UnknownWorldException ex) {
+                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "World " + worldName + " does not exist in data source " + source + ".");
+                } catch (CorruptedWorldException ex) {
+                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "World " + worldName + " seems to be corrupted.");
+                } catch (NewerFormatException ex) {
+                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "World " + worldName + " is stored in a newer format (" + ex.getMessage() + ").");
+                } catch (WorldInUseException ignored) {
+                    // Never going to happen, as the world is loaded in read-only mode
+                } catch (IOException | RuntimeException ex) {
+                    if (!(sender instanceof ConsoleCommandSender)) {
+                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to benchmark world " + worldName
+                                + ". Take a look at the server console for more information.");
+                    }
+
+                    Logging.error("Failed to benchmark the compression of world " + worldName + ":");
+                    ex.printStackTrace();
+                }
+            });
+
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, String[] args) {
+        if (args.length == 3) {
+            return new LinkedList<>(LoaderUtils.getAvailableLoadersNames());
+        }
+
+        if (args.length > 3) {
+            String typed = args[args.length - 1].toLowerCase();
+            List<String> toReturn = new LinkedList<>();
+
+            for (String setting : CompressionBenchmark.DEFAULT_SETTINGS) {
+                if (setting.startsWith(typed)) {
+                    toReturn.add(setting);
+                }
+            }
+
+            return toReturn;
+        }
+
+        return Collections.emptyList();
+    }
+}
@@ -1,7 +1,11 @@
 package com.grinderwolf.swm.plugin.commands.sub;
 
+import com.grinderwolf.swm.api.exceptions.CorruptedWorldException;
+import com.grinderwolf.swm.api.exceptions.NewerFormatException;
+import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
 import com.grinderwolf.swm.api.loaders.SlimeLoader;
 import com.grinderwolf.swm.api.world.SlimeWorld;
+import com.grinderwolf.swm.api.world.SlimeWorldMetadata;
 import com.grinderwolf.swm.plugin.SWMPlugin;
 import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
 import com.grinderwolf.swm.plugin.log.Logging;
@@ -16,6 +20,7 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Getter
 public class DSListCmd implements Subcommand {
@@ -96,7 +101,8 @@ public class DSListCmd implements Subcommand {
 
                 for (int i = offset; (i - offset) < MAX_ITEMS_PER_PAGE && i < worldList.size(); i++) {
                     String world = worldList.get(i);
-                    sender.sendMessage(ChatColor.GRAY + " - " + (isLoaded(loader, world) ? ChatColor.GREEN : ChatColor.RED) + world);
+                    sender.sendMessage(ChatColor.GRAY + " - " + (isLoaded(loader, world) ? ChatColor.GREEN : ChatColor.RED) + world
+                            + getDetails(loader, world));
                 }
 
             });
@@ -116,6 +122,37 @@ public class DSListCmd implements Subcommand {
         return Collections.emptyList();
     }
 
+    private String getDetails(SlimeLoader loader, String worldName) {
+        SlimeWorldMetadata metadata;
+
+        try {
+            metadata = LoaderUtils.readWorldMetadata(loader, worldName);
+        } catch (UnknownWorldException ex) { // Deleted while listing
+            return "";
+        } catch (IOException | CorruptedWorldException | NewerFormatException ex) {
+            return ChatColor.GRAY + " (" + ChatColor.RED + "unreadable" + ChatColor.GRAY + ")";
+        }
+
+        // Worlds saved before metadata was stored
+        if (metadata == null) {
+            return "";
+        }
+
+        long minutesSinceSave = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis() - metadata.getLastSave());
+        String lastSave;
+
+        if (minutesSinceSave < 60) {
+            lastSave = minutesSinceSave + "m";
+        } else if (minutesSinceSave < 60 * 24) {
+            lastSave = (minutesSinceSave / 60) + "h";
+        } else {
+            lastSave = (minutesSinceSave / (60 * 24)) + "d";
+        }
+
+        return ChatColor.GRAY + " (" + metadata.getChunkCount() + " chunks, " + (metadata.getSegmentsSize() + 1023) / 1024 + " KB, saved "
+                + lastSave + " ago)";
+    }
+
     private boolean isLoaded(SlimeLoader loader, String worldName) {
         World world = Bukkit.getWorld(worldName);
 
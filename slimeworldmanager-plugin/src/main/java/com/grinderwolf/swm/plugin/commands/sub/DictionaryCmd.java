@@ -0,0 +1,111 @@
+package com.grinderwolf.swm.plugin.commands.sub;
+
+import com.grinderwolf.swm.api.exceptions.CorruptedWorldException;
+import com.grinderwolf.swm.api.exceptions.NewerFormatException;
+import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
+import com.grinderwolf.swm.api.loaders.SlimeLoader;
+import com.grinderwolf.swm.plugin.SWMPlugin;
+import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
+import com.grinderwolf.swm.plugin.log.Logging;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+@Getter
+public class DictionaryCmd implements Subcommand {
+
+    private static final int DEFAULT_DICTIONARY_SIZE = 112; // In KB, the same as zstd's default
+    private static final int MAX_DICTIONARY_SIZE = 1024;
+
+    private final String usage = "dictionary <data-source> [size-in-kb]";
+    private final String description = "Train a compression dictionary from the worlds inside a data source.";
+    private final String permission = "swm.dictionary";
+
+    @Override
+    public boolean onCommand(CommandSender sender, String[] args) {
+        if (args.length > 0) {
+            int dictionarySize;
+
+            if (args.length == 1) {
+                dictionarySize = DEFAULT_DICTIONARY_SIZE;
+            } else {
+                String sizeString = args[1];
+
+                try {
+                    dictionarySize = Integer.parseInt(sizeString);
+
+                    if (dictionarySize < 1 || dictionarySize > MAX_DICTIONARY_SIZE) {
+                        throw new NumberFormatException();
+                    }
+                } catch (NumberFormatException ex) {
+                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "'" + sizeString + "' is not a valid size. It must be between 1 and "
+                            + MAX_DICTIONARY_SIZE + " KB.");
+
+                    return true;
+                }
+            }
+
+            String source = args[0];
+            SlimeLoader loader = LoaderUtils.getLoader(source);
+
+            if (loader == null) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Unknown data source " + source + ".");
+
+                return true;
+            }
+
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GRAY + "Training compression dictionary for data source " + source + "...");
+
+            Bukkit.getScheduler().runTaskAsynchronously(SWMPlugin.getInstance(), () -> {
+
+                try {
+                    long start = System.currentTimeMillis();
+                    List<String> worldList = loader.listWorlds();
+
+                    if (worldList.isEmpty()) {
+                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "There are no worlds stored in data source " + source + ".");
+
+                        return;
+                    }
+
+                    int dictionaryId = SWMPlugin.getInstance().trainDictionary(loader, worldList, dictionarySize * 1024);
+
+                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GREEN + "Dictionary " + ChatColor.YELLOW + Integer.toUnsignedString(dictionaryId)
+                            + ChatColor.GREEN + " trained in " + (System.currentTimeMillis() - start) + "ms! Worlds of data source " + source
+                            + " will use it from their next save.");
+                } catch (IOException | CorruptedWorldException | NewerFormatException | UnsupportedOperationException ex) {
+                    if (!(sender instanceof ConsoleCommandSender)) {
+                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to train a dictionary for data source " + source
+                                + ". Take a look at the server console for more information.");
+                    }
+
+                    Logging.error("Failed to train a dictionary for data source " + source + ":");
+                    ex.printStackTrace();
+                } catch (UnknownWorldException ex) {
+                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "A world was removed from data source " + source + " while training the dictionary.");
+                }
+
+            });
+
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, String[] args) {
+        if (args.length == 2) {
+            return new LinkedList<>(LoaderUtils.getAvailableLoadersNames());
+        }
+
+        return Collections.emptyList();
+    }
+}
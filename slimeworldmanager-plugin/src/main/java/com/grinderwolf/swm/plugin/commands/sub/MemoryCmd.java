@@ -0,0 +1,120 @@
+package com.grinderwolf.swm.plugin.commands.sub;
+
+import com.grinderwolf.swm.api.world.SlimeWorldMemoryUsage;
+import com.grinderwolf.swm.nms.CraftSlimeWorld;
+import com.grinderwolf.swm.plugin.SWMPlugin;
+import com.grinderwolf.swm.plugin.log.Logging;
+import com.grinderwolf.swm.plugin.world.MemoryReporter;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+
+import java.util.*;
+
+import static com.grinderwolf.swm.plugin.world.MemoryReporter.formatSize;
+
+@Getter
+public class MemoryCmd implements Subcommand {
+
+    private final String usage = "memory [world]";
+    private final String description = "Show an estimate of the memory used by the loaded worlds.";
+    private final String permission = "swm.memory";
+
+    @Override
+    public boolean onCommand(CommandSender sender, String[] args) {
+        if (args.length > 0) {
+            String worldName = args[0];
+            World bukkitWorld = Bukkit.getWorld(worldName);
+
+            if (bukkitWorld == null) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "World " + worldName + " is not loaded!");
+
+                return true;
+            }
+
+            CraftSlimeWorld world = (CraftSlimeWorld) SWMPlugin.getInstance().getNms().getSlimeWorld(bukkitWorld);
+
+            if (world == null) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "World " + worldName + " is not a slime world!");
+
+                return true;
+            }
+
+            Bukkit.getScheduler().runTaskAsynchronously(SWMPlugin.getInstance(), () -> {
+                SlimeWorldMemoryUsage usage = world.getMemoryUsage();
+
+                sender.sendMessage(Logging.COMMAND_PREFIX + "Memory used by world " + ChatColor.YELLOW + usage.getName()
+                        + ChatColor.GRAY + ": " + ChatColor.GREEN + formatSize(usage.getTotalSize()));
+                sender.sendMessage(ChatColor.GRAY + " - Chunks: " + ChatColor.AQUA + usage.getLoadedChunks() + ChatColor.GRAY
+                        + " decoded, " + ChatColor.AQUA + usage.getCompressedChunks() + ChatColor.GRAY + " compressed");
+                sendSize(sender, "Block states", usage.getBlockStatesSize());
+                sendSize(sender, "Palettes", usage.getPalettesSize());
+                sendSize(sender, "Light", usage.getLightSize());
+                sendSize(sender, "Entities", usage.getEntitiesSize());
+                sendSize(sender, "Tile entities", usage.getTileEntitiesSize());
+                sendSize(sender, "Maps", usage.getMapsSize());
+                sendSize(sender, "Compressed chunks", usage.getCompressedChunksSize());
+                sendSize(sender, "Other", usage.getOtherSize());
+            });
+
+            return true;
+        }
+
+        List<CraftSlimeWorld> worlds = MemoryReporter.getLoadedWorlds();
+
+        if (worlds.isEmpty()) {
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "There are no slime worlds loaded.");
+
+            return true;
+        }
+
+        Bukkit.getScheduler().runTaskAsynchronously(SWMPlugin.getInstance(), () -> {
+            List<SlimeWorldMemoryUsage> usages = new ArrayList<>();
+            long totalSize = 0;
+
+            for (CraftSlimeWorld world : worlds) {
+                SlimeWorldMemoryUsage usage = world.getMemoryUsage();
+                usages.add(usage);
+                totalSize += usage.getTotalSize();
+            }
+
+            usages.sort(Comparator.comparingLong(SlimeWorldMemoryUsage::getTotalSize).reversed());
+            sender.sendMessage(Logging.COMMAND_PREFIX + "Memory used by slime worlds: " + ChatColor.GREEN + formatSize(totalSize));
+
+            for (SlimeWorldMemoryUsage usage : usages) {
+                sender.sendMessage(ChatColor.GRAY + " - " + ChatColor.YELLOW + usage.getName() + ChatColor.GRAY + ": "
+                        + ChatColor.GREEN + formatSize(usage.getTotalSize()) + ChatColor.GRAY + " (" + usage.getLoadedChunks()
+                        + " decoded, " + usage.getCompressedChunks() + " compressed chunks)");
+            }
+        });
+
+        return true;
+    }
+
+    private void sendSize(CommandSender sender, String name, long size) {
+        sender.sendMessage(ChatColor.GRAY + " - " + name + ": " + ChatColor.GREEN + formatSize(size));
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, String[] args) {
+        List<String> toReturn = null;
+
+        if (args.length == 2) {
+            final String typed = args[1].toLowerCase();
+
+            for (World world : Bukkit.getWorlds()) {
+                final String worldName = world.getName();
+                if (worldName.toLowerCase().startsWith(typed) && SWMPlugin.getInstance().getNms().getSlimeWorld(world) != null) {
+                    if (toReturn == null) {
+                        toReturn = new LinkedList<>();
+                    }
+                    toReturn.add(worldName);
+                }
+            }
+        }
+
+        return toReturn == null ? Collections.emptyList() : toReturn;
+    }
+}
@@ -0,0 +1,105 @@
+package com.grinderwolf.swm.plugin.commands.sub;
+
+import com.grinderwolf.swm.api.exceptions.CorruptedWorldException;
+import com.grinderwolf.swm.api.loaders.SlimeLoader;
+import com.grinderwolf.swm.plugin.SWMPlugin;
+import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
+import com.grinderwolf.swm.plugin.log.Logging;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+public class VerifyCmd implements Subcommand {
+
+    private final String usage = "verify <world|all> <data-source>";
+    private final String description = "Check the integrity of a world, or of every world inside a data source.";
+    private final String permission = "swm.verify";
+
+    @Override
+    public boolean onCommand(CommandSender sender, String[] args) {
+        if (args.length > 1) {
+            String worldName = args[0];
+            String source = args[1];
+            SlimeLoader loader = LoaderUtils.getLoader(source);
+
+            if (loader == null) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Unknown data source " + source + ".");
+
+                return true;
+            }
+
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GRAY + "Verifying " + (worldName.equalsIgnoreCase("all")
+                    ? "every world of data source " + source : "world " + worldName) + "...");
+
+            Bukkit.getScheduler().runTaskAsynchronously(SWMPlugin.getInstance(), () -> {
+
+                try {
+                    long start = System.currentTimeMillis();
+                    List<String> worldList;
+
+                    if (worldName.equalsIgnoreCase("all")) {
+                        worldList = loader.listWorlds();
+                    } else if (loader.worldExists(worldName)) {
+                        worldList = Collections.singletonList(worldName);
+                    } else {
+                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "World " + worldName + " does not exist in data source " + source + ".");
+
+                        return;
+                    }
+
+                    Map<String, Exception> failedWorlds = LoaderUtils.verifyWorlds(loader, worldList);
+
+                    for (Map.Entry<String, Exception> entry : failedWorlds.entrySet()) {
+                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + entry.getKey() + ": " + ChatColor.GRAY + entry.getValue().getMessage());
+
+                        if (!(entry.getValue() instanceof CorruptedWorldException)) {
+                            Logging.error("Failed to verify world " + entry.getKey() + ":");
+                            entry.getValue().printStackTrace();
+                        }
+                    }
+
+                    ChatColor color = failedWorlds.isEmpty() ? ChatColor.GREEN : ChatColor.RED;
+                    sender.sendMessage(Logging.COMMAND_PREFIX + color + "Verified " + worldList.size() + " world(s) in " + (System.currentTimeMillis() - start)
+                            + "ms, " + failedWorlds.size() + " of them failed.");
+                } catch (IOException ex) {
+                    if (!(sender instanceof ConsoleCommandSender)) {
+                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to verify the worlds of data source " + source
+                                + ". Take a look at the server console for more information.");
+                    }
+
+                    Logging.error("Failed to verify the worlds of data source " + source + ":");
+                    ex.printStackTrace();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+
+            });
+
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, String[] args) {
+        if (args.length == 2) {
+            return Collections.singletonList("all");
+        }
+
+        if (args.length == 3) {
+            return new LinkedList<>(LoaderUtils.getAvailableLoadersNames());
+        }
+
+        return Collections.emptyList();
+    }
+}
@@ -16,6 +16,15 @@ public class MainConfig {
     @Setting("updater")
     private UpdaterOptions updaterOptions = new UpdaterOptions();
 
+    @Setting("loading")
+    private LoadingOptions loadingOptions = new LoadingOptions();
+
+    @Setting("idlechunks")
+    private IdleChunkOptions idleChunkOptions = new IdleChunkOptions();
+
+    @Setting("memory")
+    private MemoryOptions memoryOptions = new MemoryOptions();
+
     @Getter
     @ConfigSerializable
     public static class UpdaterOptions {
@@ -27,6 +36,43 @@ public class MainConfig {
         private final boolean messageEnabled = true;
     }
 
+    @Getter
+    @ConfigSerializable
+    public static class LoadingOptions {
+
+        @Setting(value = "decodethreads", comment = "Amount of threads used to deserialize chunks, shared by all the worlds being loaded. " +
+                "Set it to 0 to use as many threads as CPU cores.")
+        private int decodeThreads = 0;
+    }
+
+    @Getter
+    @ConfigSerializable
+    public static class IdleChunkOptions {
+
+        @Setting(value = "enabled", comment = "Whether chunks the server has unloaded should be compressed in memory until they're loaded again.")
+        private boolean enabled = true;
+
+        @Setting(value = "idleminutes", comment = "Minutes a chunk has to stay unloaded before it's compressed.")
+        private int idleMinutes = 5;
+
+        @Setting(value = "maxperworld", comment = "Maximum amount of unloaded chunks each world keeps uncompressed. When a world goes over it, " +
+                "its chunks that have been unloaded for the longest are compressed right away. Set it to -1 for no limit.")
+        private int maxPerWorld = -1;
+
+        @Setting(value = "maxtotal", comment = "Maximum amount of unloaded chunks kept uncompressed by all the worlds together. " +
+                "Set it to -1 for no limit.")
+        private int maxTotal = -1;
+    }
+
+    @Getter
+    @ConfigSerializable
+    public static class MemoryOptions {
+
+        @Setting(value = "logminutes", comment = "Minutes between two log lines with the estimated memory used by the loaded worlds. " +
+                "Set it to 0 to disable them.")
+        private int logMinutes = 30;
+    }
+
     public void save() {
         try {
             ConfigManager.getMainConfigLoader().save(ConfigManager.getMainConfigLoader().createEmptyNode().setValue(TypeToken.of(MainConfig.class), this));
@@ -1,6 +1,7 @@
 package com.grinderwolf.swm.plugin.config;
 
 import com.grinderwolf.swm.api.world.properties.SlimeProperties;
+import com.grinderwolf.swm.api.world.properties.SlimeProperty;
 import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
 import lombok.Data;
 import ninja.leaping.configurate.objectmapping.Setting;
@@ -41,6 +42,20 @@ public class WorldData {
     @Setting("defaultBiome")
     private String defaultBiome = "minecraft:plains";
 
+    @Setting("chunkCompression")
+    private String chunkCompression = "zstd:3";
+    @Setting("tileEntityCompression")
+    private String tileEntityCompression = "zstd:3";
+    @Setting("entityCompression")
+    private String entityCompression = "zstd:3";
+    @Setting("extraCompression")
+    private String extraCompression = "zstd:3";
+    @Setting("mapCompression")
+    private String mapCompression = "zstd:3";
+
+    @Setting("saveLight")
+    private boolean saveLight = true;
+
     @Setting("loadOnStartup")
     private boolean loadOnStartup = true;
     @Setting("readOnly")
@@ -97,7 +112,21 @@ public class WorldData {
         propertyMap.setValue(ENVIRONMENT, environment);
         propertyMap.setValue(WORLD_TYPE, worldType);
         propertyMap.setValue(DEFAULT_BIOME, defaultBiome);
+        setCompression(propertyMap, CHUNK_COMPRESSION, chunkCompression);
+        setCompression(propertyMap, TILE_ENTITY_COMPRESSION, tileEntityCompression);
+        setCompression(propertyMap, ENTITY_COMPRESSION, entityCompression);
+        setCompression(propertyMap, EXTRA_COMPRESSION, extraCompression);
+        setCompression(propertyMap, MAP_COMPRESSION, mapCompression);
+        propertyMap.setValue(SAVE_LIGHT, saveLight);
 
         return propertyMap;
     }
+
+    private static void setCompression(SlimePropertyMap propertyMap, SlimeProperty<String> property, String compression) {
+        if (!property.getValidator().apply(compression)) {
+            throw new IllegalArgumentException("invalid " + property.getNbtName() + " '" + compression + "'");
+        }
+
+        propertyMap.setValue(property, compression);
+    }
 }
@@ -3,25 +3,33 @@ package com.grinderwolf.swm.plugin.loaders;
 import com.flowpowered.nbt.CompoundMap;
 import com.flowpowered.nbt.CompoundTag;
 import com.flowpowered.nbt.DoubleTag;
-import com.flowpowered.nbt.IntArrayTag;
 import com.flowpowered.nbt.IntTag;
 import com.flowpowered.nbt.ListTag;
-import com.flowpowered.nbt.TagType;
-import com.flowpowered.nbt.stream.NBTInputStream;
-import com.github.luben.zstd.Zstd;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.grinderwolf.swm.api.exceptions.CorruptedWorldException;
 import com.grinderwolf.swm.api.exceptions.NewerFormatException;
+import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
+import com.grinderwolf.swm.api.exceptions.WorldInUseException;
 import com.grinderwolf.swm.api.loaders.SlimeLoader;
-import com.grinderwolf.swm.api.utils.NibbleArray;
 import com.grinderwolf.swm.api.utils.SlimeFormat;
 import com.grinderwolf.swm.api.world.SlimeChunk;
 import com.grinderwolf.swm.api.world.SlimeChunkSection;
+import com.grinderwolf.swm.api.world.SlimeWorldMetadata;
 import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
-import com.grinderwolf.swm.nms.CraftSlimeChunk;
-import com.grinderwolf.swm.nms.CraftSlimeChunkSection;
+import com.grinderwolf.swm.nms.BlockPalette;
+import com.grinderwolf.swm.nms.ChunkDeserializer;
+import com.grinderwolf.swm.nms.ChunkMap;
+import com.grinderwolf.swm.nms.CompressionDictionary;
+import com.grinderwolf.swm.nms.CompressionPool;
 import com.grinderwolf.swm.nms.CraftSlimeWorld;
+import com.grinderwolf.swm.nms.EncodedSlimeChunk;
+import com.grinderwolf.swm.nms.NbtCodec;
+import com.grinderwolf.swm.nms.SegmentCompression;
+import com.grinderwolf.swm.nms.SectionTable;
+import com.grinderwolf.swm.nms.XXHash64;
 import com.grinderwolf.swm.plugin.config.ConfigManager;
 import com.grinderwolf.swm.plugin.config.DatasourcesConfig;
+import com.grinderwolf.swm.plugin.config.MainConfig;
 import com.grinderwolf.swm.plugin.loaders.file.FileLoader;
 import com.grinderwolf.swm.plugin.loaders.mongo.MongoLoader;
 import com.grinderwolf.swm.plugin.loaders.mysql.MysqlLoader;
@@ -30,15 +38,20 @@ import com.grinderwolf.swm.plugin.log.Logging;
 import com.mongodb.MongoException;
 
 import io.lettuce.core.RedisException;
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
-import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class LoaderUtils {
 
@@ -47,6 +60,19 @@ public class LoaderUtils {
 
     private static final Map<String, SlimeLoader> loaderMap = new HashMap<>();
 
+    // zstd dictionary IDs are random, so dictionaries can be shared between data sources
+    private static final Map<Integer, CompressionDictionary> dictionaryCache = new ConcurrentHashMap<>();
+
+    // Worlds with fewer chunks than this are decoded on the calling thread
+    private static final int PARALLEL_DECODE_THRESHOLD = 64;
+    private static ForkJoinPool decodePool;
+
+    // Worlds fetched from the data source at the same time while verifying them
+    private static final int VERIFY_IO_THREADS = 4;
+
+    // Enough for the metadata of almost every world, so reading it only takes a single request
+    private static final int METADATA_PREFIX_LENGTH = 4096;
+
     public static void registerLoaders() {
         DatasourcesConfig config = ConfigManager.getDatasourcesConfig();
 
@@ -119,125 +145,269 @@ public class LoaderUtils {
         loaderMap.put(dataSource, loader);
     }
 
+    /**
+     * Returns a compression dictionary, loading it from the data source if it isn't cached yet.
+     *
+     * @return The dictionary, or <code>null</code> if the ID is 0.
+     * @throws IOException if the dictionary could not be found in the data source.
+     */
+    public static CompressionDictionary getDictionary(SlimeLoader loader, int dictionaryId) throws IOException {
+        if (dictionaryId == 0) {
+            return null;
+        }
+
+        CompressionDictionary dictionary = dictionaryCache.get(dictionaryId);
+
+        if (dictionary == null) {
+            byte[] dictionaryData = loader.loadDictionary(dictionaryId);
+
+            if (dictionaryData == null) {
+                throw new IOException("Unknown compression dictionary " + Integer.toUnsignedString(dictionaryId));
+            }
+
+            dictionary = new CompressionDictionary(dictionaryData);
+
+            if (dictionary.getId() != dictionaryId) {
+                throw new IOException("Compression dictionary " + Integer.toUnsignedString(dictionaryId) + " has a different ID");
+            }
+
+            dictionaryCache.put(dictionaryId, dictionary);
+        }
+
+        return dictionary;
+    }
+
+    /**
+     * Returns the dictionary new worlds of a data source should be compressed with.
+     */
+    public static CompressionDictionary getActiveDictionary(SlimeLoader loader) throws IOException {
+        return getDictionary(loader, loader.getActiveDictionary());
+    }
+
+    public static void cacheDictionary(CompressionDictionary dictionary) {
+        dictionaryCache.put(dictionary.getId(), dictionary);
+    }
+
+    /**
+     * Makes sure the data source a serialized world is being moved to
+     * has the dictionary the world is compressed with.
+     */
+    public static void copyDictionary(byte[] serializedWorld, SlimeLoader currentLoader, SlimeLoader newLoader) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(serializedWorld);
+
+        // Header, SRF version, world version or metadata, and dictionary ID
+        if (buffer.remaining() < SlimeFormat.SLIME_HEADER.length + 6) {
+            return;
+        }
+
+        buffer.position(SlimeFormat.SLIME_HEADER.length);
+        byte version = buffer.get();
+
+        if (version < 11) {
+            return;
+        }
+
+        if (version >= 18) {
+            int metadataLength = buffer.getInt();
+
+            if (metadataLength < 0 || buffer.remaining() < metadataLength + 4) {
+                return;
+            }
+
+            buffer.position(buffer.position() + metadataLength);
+        } else {
+            buffer.get();
+        }
+
+        int dictionaryId = buffer.getInt();
+
+        if (dictionaryId != 0 && newLoader.loadDictionary(dictionaryId) == null) {
+            newLoader.saveDictionary(dictionaryId, getDictionary(currentLoader, dictionaryId).getData());
+        }
+    }
+
     public static CraftSlimeWorld deserializeWorld(SlimeLoader loader, String worldName, byte[] serializedWorld, SlimePropertyMap propertyMap, boolean readOnly)
             throws IOException, CorruptedWorldException, NewerFormatException {
-        DataInputStream dataStream = new DataInputStream(new ByteArrayInputStream(serializedWorld));
+        ByteBuffer buffer = ByteBuffer.wrap(serializedWorld);
 
         try {
-            byte[] fileHeader = new byte[SlimeFormat.SLIME_HEADER.length];
-            dataStream.read(fileHeader);
+            byte[] fileHeader = ChunkDeserializer.readByteArray(buffer, SlimeFormat.SLIME_HEADER.length);
 
             if (!Arrays.equals(SlimeFormat.SLIME_HEADER, fileHeader)) {
                 throw new CorruptedWorldException(worldName);
             }
 
             // File version
-            byte version = dataStream.readByte();
+            byte version = buffer.get();
 
             if (version > SlimeFormat.SLIME_VERSION) {
                 throw new NewerFormatException(version);
             }
 
+            // Metadata
+            SlimeWorldMetadata metadata = null;
+
+            if (version >= 18) {
+                metadata = readMetadata(buffer, worldName, version);
+            }
+
             // World version
             byte worldVersion;
 
-            if (version >= 6) {
-                worldVersion = dataStream.readByte();
+            if (metadata != null) {
+                worldVersion = metadata.getWorldVersion();
+            } else if (version >= 6) {
+                worldVersion = buffer.get();
             } else if (version >= 4) { // In v4 there's just a boolean indicating whether the world is pre-1.13 or post-1.13
-                worldVersion = (byte) (dataStream.readBoolean() ? 0x04 : 0x01);
+                worldVersion = (byte) (buffer.get() != 0 ? 0x04 : 0x01);
             } else {
                 worldVersion = 0; // We'll try to automatically detect it later
             }
 
+            // Compression dictionary
+            CompressionDictionary dictionary = null;
+
+            if (version >= 11) {
+                dictionary = getDictionary(loader, buffer.getInt());
+            }
+
+            // Segment compression
+            SegmentCompression chunkCompression = SegmentCompression.DEFAULT;
+            SegmentCompression tileEntityCompression = SegmentCompression.DEFAULT;
+            SegmentCompression entityCompression = SegmentCompression.DEFAULT;
+            SegmentCompression extraCompression = SegmentCompression.DEFAULT;
+            SegmentCompression mapCompression = SegmentCompression.DEFAULT;
+
+            if (version >= 12) {
+                chunkCompression = SegmentCompression.read(buffer);
+                tileEntityCompression = SegmentCompression.read(buffer);
+                entityCompression = SegmentCompression.read(buffer);
+                extraCompression = SegmentCompression.read(buffer);
+                mapCompression = SegmentCompression.read(buffer);
+            }
+
             // Chunk
-            short minX = dataStream.readShort();
-            short minZ = dataStream.readShort();
-            int width = dataStream.readShort();
-            int depth = dataStream.readShort();
+            int minX;
+            int minZ;
+            int width;
+            int depth;
+
+            if (metadata != null) {
+                minX = metadata.getMinX();
+                minZ = metadata.getMinZ();
+                width = metadata.getWidth();
+                depth = metadata.getDepth();
+            } else {
+                minX = buffer.getShort();
+                minZ = buffer.getShort();
+                width = buffer.getShort();
+                depth = buffer.getShort();
+            }
 
             if (width <= 0 || depth <= 0) {
                 throw new CorruptedWorldException(worldName);
             }
 
             int bitmaskSize = (int) Math.ceil((width * depth) / 8.0D);
-            byte[] chunkBitmask = new byte[bitmaskSize];
-            dataStream.read(chunkBitmask);
+            byte[] chunkBitmask = ChunkDeserializer.readByteArray(buffer, bitmaskSize);
             BitSet chunkBitset = BitSet.valueOf(chunkBitmask);
 
-            int compressedChunkDataLength = dataStream.readInt();
-            int chunkDataLength = dataStream.readInt();
-            byte[] compressedChunkData = new byte[compressedChunkDataLength];
-            byte[] chunkData = new byte[chunkDataLength];
+            byte[] compressedChunkData;
+            int chunkDataLength;
+            Map<Long, EncodedSlimeChunk> encodedChunks;
 
-            dataStream.read(compressedChunkData);
+            // Block palette
+            BlockPalette blockPalette = new BlockPalette();
 
-            // Tile Entities
-            int compressedTileEntitiesLength = dataStream.readInt();
-            int tileEntitiesLength = dataStream.readInt();
-            byte[] compressedTileEntities = new byte[compressedTileEntitiesLength];
-            byte[] tileEntities = new byte[tileEntitiesLength];
+            if (version >= 14) {
+                int compressedBlockPaletteLength = buffer.getInt();
+                int blockPaletteLength = buffer.getInt();
+                byte[] compressedBlockPalette = readSegment(buffer, version, compressedBlockPaletteLength, worldName, "block palette");
+
+                blockPalette = BlockPalette.read(CompressionPool.decompress(compressedBlockPalette, blockPaletteLength, chunkCompression, dictionary));
+            }
+
+            // Section table
+            SectionTable sectionTable = new SectionTable();
+
+            if (version >= 13) {
+                int compressedSectionTableLength = buffer.getInt();
+                int sectionTableLength = buffer.getInt();
+                byte[] compressedSectionTable = readSegment(buffer, version, compressedSectionTableLength, worldName, "section table");
+
+                sectionTable = SectionTable.read(CompressionPool.decompress(compressedSectionTable, sectionTableLength, chunkCompression, dictionary));
+            }
 
-            dataStream.read(compressedTileEntities);
+            if (version >= 10) {
+                // Every chunk is stored in its own zstd frame, which is only decoded when the chunk gets loaded
+                encodedChunks = readChunkFrames(buffer, worldName, worldVersion, version, chunkCompression, dictionary, blockPalette, sectionTable,
+                        minX, minZ, width, depth, chunkBitset);
+                compressedChunkData = new byte[0];
+                chunkDataLength = 0;
+            } else {
+                int compressedChunkDataLength = buffer.getInt();
+                chunkDataLength = buffer.getInt();
+                compressedChunkData = ChunkDeserializer.readByteArray(buffer, compressedChunkDataLength);
+
+                encodedChunks = Collections.emptyMap();
+            }
+
+            // Tile Entities
+            int compressedTileEntitiesLength = buffer.getInt();
+            int tileEntitiesLength = buffer.getInt();
+            byte[] compressedTileEntities = readSegment(buffer, version, compressedTileEntitiesLength, worldName, "tile entities");
 
             // Entities
             byte[] compressedEntities = new byte[0];
-            byte[] entities = new byte[0];
+            int entitiesLength = 0;
 
             if (version >= 3) {
-                boolean hasEntities = dataStream.readBoolean();
+                boolean hasEntities = buffer.get() != 0;
 
                 if (hasEntities) {
-                    int compressedEntitiesLength = dataStream.readInt();
-                    int entitiesLength = dataStream.readInt();
-                    compressedEntities = new byte[compressedEntitiesLength];
-                    entities = new byte[entitiesLength];
-
-                    dataStream.read(compressedEntities);
+                    int compressedEntitiesLength = buffer.getInt();
+                    entitiesLength = buffer.getInt();
+                    compressedEntities = readSegment(buffer, version, compressedEntitiesLength, worldName, "entities");
                 }
             }
 
             // Extra NBT tag
             byte[] compressedExtraTag = new byte[0];
-            byte[] extraTag = new byte[0];
+            int extraTagLength = 0;
 
             if (version >= 2) {
-                int compressedExtraTagLength = dataStream.readInt();
-                int extraTagLength = dataStream.readInt();
-                compressedExtraTag = new byte[compressedExtraTagLength];
-                extraTag = new byte[extraTagLength];
-
-                dataStream.read(compressedExtraTag);
+                int compressedExtraTagLength = buffer.getInt();
+                extraTagLength = buffer.getInt();
+                compressedExtraTag = readSegment(buffer, version, compressedExtraTagLength, worldName, "extra");
             }
 
             // World Map NBT tag
             byte[] compressedMapsTag = new byte[0];
-            byte[] mapsTag = new byte[0];
+            int mapsTagLength = 0;
 
             if (version >= 7) {
-                int compressedMapsTagLength = dataStream.readInt();
-                int mapsTagLength = dataStream.readInt();
-                compressedMapsTag = new byte[compressedMapsTagLength];
-                mapsTag = new byte[mapsTagLength];
-
-                dataStream.read(compressedMapsTag);
+                int compressedMapsTagLength = buffer.getInt();
+                mapsTagLength = buffer.getInt();
+                compressedMapsTag = readSegment(buffer, version, compressedMapsTagLength, worldName, "maps");
             }
 
-            if (dataStream.read() != -1) {
+            if (buffer.hasRemaining()) {
                 throw new CorruptedWorldException(worldName);
             }
 
-            // Data decompression
-            Zstd.decompress(chunkData, compressedChunkData);
-            Zstd.decompress(tileEntities, compressedTileEntities);
-            Zstd.decompress(entities, compressedEntities);
-            Zstd.decompress(extraTag, compressedExtraTag);
-            Zstd.decompress(mapsTag, compressedMapsTag);
-
             // Chunk deserialization
-            Map<Long, SlimeChunk> chunks = readChunks(worldVersion, version, worldName, minX, minZ, width, depth, chunkBitset, chunkData);
+            // Every segment is decompressed into the same pooled buffer, so each one is parsed before moving to the next
+            Map<Long, SlimeChunk> chunks;
+
+            if (version >= 10) {
+                chunks = new HashMap<>();
+            } else {
+                ByteBuffer chunkData = CompressionPool.decompress(compressedChunkData, chunkDataLength);
+                chunks = readChunks(worldVersion, version, worldName, minX, minZ, width, depth, chunkBitset, chunkData);
+            }
 
             // Entity deserialization
-            CompoundTag entitiesCompound = readCompoundTag(entities);
+            CompoundTag entitiesCompound = readCompressedTag(compressedEntities, entitiesLength, entityCompression, dictionary);
 
             if (entitiesCompound != null) {
                 ListTag<CompoundTag> entitiesList = (ListTag<CompoundTag>) entitiesCompound.getValue().get("entities");
@@ -247,45 +417,51 @@ public class LoaderUtils {
 
                     int chunkX = floor(listTag.getValue().get(0).getValue()) >> 4;
                     int chunkZ = floor(listTag.getValue().get(2).getValue()) >> 4;
-                    long chunkKey = ((long) chunkZ) * Integer.MAX_VALUE + ((long) chunkX);
+                    long chunkKey = ChunkMap.getKey(chunkX, chunkZ);
                     SlimeChunk chunk = chunks.get(chunkKey);
+                    EncodedSlimeChunk encodedChunk = encodedChunks.get(chunkKey);
 
-                    if (chunk == null) {
+                    if (chunk != null) {
+                        chunk.getEntities().add(entityCompound);
+                    } else if (encodedChunk != null) {
+                        encodedChunk.getEntities().add(entityCompound);
+                    } else {
                         throw new CorruptedWorldException(worldName);
                     }
-
-                    chunk.getEntities().add(entityCompound);
                 }
             }
 
             // Tile Entity deserialization
-            CompoundTag tileEntitiesCompound = readCompoundTag(tileEntities);
+            CompoundTag tileEntitiesCompound = readCompressedTag(compressedTileEntities, tileEntitiesLength, tileEntityCompression, dictionary);
 
             if (tileEntitiesCompound != null) {
                 ListTag<CompoundTag> tileEntitiesList = (ListTag<CompoundTag>) tileEntitiesCompound.getValue().get("tiles");
                 for (CompoundTag tileEntityCompound : tileEntitiesList.getValue()) {
                     int chunkX = ((IntTag) tileEntityCompound.getValue().get("x")).getValue() >> 4;
                     int chunkZ = ((IntTag) tileEntityCompound.getValue().get("z")).getValue() >> 4;
-                    long chunkKey = ((long) chunkZ) * Integer.MAX_VALUE + ((long) chunkX);
+                    long chunkKey = ChunkMap.getKey(chunkX, chunkZ);
                     SlimeChunk chunk = chunks.get(chunkKey);
+                    EncodedSlimeChunk encodedChunk = encodedChunks.get(chunkKey);
 
-                    if (chunk == null) {
+                    if (chunk != null) {
+                        chunk.getTileEntities().add(tileEntityCompound);
+                    } else if (encodedChunk != null) {
+                        encodedChunk.getTileEntities().add(tileEntityCompound);
+                    } else {
                         throw new CorruptedWorldException(worldName);
                     }
-
-                    chunk.getTileEntities().add(tileEntityCompound);
                 }
             }
 
             // Extra Data
-            CompoundTag extraCompound = readCompoundTag(extraTag);
+            CompoundTag extraCompound = readCompressedTag(compressedExtraTag, extraTagLength, extraCompression, dictionary);
 
             if (extraCompound == null) {
                 extraCompound = new CompoundTag("", new CompoundMap());
             }
 
             // World Maps
-            CompoundTag mapsCompound = readCompoundTag(mapsTag);
+            CompoundTag mapsCompound = readCompressedTag(compressedMapsTag, mapsTagLength, mapCompression, dictionary);
             List<CompoundTag> mapList;
 
             if (mapsCompound != null) {
@@ -316,195 +492,480 @@ public class LoaderUtils {
 
             if (propertiesMap.isPresent()) {
                 worldPropertyMap = new SlimePropertyMap(propertiesMap.get());
-                worldPropertyMap.merge(propertyMap); // Override world properties
+
+                if (propertyMap != null) {
+                    worldPropertyMap.merge(propertyMap); // Override world properties
+                }
             } else if (propertyMap == null) { // Make sure the property map is never null
                 worldPropertyMap = new SlimePropertyMap();
             }
 
-            return new CraftSlimeWorld(loader, worldName, chunks, extraCompound, mapList, worldVersion, worldPropertyMap, readOnly, !readOnly);
-        } catch (EOFException ex) {
+            CraftSlimeWorld world = new CraftSlimeWorld(loader, worldName, chunks, extraCompound, mapList, worldVersion, dictionary, worldPropertyMap,
+                    readOnly, !readOnly);
+            world.setBlockPalette(blockPalette);
+            world.setSectionTable(sectionTable);
+            world.addEncodedChunks(encodedChunks.values());
+            world.setSavedPayload(serializedWorld);
+
+            return world;
+        } catch (BufferUnderflowException ex) {
             throw new CorruptedWorldException(worldName, ex);
         }
     }
 
-    private static int floor(double num) {
-        final int floor = (int) num;
-        return floor == num ? floor : floor - (int) (Double.doubleToRawLongBits(num) >>> 63);
-    }
+    /**
+     * Checks a serialized world against the checksums of its segments and chunks, without decompressing
+     * anything. Worlds saved before SRF v17 don't have checksums, so they are fully deserialized instead.
+     *
+     * @throws CorruptedWorldException if the world is corrupted.
+     */
+    public static void verifyWorld(SlimeLoader loader, String worldName, byte[] serializedWorld)
+            throws IOException, CorruptedWorldException, NewerFormatException {
+        ByteBuffer buffer = ByteBuffer.wrap(serializedWorld);
 
-    private static Map<Long, SlimeChunk> readChunks(byte worldVersion, int version, String worldName, int minX, int minZ, int width, int depth, BitSet chunkBitset, byte[] chunkData) throws IOException {
-        DataInputStream dataStream = new DataInputStream(new ByteArrayInputStream(chunkData));
-        Map<Long, SlimeChunk> chunkMap = new HashMap<>();
+        try {
+            byte[] fileHeader = ChunkDeserializer.readByteArray(buffer, SlimeFormat.SLIME_HEADER.length);
 
-        for (int z = 0; z < depth; z++) {
-            for (int x = 0; x < width; x++) {
-                int bitsetIndex = z * width + x;
+            if (!Arrays.equals(SlimeFormat.SLIME_HEADER, fileHeader)) {
+                throw new CorruptedWorldException(worldName, "it's not a slime world");
+            }
 
-                if (chunkBitset.get(bitsetIndex)) {
-                    // Height Maps
-                    CompoundTag heightMaps;
-
-                    if (worldVersion >= 0x04) {
-                        int heightMapsLength = dataStream.readInt();
-                        byte[] heightMapsArray = new byte[heightMapsLength];
-                        dataStream.read(heightMapsArray);
-                        heightMaps = readCompoundTag(heightMapsArray);
-
-                        // Height Maps might be null if empty
-                        if (heightMaps == null) {
-                            heightMaps = new CompoundTag("", new CompoundMap());
-                        }
-                    } else {
-                        int[] heightMap = new int[256];
+            byte version = buffer.get();
 
-                        for (int i = 0; i < 256; i++) {
-                            heightMap[i] = dataStream.readInt();
-                        }
+            if (version > SlimeFormat.SLIME_VERSION) {
+                throw new NewerFormatException(version);
+            }
 
-                        CompoundMap map = new CompoundMap();
-                        map.put("heightMap", new IntArrayTag("heightMap", heightMap));
+            if (version < 17) {
+                deserializeWorld(loader, worldName, serializedWorld, null, true).getChunks();
+                return;
+            }
 
-                        heightMaps = new CompoundTag("", map);
-                    }
+            // Metadata or world version, dictionary and segment compression
+            SlimeWorldMetadata metadata = null;
 
-                    // Biome array
-                    int[] biomes;
+            if (version >= 18) {
+                metadata = readMetadata(buffer, worldName, version);
+            } else {
+                buffer.get();
+            }
 
-                    if (version == 8 && worldVersion < 0x04) {
-                        // Patch the v8 bug: biome array size is wrong for old worlds
-                        dataStream.readInt();
-                    }
+            getDictionary(loader, buffer.getInt());
 
-                    if (worldVersion >= 0x04) {
-                        int biomesArrayLength = version >= 8 ? dataStream.readInt() : 256;
-                        biomes = new int[biomesArrayLength];
+            for (int i = 0; i < 5; i++) {
+                SegmentCompression.read(buffer);
+            }
 
-                        for (int i = 0; i < biomes.length; i++) {
-                            biomes[i] = dataStream.readInt();
-                        }
-                    } else {
-                        byte[] byteBiomes = new byte[256];
-                        dataStream.read(byteBiomes);
-                        biomes = toIntArray(byteBiomes);
+            // Chunk bitmask
+            int width;
+            int depth;
+
+            if (metadata != null) {
+                width = metadata.getWidth();
+                depth = metadata.getDepth();
+            } else {
+                buffer.getShort();
+                buffer.getShort();
+                width = buffer.getShort();
+                depth = buffer.getShort();
+            }
+
+            if (width <= 0 || depth <= 0) {
+                throw new CorruptedWorldException(worldName, "its size is " + width + "x" + depth);
+            }
+
+            BitSet chunkBitset = BitSet.valueOf(ChunkDeserializer.readByteArray(buffer, (int) Math.ceil((width * depth) / 8.0D)));
+
+            verifySegment(buffer, worldName, "block palette");
+            verifySegment(buffer, worldName, "section table");
+
+            // Chunk index
+            int chunkCount = chunkBitset.cardinality();
+            int[] compressedChunkLengths = new int[chunkCount];
+            long[] chunkChecksums = new long[chunkCount];
+
+            for (int i = 0; i < chunkCount; i++) {
+                compressedChunkLengths[i] = buffer.getInt();
+                buffer.getInt();
+                chunkChecksums[i] = buffer.getLong();
+
+                int sharedSectionCount = Integer.bitCount(buffer.getShort() & 0xFFFF);
+                buffer.position(buffer.position() + sharedSectionCount * 4);
+            }
+
+            // Chunks
+            for (int i = 0; i < chunkCount; i++) {
+                verifyChecksum(buffer, compressedChunkLengths[i], chunkChecksums[i], worldName, "chunk #" + i);
+                buffer.position(buffer.position() + compressedChunkLengths[i]);
+            }
+
+            verifySegment(buffer, worldName, "tile entities");
+
+            if (buffer.get() != 0) {
+                verifySegment(buffer, worldName, "entities");
+            }
+
+            verifySegment(buffer, worldName, "extra");
+            verifySegment(buffer, worldName, "maps");
+
+            if (buffer.hasRemaining()) {
+                throw new CorruptedWorldException(worldName, "there's data after its last segment");
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException | IllegalStateException ex) {
+            // Chunks of old worlds that fail to decode throw an IllegalStateException
+            throw new CorruptedWorldException(worldName, ex);
+        }
+    }
+
+    /**
+     * Verifies several worlds of a data source, in parallel.
+     *
+     * @return The worlds that failed verification, and why, sorted by world name.
+     */
+    public static Map<String, Exception> verifyWorlds(SlimeLoader loader, List<String> worldNames) throws InterruptedException {
+        Map<String, Exception> failedWorlds = new TreeMap<>();
+        List<Callable<Void>> tasks = new ArrayList<>(worldNames.size());
+
+        // Fetching the worlds waits on the data source, so it's kept off the decode pool
+        ExecutorService ioExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(VERIFY_IO_THREADS, worldNames.size())),
+                new ThreadFactoryBuilder().setNameFormat("SWM Verify Thread #%1$d").build());
+
+        for (String worldName : worldNames) {
+            tasks.add(() -> {
+                byte[] serializedWorld;
+
+                try {
+                    serializedWorld = loader.loadWorld(worldName, true);
+                } catch (UnknownWorldException ignored) {
+                    // The world was deleted while the others were being verified
+                    return null;
+                }
+
+                getDecodePool().submit(() -> {
+                    try {
+                        verifyWorld(loader, worldName, serializedWorld);
+                    } catch (RuntimeException ex) {
+                        // Damaged data can break the decoders in any number of ways
+                        throw new CorruptedWorldException(worldName, ex);
                     }
 
-                    // Chunk Sections
-                    SlimeChunkSection[] sections = readChunkSections(dataStream, worldVersion, version);
+                    return null;
+                }).get();
+
+                return null;
+            });
+        }
+
+        try {
+            List<Future<Void>> results = ioExecutor.invokeAll(tasks);
+
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+
+                    // The decoding task wraps whatever it threw in another ExecutionException
+                    if (cause instanceof ExecutionException && cause.getCause() != null) {
+                        cause = cause.getCause();
+                    }
 
-                    chunkMap.put(((long) minZ + z) * Integer.MAX_VALUE + ((long) minX + x), new CraftSlimeChunk(worldName,minX + x, minZ + z,
-                            sections, heightMaps, biomes, new ArrayList<>(), new ArrayList<>()));
+                    failedWorlds.put(worldNames.get(i), cause instanceof Exception ? (Exception) cause : new ExecutionException(cause));
                 }
             }
+        } finally {
+            ioExecutor.shutdownNow();
         }
 
-        return chunkMap;
+        return failedWorlds;
     }
 
-    private static int[] toIntArray(byte[] buf) {
-        ByteBuffer buffer = ByteBuffer.wrap(buf).order(ByteOrder.BIG_ENDIAN);
-        int[] ret = new int[buf.length / 4];
+    /**
+     * Reads the metadata of a stored world, fetching just the start of its data file from the data source.
+     *
+     * @return The metadata, or <code>null</code> if the world was saved before SRF v18 and doesn't have any.
+     */
+    public static SlimeWorldMetadata readWorldMetadata(SlimeLoader loader, String worldName)
+            throws UnknownWorldException, IOException, CorruptedWorldException, NewerFormatException {
+        ByteBuffer buffer = ByteBuffer.wrap(loader.loadWorldPrefix(worldName, METADATA_PREFIX_LENGTH));
 
-        buffer.asIntBuffer().get(ret);
+        try {
+            byte[] fileHeader = ChunkDeserializer.readByteArray(buffer, SlimeFormat.SLIME_HEADER.length);
 
-        return ret;
+            if (!Arrays.equals(SlimeFormat.SLIME_HEADER, fileHeader)) {
+                throw new CorruptedWorldException(worldName, "it's not a slime world");
+            }
+
+            byte version = buffer.get();
+
+            if (version > SlimeFormat.SLIME_VERSION) {
+                throw new NewerFormatException(version);
+            }
+
+            if (version < 18) {
+                return null;
+            }
+
+            if (buffer.remaining() < 4) {
+                throw new CorruptedWorldException(worldName, "its metadata is truncated");
+            }
+
+            // The metadata didn't fit in the first read
+            int prefixLength = buffer.position() + 4 + buffer.getInt(buffer.position());
+
+            if (prefixLength > buffer.capacity()) {
+                int position = buffer.position();
+
+                buffer = ByteBuffer.wrap(loader.loadWorldPrefix(worldName, prefixLength));
+                buffer.position(position);
+            }
+
+            return readMetadata(buffer, worldName, version);
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            throw new CorruptedWorldException(worldName, ex);
+        }
     }
 
-    private static SlimeChunkSection[] readChunkSections(DataInputStream dataStream, byte worldVersion, int version) throws IOException {
-        SlimeChunkSection[] chunkSectionArray = new SlimeChunkSection[16];
-        byte[] sectionBitmask = new byte[2];
-        dataStream.read(sectionBitmask);
-        BitSet sectionBitset = BitSet.valueOf(sectionBitmask);
-
-        for (int i = 0; i < 16; i++) {
-            if (sectionBitset.get(i)) {
-                // Block Light Nibble Array
-                NibbleArray blockLightArray;
-
-                if (version < 5 || dataStream.readBoolean()) {
-                    byte[] blockLightByteArray = new byte[2048];
-                    dataStream.read(blockLightByteArray);
-                    blockLightArray = new NibbleArray((blockLightByteArray));
-                } else {
-                    blockLightArray = null;
-                }
+    /**
+     * Reads the metadata of a v18+ world, leaving the buffer right after it.
+     */
+    private static SlimeWorldMetadata readMetadata(ByteBuffer buffer, String worldName, int version) throws IOException, CorruptedWorldException {
+        int metadataLength = buffer.getInt();
 
-                // Block data
-                byte[] blockArray;
-                NibbleArray dataArray;
+        if (metadataLength < 0 || metadataLength > buffer.remaining()) {
+            throw new CorruptedWorldException(worldName, "its metadata is " + metadataLength + " bytes long");
+        }
 
-                ListTag<CompoundTag> paletteTag;
-                long[] blockStatesArray;
+        int metadataEnd = buffer.position() + metadataLength;
+
+        byte worldVersion = buffer.get();
+        long lastSave = buffer.getLong();
+        short minX = buffer.getShort();
+        short minZ = buffer.getShort();
+        int width = buffer.getShort();
+        int depth = buffer.getShort();
+        int chunkCount = buffer.getInt();
+
+        // Compressed segment sizes
+        int blockPaletteSize = buffer.getInt();
+        int sectionTableSize = buffer.getInt();
+        int chunksSize = buffer.getInt();
+        int tileEntitiesSize = buffer.getInt();
+        int entitiesSize = buffer.getInt();
+        int extraSize = buffer.getInt();
+        int mapsSize = buffer.getInt();
+
+        CompoundTag propertiesCompound = NbtCodec.readCompound(buffer, buffer.getInt());
+        SlimePropertyMap propertyMap = propertiesCompound == null ? new SlimePropertyMap() : new SlimePropertyMap(propertiesCompound.getValue());
+
+        if (buffer.position() > metadataEnd) {
+            throw new CorruptedWorldException(worldName, "its metadata is longer than " + metadataLength + " bytes");
+        }
 
-                // Post 1.13 block format
-                if (worldVersion >= 0x04) {
-                    // Palette
-                    int paletteLength = dataStream.readInt();
-                    List<CompoundTag> paletteList = new ArrayList<>(paletteLength);
+        buffer.position(metadataEnd);
 
-                    for (int index = 0; index < paletteLength; index++) {
-                        int tagLength = dataStream.readInt();
-                        byte[] serializedTag = new byte[tagLength];
-                        dataStream.read(serializedTag);
+        return new SlimeWorldMetadata(worldName, version, worldVersion, lastSave, minX, minZ, width, depth, chunkCount, blockPaletteSize,
+                sectionTableSize, chunksSize, tileEntitiesSize, entitiesSize, extraSize, mapsSize, propertyMap);
+    }
 
-                        paletteList.add(readCompoundTag(serializedTag));
-                    }
+    private static void verifySegment(ByteBuffer buffer, String worldName, String segment) throws CorruptedWorldException {
+        int compressedLength = buffer.getInt();
+        buffer.getInt();
+        long checksum = buffer.getLong();
+
+        verifyChecksum(buffer, compressedLength, checksum, worldName, segment);
+        buffer.position(buffer.position() + compressedLength);
+    }
+
+    private static int floor(double num) {
+        final int floor = (int) num;
+        return floor == num ? floor : floor - (int) (Double.doubleToRawLongBits(num) >>> 63);
+    }
+
+    private static Map<Long, EncodedSlimeChunk> readChunkFrames(ByteBuffer buffer, String worldName, byte worldVersion, int version,
+                                                                SegmentCompression compression, CompressionDictionary dictionary,
+                                                                BlockPalette blockPalette, SectionTable sectionTable, int minX, int minZ,
+                                                                int width, int depth, BitSet chunkBitset) throws IOException, CorruptedWorldException {
+        // Chunk index
+        int chunkCount = chunkBitset.cardinality();
+        int[] compressedChunkLengths = new int[chunkCount];
+        int[] chunkLengths = new int[chunkCount];
+        long[] chunkChecksums = new long[chunkCount];
+        int[] sharedSectionMasks = new int[chunkCount];
+        int[][] sharedSections = new int[chunkCount][];
+
+        for (int i = 0; i < chunkCount; i++) {
+            compressedChunkLengths[i] = buffer.getInt();
+            chunkLengths[i] = buffer.getInt();
+
+            if (version >= 17) {
+                chunkChecksums[i] = buffer.getLong();
+            }
 
-                    paletteTag = new ListTag<>("", TagType.TAG_COMPOUND, paletteList);
+            if (version >= 13) {
+                sharedSectionMasks[i] = buffer.getShort() & 0xFFFF;
+                sharedSections[i] = new int[Integer.bitCount(sharedSectionMasks[i])];
 
-                    // Block states
-                    int blockStatesArrayLength = dataStream.readInt();
-                    blockStatesArray = new long[blockStatesArrayLength];
+                for (int j = 0; j < sharedSections[i].length; j++) {
+                    int sectionIndex = buffer.getInt();
 
-                    for (int index = 0; index < blockStatesArrayLength; index++) {
-                        blockStatesArray[index] = dataStream.readLong();
+                    if (sectionIndex < 0 || sectionIndex >= sectionTable.size()) {
+                        throw new IOException("Section index " + sectionIndex + " is out of bounds");
                     }
 
-                    blockArray = null;
-                    dataArray = null;
-                } else {
-                    blockArray = new byte[4096];
-                    dataStream.read(blockArray);
+                    sharedSections[i][j] = sectionIndex;
+                }
+            } else {
+                sharedSections[i] = new int[0];
+            }
+        }
+
+        Map<Long, EncodedSlimeChunk> chunkMap = new HashMap<>();
+        int chunkIndex = 0;
+
+        for (int z = 0; z < depth; z++) {
+            for (int x = 0; x < width; x++) {
+                int bitsetIndex = z * width + x;
+
+                if (chunkBitset.get(bitsetIndex)) {
+                    if (version >= 17) {
+                        verifyChecksum(buffer, compressedChunkLengths[chunkIndex], chunkChecksums[chunkIndex], worldName,
+                                "chunk (" + (minX + x) + ", " + (minZ + z) + ")");
+                    }
 
-                    // Block Data Nibble Array
-                    byte[] dataByteArray = new byte[2048];
-                    dataStream.read(dataByteArray);
-                    dataArray = new NibbleArray((dataByteArray));
+                    byte[] compressedChunkData = ChunkDeserializer.readByteArray(buffer, compressedChunkLengths[chunkIndex]);
 
-                    paletteTag = null;
-                    blockStatesArray = null;
+                    chunkMap.put(ChunkMap.getKey(minX + x, minZ + z), new EncodedSlimeChunk(minX + x, minZ + z,
+                            compressedChunkData, chunkLengths[chunkIndex], worldVersion, version, compression, dictionary,
+                            blockPalette, sectionTable, sharedSectionMasks[chunkIndex], sharedSections[chunkIndex]));
+                    chunkIndex++;
                 }
+            }
+        }
+
+        return chunkMap;
+    }
 
-                // Sky Light Nibble Array
-                NibbleArray skyLightArray;
+    private static Map<Long, SlimeChunk> readChunks(byte worldVersion, int version, String worldName, int minX, int minZ, int width, int depth,
+                                                    BitSet chunkBitset, ByteBuffer chunkData) throws IOException, CorruptedWorldException {
+        // First pass: find where every chunk starts without decoding anything
+        int chunkCount = chunkBitset.cardinality();
+        int[] chunkX = new int[chunkCount];
+        int[] chunkZ = new int[chunkCount];
+        int[] chunkOffsets = new int[chunkCount + 1];
+        ByteBuffer buffer = chunkData.duplicate();
+        int chunkIndex = 0;
 
-                if (version < 5 || dataStream.readBoolean()) {
-                    byte[] skyLightByteArray = new byte[2048];
-                    dataStream.read(skyLightByteArray);
-                    skyLightArray = new NibbleArray((skyLightByteArray));
-                } else {
-                    skyLightArray = null;
+        try {
+            for (int z = 0; z < depth; z++) {
+                for (int x = 0; x < width; x++) {
+                    int bitsetIndex = z * width + x;
+
+                    if (chunkBitset.get(bitsetIndex)) {
+                        chunkX[chunkIndex] = minX + x;
+                        chunkZ[chunkIndex] = minZ + z;
+                        chunkOffsets[chunkIndex] = buffer.position();
+                        ChunkDeserializer.skipChunk(buffer, worldVersion, version);
+                        chunkIndex++;
+                    }
                 }
+            }
+        } catch (BufferUnderflowException ex) {
+            throw new CorruptedWorldException(worldName, ex);
+        }
+
+        chunkOffsets[chunkCount] = buffer.position();
+
+        // Second pass: decode the chunks, in parallel for bigger worlds
+        SlimeChunk[] chunks = new SlimeChunk[chunkCount];
 
-                // HypixelBlocks 3
-                if (version < 4) {
-                    short hypixelBlocksLength = dataStream.readShort();
-                    dataStream.skip(hypixelBlocksLength);
+        if (chunkCount < PARALLEL_DECODE_THRESHOLD) {
+            for (int i = 0; i < chunkCount; i++) {
+                chunks[i] = readChunk(worldVersion, version, worldName, chunkX[i], chunkZ[i], chunkData, chunkOffsets[i], chunkOffsets[i + 1]);
+            }
+        } else {
+            List<Callable<SlimeChunk>> tasks = new ArrayList<>(chunkCount);
+
+            for (int i = 0; i < chunkCount; i++) {
+                int index = i;
+                tasks.add(() -> readChunk(worldVersion, version, worldName, chunkX[index], chunkZ[index], chunkData,
+                        chunkOffsets[index], chunkOffsets[index + 1]));
+            }
+
+            List<Future<SlimeChunk>> results = getDecodePool().invokeAll(tasks);
+
+            try {
+                for (int i = 0; i < chunkCount; i++) {
+                    chunks[i] = results.get(i).get();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while decoding world " + worldName);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof IOException) {
+                    throw (IOException) ex.getCause();
                 }
 
-                chunkSectionArray[i] = new CraftSlimeChunkSection(blockArray, dataArray, paletteTag, blockStatesArray, blockLightArray, skyLightArray);
+                throw new CorruptedWorldException(worldName, ex);
             }
         }
 
-        return chunkSectionArray;
+        Map<Long, SlimeChunk> chunkMap = new HashMap<>();
+
+        for (SlimeChunk chunk : chunks) {
+            chunkMap.put(ChunkMap.getKey(chunk.getX(), chunk.getZ()), chunk);
+        }
+
+        return chunkMap;
+    }
+
+    private static SlimeChunk readChunk(byte worldVersion, int version, String worldName, int x, int z, ByteBuffer chunkData, int start, int end) throws IOException {
+        return ChunkDeserializer.readChunk(chunkData.duplicate().limit(end).position(start), worldVersion, version, worldName, x, z, new ArrayList<>(), new ArrayList<>(), null, null);
     }
 
-    private static CompoundTag readCompoundTag(byte[] serializedCompound) throws IOException {
-        if (serializedCompound.length == 0) {
+    /**
+     * Reads the compressed data of a segment, checking it against its checksum if the SRF version has them.
+     */
+    private static byte[] readSegment(ByteBuffer buffer, int version, int compressedLength, String worldName,
+                                      String segment) throws CorruptedWorldException {
+        if (version >= 17) {
+            verifyChecksum(buffer, compressedLength, buffer.getLong(), worldName, segment);
+        }
+
+        return ChunkDeserializer.readByteArray(buffer, compressedLength);
+    }
+
+    /**
+     * Checks the next bytes of the buffer against their checksum, without moving the buffer.
+     */
+    private static void verifyChecksum(ByteBuffer buffer, int length, long checksum, String worldName,
+                                       String segment) throws CorruptedWorldException {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        if (XXHash64.hash(buffer.array(), buffer.arrayOffset() + buffer.position(), length, 0L) != checksum) {
+            throw new CorruptedWorldException(worldName, "the checksum of the " + segment + " doesn't match");
+        }
+    }
+
+    private static CompoundTag readCompressedTag(byte[] compressedData, int length, SegmentCompression compression,
+                                                 CompressionDictionary dictionary) throws IOException {
+        if (length == 0) {
             return null;
         }
 
-        NBTInputStream stream = new NBTInputStream(new ByteArrayInputStream(serializedCompound), NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN);
+        return NbtCodec.readCompound(CompressionPool.decompress(compressedData, length, compression, dictionary), length);
+    }
+
+    private static synchronized ForkJoinPool getDecodePool() {
+        if (decodePool == null) {
+            MainConfig mainConfig = ConfigManager.getMainConfig();
+            int threads = mainConfig == null ? 0 : mainConfig.getLoadingOptions().getDecodeThreads();
+
+            decodePool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        }
 
-        return (CompoundTag) stream.readTag();
+        return decodePool;
     }
 }
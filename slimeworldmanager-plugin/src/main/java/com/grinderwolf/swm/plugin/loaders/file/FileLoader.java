@@ -15,6 +15,8 @@ import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.NotDirectoryException;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -25,6 +27,7 @@ public class FileLoader implements SlimeLoader {
 
     private final Map<String, RandomAccessFile> worldFiles = Collections.synchronizedMap(new HashMap<>());
     private final File worldDir;
+    private final File dictionaryDir;
 
     public FileLoader(File worldDir) {
         this.worldDir = worldDir;
@@ -35,6 +38,8 @@ public class FileLoader implements SlimeLoader {
         }
 
         worldDir.mkdirs();
+
+        this.dictionaryDir = new File(worldDir, "dictionaries");
     }
 
     @Override
@@ -73,6 +78,21 @@ public class FileLoader implements SlimeLoader {
         return serializedWorld;
     }
 
+    @Override
+    public byte[] loadWorldPrefix(String worldName, int length) throws UnknownWorldException, IOException {
+        if (!worldExists(worldName)) {
+            throw new UnknownWorldException(worldName);
+        }
+
+        // A separate handle, so this doesn't move the file pointer of a world that's being loaded or saved
+        try (RandomAccessFile file = new RandomAccessFile(new File(worldDir, worldName + ".slime"), "r")) {
+            byte[] prefix = new byte[(int) Math.min(length, file.length())];
+            file.readFully(prefix);
+
+            return prefix;
+        }
+    }
+
     @Override
     public boolean worldExists(String worldName) {
         return new File(worldDir, worldName + ".slime").exists();
@@ -174,4 +194,42 @@ public class FileLoader implements SlimeLoader {
             }
         }
     }
+
+    @Override
+    public byte[] loadDictionary(int dictionaryId) throws IOException {
+        File dictionaryFile = new File(dictionaryDir, Integer.toUnsignedString(dictionaryId) + ".dict");
+
+        if (!dictionaryFile.exists()) {
+            return null;
+        }
+
+        return Files.readAllBytes(dictionaryFile.toPath());
+    }
+
+    @Override
+    public void saveDictionary(int dictionaryId, byte[] dictionary) throws IOException {
+        dictionaryDir.mkdirs();
+        Files.write(new File(dictionaryDir, Integer.toUnsignedString(dictionaryId) + ".dict").toPath(), dictionary);
+    }
+
+    @Override
+    public int getActiveDictionary() throws IOException {
+        File activeFile = new File(dictionaryDir, "active");
+
+        if (!activeFile.exists()) {
+            return 0;
+        }
+
+        try {
+            return Integer.parseUnsignedInt(new String(Files.readAllBytes(activeFile.toPath()), StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException ex) {
+            throw new IOException("Invalid active dictionary file", ex);
+        }
+    }
+
+    @Override
+    public void setActiveDictionary(int dictionaryId) throws IOException {
+        dictionaryDir.mkdirs();
+        Files.write(new File(dictionaryDir, "active").toPath(), Integer.toUnsignedString(dictionaryId).getBytes(StandardCharsets.UTF_8));
+    }
 }
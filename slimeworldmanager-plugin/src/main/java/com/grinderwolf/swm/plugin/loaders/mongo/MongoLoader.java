@@ -16,13 +16,16 @@ import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.gridfs.GridFSBucket;
 import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.gridfs.GridFSDownloadStream;
 import com.mongodb.client.gridfs.model.GridFSFile;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.Updates;
 import com.mongodb.client.result.UpdateResult;
 import org.bson.Document;
+import org.bson.types.Binary;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -138,6 +141,39 @@ public class MongoLoader extends UpdatableLoader {
         }
     }
 
+    @Override
+    public byte[] loadWorldPrefix(String worldName, int length) throws UnknownWorldException, IOException {
+        try {
+            MongoDatabase mongoDatabase = client.getDatabase(database);
+            MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(collection);
+
+            if (mongoCollection.find(Filters.eq("name", worldName)).first() == null) {
+                throw new UnknownWorldException(worldName);
+            }
+
+            GridFSBucket bucket = GridFSBuckets.create(mongoDatabase, collection);
+
+            try (GridFSDownloadStream stream = bucket.openDownloadStream(worldName)) {
+                byte[] prefix = new byte[(int) Math.min(length, stream.getGridFSFile().getLength())];
+                int read = 0;
+
+                while (read < prefix.length) {
+                    int count = stream.read(prefix, read, prefix.length - read);
+
+                    if (count == -1) {
+                        throw new IOException("World " + worldName + " is shorter than its stored length");
+                    }
+
+                    read += count;
+                }
+
+                return prefix;
+            }
+        } catch (MongoException ex) {
+            throw new IOException(ex);
+        }
+    }
+
     private void updateLock(String worldName, boolean forceSchedule) {
         try {
             MongoDatabase mongoDatabase = client.getDatabase(database);
@@ -287,4 +323,54 @@ public class MongoLoader extends UpdatableLoader {
             throw new IOException(ex);
         }
     }
+
+    @Override
+    public byte[] loadDictionary(int dictionaryId) throws IOException {
+        try {
+            MongoDatabase mongoDatabase = client.getDatabase(database);
+            MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(collection + "_dictionaries");
+            Document dictionaryDoc = mongoCollection.find(Filters.eq("id", Integer.toUnsignedLong(dictionaryId))).first();
+
+            return dictionaryDoc == null ? null : dictionaryDoc.get("dictionary", Binary.class).getData();
+        } catch (MongoException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void saveDictionary(int dictionaryId, byte[] dictionary) throws IOException {
+        try {
+            MongoDatabase mongoDatabase = client.getDatabase(database);
+            MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(collection + "_dictionaries");
+            mongoCollection.updateOne(Filters.eq("id", Integer.toUnsignedLong(dictionaryId)), Updates.set("dictionary", new Binary(dictionary)),
+                    new UpdateOptions().upsert(true));
+        } catch (MongoException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public int getActiveDictionary() throws IOException {
+        try {
+            MongoDatabase mongoDatabase = client.getDatabase(database);
+            MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(collection + "_dictionaries");
+            Document dictionaryDoc = mongoCollection.find(Filters.eq("active", true)).first();
+
+            return dictionaryDoc == null ? 0 : (int) (long) dictionaryDoc.getLong("id");
+        } catch (MongoException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void setActiveDictionary(int dictionaryId) throws IOException {
+        try {
+            MongoDatabase mongoDatabase = client.getDatabase(database);
+            MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(collection + "_dictionaries");
+            mongoCollection.updateMany(Filters.eq("active", true), Updates.set("active", false));
+            mongoCollection.updateOne(Filters.eq("id", Integer.toUnsignedLong(dictionaryId)), Updates.set("active", true));
+        } catch (MongoException ex) {
+            throw new IOException(ex);
+        }
+    }
 }
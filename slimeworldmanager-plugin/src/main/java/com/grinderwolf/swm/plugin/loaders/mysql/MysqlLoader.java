@@ -45,11 +45,20 @@ public class MysqlLoader extends UpdatableLoader {
     private static final String CREATE_WORLDS_TABLE_QUERY = "CREATE TABLE IF NOT EXISTS `worlds` (`id` INT NOT NULL AUTO_INCREMENT, " +
             "`name` VARCHAR(255) UNIQUE, `world` MEDIUMBLOB, `locked` BIGINT, PRIMARY KEY(id));";
     private static final String SELECT_WORLD_QUERY = "SELECT `world`, `locked` FROM `worlds` WHERE `name` = ?;";
+    private static final String SELECT_WORLD_PREFIX_QUERY = "SELECT SUBSTRING(`world`, 1, ?) AS `world` FROM `worlds` WHERE `name` = ?;";
     private static final String UPDATE_WORLD_QUERY = "INSERT INTO `worlds` (`name`, `world`, `locked`) VALUES (?, ?, 1) ON DUPLICATE KEY UPDATE `world` = ?;";
     private static final String UPDATE_LOCK_QUERY = "UPDATE `worlds` SET `locked` = ? WHERE `name` = ?;";
     private static final String DELETE_WORLD_QUERY = "DELETE FROM `worlds` WHERE `name` = ?;";
     private static final String LIST_WORLDS_QUERY = "SELECT `name` FROM `worlds`;";
 
+    // Compression dictionary queries
+    private static final String CREATE_DICTIONARIES_TABLE_QUERY = "CREATE TABLE IF NOT EXISTS `dictionaries` (`id` BIGINT NOT NULL, " +
+            "`dictionary` MEDIUMBLOB, `active` BOOLEAN NOT NULL DEFAULT FALSE, PRIMARY KEY(id));";
+    private static final String SELECT_DICTIONARY_QUERY = "SELECT `dictionary` FROM `dictionaries` WHERE `id` = ?;";
+    private static final String UPDATE_DICTIONARY_QUERY = "INSERT INTO `dictionaries` (`id`, `dictionary`) VALUES (?, ?) ON DUPLICATE KEY UPDATE `dictionary` = ?;";
+    private static final String SELECT_ACTIVE_DICTIONARY_QUERY = "SELECT `id` FROM `dictionaries` WHERE `active` = TRUE LIMIT 1;";
+    private static final String UPDATE_ACTIVE_DICTIONARY_QUERY = "UPDATE `dictionaries` SET `active` = (`id` = ?);";
+
     private final Map<String, ScheduledFuture> lockedWorlds = new HashMap<>();
     private final HikariDataSource source;
 
@@ -90,6 +99,11 @@ public class MysqlLoader extends UpdatableLoader {
             try (PreparedStatement statement = con.prepareStatement(CREATE_VERSIONING_TABLE_QUERY)) {
                 statement.execute();
             }
+
+            // Create dictionaries table
+            try (PreparedStatement statement = con.prepareStatement(CREATE_DICTIONARIES_TABLE_QUERY)) {
+                statement.execute();
+            }
         }
     }
 
@@ -163,6 +177,24 @@ public class MysqlLoader extends UpdatableLoader {
         }
     }
 
+    @Override
+    public byte[] loadWorldPrefix(String worldName, int length) throws UnknownWorldException, IOException {
+        try (Connection con = source.getConnection();
+            PreparedStatement statement = con.prepareStatement(SELECT_WORLD_PREFIX_QUERY)) {
+            statement.setInt(1, length);
+            statement.setString(2, worldName);
+            ResultSet set = statement.executeQuery();
+
+            if (!set.next()) {
+                throw new UnknownWorldException(worldName);
+            }
+
+            return set.getBytes("world");
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
     private void updateLock(String worldName, boolean forceSchedule) {
         try (Connection con = source.getConnection();
              PreparedStatement statement = con.prepareStatement(UPDATE_LOCK_QUERY)) {
@@ -289,4 +321,53 @@ public class MysqlLoader extends UpdatableLoader {
             throw new IOException(ex);
         }
     }
+
+    @Override
+    public byte[] loadDictionary(int dictionaryId) throws IOException {
+        try (Connection con = source.getConnection();
+             PreparedStatement statement = con.prepareStatement(SELECT_DICTIONARY_QUERY)) {
+            statement.setLong(1, Integer.toUnsignedLong(dictionaryId));
+            ResultSet set = statement.executeQuery();
+
+            return set.next() ? set.getBytes("dictionary") : null;
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void saveDictionary(int dictionaryId, byte[] dictionary) throws IOException {
+        try (Connection con = source.getConnection();
+             PreparedStatement statement = con.prepareStatement(UPDATE_DICTIONARY_QUERY)) {
+            statement.setLong(1, Integer.toUnsignedLong(dictionaryId));
+            statement.setBytes(2, dictionary);
+            statement.setBytes(3, dictionary);
+            statement.executeUpdate();
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public int getActiveDictionary() throws IOException {
+        try (Connection con = source.getConnection();
+             PreparedStatement statement = con.prepareStatement(SELECT_ACTIVE_DICTIONARY_QUERY)) {
+            ResultSet set = statement.executeQuery();
+
+            return set.next() ? (int) set.getLong("id") : 0;
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void setActiveDictionary(int dictionaryId) throws IOException {
+        try (Connection con = source.getConnection();
+             PreparedStatement statement = con.prepareStatement(UPDATE_ACTIVE_DICTIONARY_QUERY)) {
+            statement.setLong(1, Integer.toUnsignedLong(dictionaryId));
+            statement.executeUpdate();
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
 }
@@ -8,12 +8,15 @@ import com.grinderwolf.swm.plugin.loaders.redis.util.StringByteCodec;
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.api.sync.RedisCommands;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 public class RedisLoader implements SlimeLoader {
 
     private static final String WORLD_DATA_PREFIX = "aswm_world_data_";
     private static final String WORLD_LOCK_PREFIX = "aswm_world_lock_";
+    private static final String DICTIONARY_PREFIX = "aswm_dictionary_";
+    private static final String ACTIVE_DICTIONARY_KEY = "aswm_active_dictionary";
     private static final byte TRUE = 0x1;
     private static final byte FALSE = 0x0;
 
@@ -45,6 +48,15 @@ public class RedisLoader implements SlimeLoader {
         return data;
     }
 
+    @Override
+    public byte[] loadWorldPrefix(String name, int length) throws UnknownWorldException, IOException {
+        if (!worldExists(name)) {
+            throw new UnknownWorldException(name);
+        }
+
+        return connection.getrange(WORLD_DATA_PREFIX + name, 0, length - 1);
+    }
+
     @Override
     public boolean worldExists(String name) throws IOException {
         return connection.get(WORLD_LOCK_PREFIX + name) != null;
@@ -87,4 +99,28 @@ public class RedisLoader implements SlimeLoader {
         }
         connection.del(WORLD_DATA_PREFIX + name, WORLD_LOCK_PREFIX + name);
     }
-}
\ No newline at end of file
+
+    @Override
+    public byte[] loadDictionary(int dictionaryId) throws IOException {
+        return connection.get(DICTIONARY_PREFIX + Integer.toUnsignedString(dictionaryId));
+    }
+
+    @Override
+    public void saveDictionary(int dictionaryId, byte[] dictionary) throws IOException {
+        connection.set(DICTIONARY_PREFIX + Integer.toUnsignedString(dictionaryId), dictionary);
+    }
+
+    @Override
+    public int getActiveDictionary() throws IOException {
+        byte[] response = connection.get(ACTIVE_DICTIONARY_KEY);
+        if (response == null) {
+            return 0;
+        }
+        return ByteBuffer.wrap(response).getInt();
+    }
+
+    @Override
+    public void setActiveDictionary(int dictionaryId) throws IOException {
+        connection.set(ACTIVE_DICTIONARY_KEY, ByteBuffer.allocate(4).putInt(dictionaryId).array());
+    }
+}
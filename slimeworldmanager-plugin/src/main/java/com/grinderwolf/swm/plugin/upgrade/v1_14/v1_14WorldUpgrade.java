@@ -4,13 +4,14 @@ import com.flowpowered.nbt.ByteTag;
 import com.flowpowered.nbt.CompoundMap;
 import com.flowpowered.nbt.CompoundTag;
 import com.flowpowered.nbt.IntTag;
+import com.flowpowered.nbt.ListTag;
 import com.flowpowered.nbt.StringTag;
 import com.grinderwolf.swm.api.world.SlimeChunk;
 import com.grinderwolf.swm.api.world.SlimeChunkSection;
+import com.grinderwolf.swm.nms.CraftSlimeChunkSection;
 import com.grinderwolf.swm.nms.CraftSlimeWorld;
 import com.grinderwolf.swm.plugin.upgrade.Upgrade;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,13 +42,16 @@ public class v1_14WorldUpgrade implements Upgrade {
 
     @Override
     public void upgrade(CraftSlimeWorld world) {
-        for (SlimeChunk chunk : new ArrayList<>(world.getChunks().values())) {
+        for (SlimeChunk chunk : world.getChunks()) {
             // Update renamed blocks
             for (int sectionIndex = 0; sectionIndex < chunk.getSections().length; sectionIndex++) {
                 SlimeChunkSection section = chunk.getSections()[sectionIndex];
 
                 if (section != null) {
-                    List<CompoundTag> palette = section.getPalette().getValue();
+                    // The palette is a copy, as the section itself might be shared with other chunks
+                    ListTag<CompoundTag> paletteTag = section.getPalette();
+                    List<CompoundTag> palette = paletteTag.getValue();
+                    boolean renamed = false;
 
                     for (int paletteIndex = 0; paletteIndex < palette.size(); paletteIndex++) {
                         CompoundTag blockTag = palette.get(paletteIndex);
@@ -63,8 +67,14 @@ public class v1_14WorldUpgrade implements Upgrade {
 
                         if (newName != null) {
                             blockTag.getValue().put("Name", new StringTag("Name", newName));
+                            renamed = true;
                         }
                     }
+
+                    if (renamed) {
+                        chunk.getSections()[sectionIndex] = new CraftSlimeChunkSection(null, null, paletteTag, section.getBlockStates(),
+                                section.getBlockLight(), section.getSkyLight());
+                    }
                 }
             }
 
@@ -154,13 +164,16 @@ public class v1_14WorldUpgrade implements Upgrade {
 
     @Override
     public void downgrade(CraftSlimeWorld world) {
-        for (SlimeChunk chunk : new ArrayList<>(world.getChunks().values())) {
+        for (SlimeChunk chunk : world.getChunks()) {
             // Update renamed blocks
             for (int sectionIndex = 0; sectionIndex < chunk.getSections().length; sectionIndex++) {
                 SlimeChunkSection section = chunk.getSections()[sectionIndex];
 
                 if (section != null) {
-                    List<CompoundTag> palette = section.getPalette().getValue();
+                    // The palette is a copy, as the section itself might be shared with other chunks
+                    ListTag<CompoundTag> paletteTag = section.getPalette();
+                    List<CompoundTag> palette = paletteTag.getValue();
+                    boolean renamed = false;
 
                     for (int paletteIndex = 0; paletteIndex < palette.size(); paletteIndex++) {
                         CompoundTag blockTag = palette.get(paletteIndex);
@@ -175,8 +188,14 @@ public class v1_14WorldUpgrade implements Upgrade {
 
                         if (newName != null) {
                             blockTag.getValue().put("Name", new StringTag("Name", newName));
+                            renamed = true;
                         }
                     }
+
+                    if (renamed) {
+                        chunk.getSections()[sectionIndex] = new CraftSlimeChunkSection(null, null, paletteTag, section.getBlockStates(),
+                                section.getBlockLight(), section.getSkyLight());
+                    }
                 }
             }
 
@@ -10,7 +10,6 @@ import com.grinderwolf.swm.nms.CraftSlimeChunkSection;
 import com.grinderwolf.swm.nms.CraftSlimeWorld;
 import com.grinderwolf.swm.plugin.upgrade.Upgrade;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 
 public class v1_16WorldUpgrade implements Upgrade {
@@ -21,7 +20,7 @@ public class v1_16WorldUpgrade implements Upgrade {
 
     @Override
     public void upgrade(CraftSlimeWorld world) {
-        for (SlimeChunk chunk : new ArrayList<>(world.getChunks().values())) {
+        for (SlimeChunk chunk : world.getChunks()) {
             // Add padding to height maps and block states
             CompoundTag heightMaps = chunk.getHeightMaps();
 
@@ -61,7 +60,7 @@ public class v1_16WorldUpgrade implements Upgrade {
 
     @Override
     public void downgrade(CraftSlimeWorld world) {
-        for (SlimeChunk chunk : world.getChunks().values()) {
+        for (SlimeChunk chunk : world.getChunks()) {
             // Remove padding from height maps and block states
             // TODO
             for (int sectionIndex = 0; sectionIndex < chunk.getSections().length; sectionIndex++) {
@@ -0,0 +1,159 @@
+package com.grinderwolf.swm.plugin.world;
+
+import com.grinderwolf.swm.nms.CraftSlimeWorld;
+import com.grinderwolf.swm.plugin.SWMPlugin;
+import com.grinderwolf.swm.plugin.config.ConfigManager;
+import com.grinderwolf.swm.plugin.config.MainConfig;
+import com.grinderwolf.swm.plugin.log.Logging;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Compresses the chunks of slime worlds that the server unloaded a while ago, so large worlds
+ * that are mostly idle don't keep all of their chunks decoded in memory. Compressed chunks
+ * are decoded again as soon as the server loads them.
+ *
+ * Chunks are copied on the main thread, encoded asynchronously, and only swapped for their
+ * frames back on the main thread if the server still isn't using them.
+ */
+public class IdleChunkCompressor implements Runnable {
+
+    // Ticks between two checks
+    public static final long PERIOD = 20 * 60;
+
+    // Idle chunks copied from the server on each check, so a large backlog doesn't cause a lag spike
+    private static final int MAX_CHUNKS_PER_CHECK = 256;
+
+    private final AtomicBoolean compressing = new AtomicBoolean();
+
+    @Override
+    public void run() {
+        MainConfig.IdleChunkOptions options = ConfigManager.getMainConfig().getIdleChunkOptions();
+
+        if (!options.isEnabled() || compressing.get()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long idleTime = options.getIdleMinutes() * 60_000L;
+        Map<CraftSlimeWorld, List<CraftSlimeWorld.IdleChunk>> chunksToCompress = new LinkedHashMap<>();
+        Map<CraftSlimeWorld, World> bukkitWorlds = new HashMap<>();
+        List<CraftSlimeWorld.IdleChunk> remainingChunks = new ArrayList<>();
+        Map<CraftSlimeWorld.IdleChunk, CraftSlimeWorld> chunkWorlds = new IdentityHashMap<>();
+
+        // Whether the server has a chunk loaded can only be checked from the main thread
+        for (World bukkitWorld : Bukkit.getWorlds()) {
+            CraftSlimeWorld world = (CraftSlimeWorld) SWMPlugin.getInstance().getNms().getSlimeWorld(bukkitWorld);
+
+            if (world == null) {
+                continue;
+            }
+
+            List<CraftSlimeWorld.IdleChunk> idleChunks = world.updateIdleChunks(chunk -> bukkitWorld.isChunkLoaded(chunk.getX(), chunk.getZ()));
+            int excess = options.getMaxPerWorld() < 0 ? 0 : idleChunks.size() - options.getMaxPerWorld();
+            List<CraftSlimeWorld.IdleChunk> worldChunks = new ArrayList<>();
+
+            for (int i = 0; i < idleChunks.size(); i++) {
+                CraftSlimeWorld.IdleChunk idleChunk = idleChunks.get(i);
+
+                if (i < excess || now - idleChunk.getIdleSince() >= idleTime) {
+                    worldChunks.add(idleChunk);
+                } else {
+                    remainingChunks.add(idleChunk);
+                    chunkWorlds.put(idleChunk, world);
+                }
+            }
+
+            chunksToCompress.put(world, worldChunks);
+            bukkitWorlds.put(world, bukkitWorld);
+        }
+
+        // Worlds over the global limit give up the chunks that have been idle the longest first
+        if (options.getMaxTotal() >= 0 && remainingChunks.size() > options.getMaxTotal()) {
+            remainingChunks.sort(Comparator.comparingLong(CraftSlimeWorld.IdleChunk::getIdleSince));
+
+            for (int i = 0; i < remainingChunks.size() - options.getMaxTotal(); i++) {
+                CraftSlimeWorld.IdleChunk idleChunk = remainingChunks.get(i);
+                chunksToCompress.get(chunkWorlds.get(idleChunk)).add(idleChunk);
+            }
+        }
+
+        // Chunks backed by the server are copied right here, so only a limited amount is handled
+        // on each check. The ones left out are still idle next time.
+        int capturedChunks = 0;
+
+        for (Iterator<Map.Entry<CraftSlimeWorld, List<CraftSlimeWorld.IdleChunk>>> iterator = chunksToCompress.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<CraftSlimeWorld, List<CraftSlimeWorld.IdleChunk>> entry = iterator.next();
+            CraftSlimeWorld world = entry.getKey();
+            List<CraftSlimeWorld.IdleChunk> worldChunks = entry.getValue();
+
+            if (worldChunks.size() > MAX_CHUNKS_PER_CHECK - capturedChunks) {
+                worldChunks.subList(MAX_CHUNKS_PER_CHECK - capturedChunks, worldChunks.size()).clear();
+            }
+
+            if (worldChunks.isEmpty()) {
+                iterator.remove();
+                continue;
+            }
+
+            try {
+                SWMPlugin.getInstance().getNms().captureEntities(bukkitWorlds.get(world), () -> {
+                    try {
+                        world.captureChunks(worldChunks);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (RuntimeException ex) {
+                Logging.error("Failed to capture the idle chunks of world " + world.getName() + ":");
+                ex.printStackTrace();
+                iterator.remove();
+                continue;
+            }
+
+            capturedChunks += worldChunks.size();
+        }
+
+        if (chunksToCompress.isEmpty()) {
+            return;
+        }
+
+        compressing.set(true);
+        Bukkit.getScheduler().runTaskAsynchronously(SWMPlugin.getInstance(), () -> {
+            for (Iterator<Map.Entry<CraftSlimeWorld, List<CraftSlimeWorld.IdleChunk>>> iterator = chunksToCompress.entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<CraftSlimeWorld, List<CraftSlimeWorld.IdleChunk>> entry = iterator.next();
+                CraftSlimeWorld world = entry.getKey();
+
+                try {
+                    world.encodeChunks(entry.getValue());
+                } catch (IOException | RuntimeException ex) {
+                    Logging.error("Failed to compress the idle chunks of world " + world.getName() + ":");
+                    ex.printStackTrace();
+                    iterator.remove();
+                }
+            }
+
+            // The server may have loaded some of the chunks again in the meantime, which is checked from the main thread
+            Bukkit.getScheduler().runTask(SWMPlugin.getInstance(), () -> {
+                try {
+                    for (Map.Entry<CraftSlimeWorld, List<CraftSlimeWorld.IdleChunk>> entry : chunksToCompress.entrySet()) {
+                        World bukkitWorld = bukkitWorlds.get(entry.getKey());
+
+                        if (Bukkit.getWorld(bukkitWorld.getUID()) != bukkitWorld) { // Unloaded in the meantime
+                            continue;
+                        }
+
+                        entry.getKey().compressChunks(entry.getValue(), chunk -> bukkitWorld.isChunkLoaded(chunk.getX(), chunk.getZ()));
+                    }
+                } finally {
+                    compressing.set(false);
+                }
+            });
+        });
+    }
+}
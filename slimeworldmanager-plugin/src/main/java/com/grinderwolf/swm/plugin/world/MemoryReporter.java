@@ -0,0 +1,110 @@
+package com.grinderwolf.swm.plugin.world;
+
+import com.grinderwolf.swm.api.world.SlimeWorldMemoryUsage;
+import com.grinderwolf.swm.nms.CraftSlimeWorld;
+import com.grinderwolf.swm.plugin.SWMPlugin;
+import com.grinderwolf.swm.plugin.config.ConfigManager;
+import com.grinderwolf.swm.plugin.log.Logging;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Periodically logs an estimate of the memory used by the loaded slime worlds. The estimates
+ * are made off the main thread, and each world only measures again the chunks that changed
+ * since the last time.
+ */
+public class MemoryReporter implements Runnable {
+
+    // Ticks between two checks
+    public static final long PERIOD = 20 * 60;
+
+    // Worlds listed in every log line
+    private static final int LOGGED_WORLDS = 3;
+
+    private final AtomicBoolean reporting = new AtomicBoolean();
+    private int minutes;
+
+    @Override
+    public void run() {
+        int logMinutes = ConfigManager.getMainConfig().getMemoryOptions().getLogMinutes();
+
+        if (logMinutes <= 0 || ++minutes < logMinutes || reporting.get()) {
+            return;
+        }
+
+        minutes = 0;
+        List<CraftSlimeWorld> worlds = getLoadedWorlds();
+
+        if (worlds.isEmpty()) {
+            return;
+        }
+
+        reporting.set(true);
+        Bukkit.getScheduler().runTaskAsynchronously(SWMPlugin.getInstance(), () -> {
+            try {
+                List<SlimeWorldMemoryUsage> usages = new ArrayList<>();
+                long totalSize = 0;
+
+                for (CraftSlimeWorld world : worlds) {
+                    SlimeWorldMemoryUsage usage = world.getMemoryUsage();
+                    usages.add(usage);
+                    totalSize += usage.getTotalSize();
+                }
+
+                usages.sort(Comparator.comparingLong(SlimeWorldMemoryUsage::getTotalSize).reversed());
+                StringBuilder message = new StringBuilder("Slime worlds are using about " + formatSize(totalSize)
+                        + " (" + usages.size() + " world" + (usages.size() == 1 ? "" : "s") + ")");
+
+                for (int i = 0; i < usages.size() && i < LOGGED_WORLDS; i++) {
+                    SlimeWorldMemoryUsage usage = usages.get(i);
+                    message.append(i == 0 ? ": " : ", ").append(usage.getName()).append(" ").append(formatSize(usage.getTotalSize()));
+                }
+
+                Logging.info(message.toString());
+            } catch (RuntimeException ex) {
+                Logging.error("Failed to estimate the memory used by the loaded worlds:");
+                ex.printStackTrace();
+            } finally {
+                reporting.set(false);
+            }
+        });
+    }
+
+    /**
+     * Returns every slime world the server has loaded. Must be called from the main thread.
+     */
+    public static List<CraftSlimeWorld> getLoadedWorlds() {
+        List<CraftSlimeWorld> worlds = new ArrayList<>();
+
+        for (World bukkitWorld : Bukkit.getWorlds()) {
+            CraftSlimeWorld world = (CraftSlimeWorld) SWMPlugin.getInstance().getNms().getSlimeWorld(bukkitWorld);
+
+            if (world != null) {
+                worlds.add(world);
+            }
+        }
+
+        return worlds;
+    }
+
+    public static String formatSize(long size) {
+        if (size < 1024) {
+            return size + " B";
+        }
+
+        if (size < 1024 * 1024) {
+            return String.format("%.1f KB", size / 1024.0);
+        }
+
+        if (size < 1024L * 1024 * 1024) {
+            return String.format("%.1f MB", size / (1024.0 * 1024));
+        }
+
+        return String.format("%.2f GB", size / (1024.0 * 1024 * 1024));
+    }
+}
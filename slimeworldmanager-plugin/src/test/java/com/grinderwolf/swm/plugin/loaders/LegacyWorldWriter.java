@@ -0,0 +1,230 @@
+package com.grinderwolf.swm.plugin.loaders;
+
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.TagType;
+import com.grinderwolf.swm.api.utils.NibbleArray;
+import com.grinderwolf.swm.api.utils.SlimeFormat;
+import com.grinderwolf.swm.api.world.SlimeChunk;
+import com.grinderwolf.swm.api.world.SlimeChunkSection;
+import com.grinderwolf.swm.nms.BlockPalette;
+import com.grinderwolf.swm.nms.ChunkSerializer;
+import com.grinderwolf.swm.nms.CompressionPool;
+import com.grinderwolf.swm.nms.NbtCodec;
+import com.grinderwolf.swm.nms.SectionTable;
+import com.grinderwolf.swm.nms.SegmentCompression;
+import com.grinderwolf.swm.nms.XXHash64;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writes worlds the way older SRF versions stored them, so the reader can be tested against every
+ * version that stores chunks in their own frames. Only post 1.13 worlds are supported.
+ */
+class LegacyWorldWriter {
+
+    private static final SegmentCompression COMPRESSION = SegmentCompression.DEFAULT;
+
+    static byte[] write(int version, byte worldVersion, List<SlimeChunk> chunks, CompoundTag extraData,
+                        List<CompoundTag> worldMaps) throws IOException {
+        if (version < 10 || version >= SlimeFormat.SLIME_VERSION) {
+            throw new IllegalArgumentException("Unsupported SRF version " + version);
+        }
+
+        List<SlimeChunk> sortedChunks = new ArrayList<>(chunks);
+        sortedChunks.sort(Comparator.comparingInt(SlimeChunk::getZ).thenComparingInt(SlimeChunk::getX));
+
+        int minX = sortedChunks.stream().mapToInt(SlimeChunk::getX).min().orElse(0);
+        int maxX = sortedChunks.stream().mapToInt(SlimeChunk::getX).max().orElse(0);
+        int minZ = sortedChunks.stream().mapToInt(SlimeChunk::getZ).min().orElse(0);
+        int maxZ = sortedChunks.stream().mapToInt(SlimeChunk::getZ).max().orElse(0);
+        int width = maxX - minX + 1;
+        int depth = maxZ - minZ + 1;
+
+        BitSet chunkBitset = new BitSet(width * depth);
+        BlockPalette blockPalette = new BlockPalette();
+        List<byte[]> chunkData = new ArrayList<>();
+        List<CompoundTag> tileEntities = new ArrayList<>();
+        List<CompoundTag> entities = new ArrayList<>();
+
+        for (SlimeChunk chunk : sortedChunks) {
+            chunkBitset.set((chunk.getZ() - minZ) * width + (chunk.getX() - minX));
+            chunkData.add(writeChunk(chunk, version, blockPalette));
+            tileEntities.addAll(chunk.getTileEntities());
+            entities.addAll(chunk.getEntities());
+        }
+
+        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
+        DataOutputStream outStream = new DataOutputStream(outByteStream);
+
+        outStream.write(SlimeFormat.SLIME_HEADER);
+        outStream.writeByte(version);
+        outStream.writeByte(worldVersion);
+
+        if (version >= 11) {
+            outStream.writeInt(0); // No dictionary
+        }
+
+        if (version >= 12) {
+            for (int i = 0; i < 5; i++) { // Chunks, tile entities, entities, extra data and maps
+                COMPRESSION.write(outStream);
+            }
+        }
+
+        outStream.writeShort(minX);
+        outStream.writeShort(minZ);
+        outStream.writeShort(width);
+        outStream.writeShort(depth);
+        outStream.write(Arrays.copyOf(chunkBitset.toByteArray(), (width * depth + 7) / 8));
+
+        if (version >= 14) {
+            ByteArrayOutputStream paletteByteStream = new ByteArrayOutputStream();
+            blockPalette.write(new DataOutputStream(paletteByteStream));
+            writeSegment(outStream, version, paletteByteStream.toByteArray());
+        }
+
+        if (version >= 13) { // Sections are never shared
+            ByteArrayOutputStream tableByteStream = new ByteArrayOutputStream();
+            new SectionTable().write(new DataOutputStream(tableByteStream), new BitSet());
+            writeSegment(outStream, version, tableByteStream.toByteArray());
+        }
+
+        // Chunk index, then every chunk frame
+        List<byte[]> compressedChunks = new ArrayList<>();
+
+        for (byte[] data : chunkData) {
+            byte[] compressedData = CompressionPool.compress(data, 0, data.length, COMPRESSION, null);
+            compressedChunks.add(compressedData);
+
+            outStream.writeInt(compressedData.length);
+            outStream.writeInt(data.length);
+
+            if (version >= 17) {
+                outStream.writeLong(XXHash64.hash(compressedData));
+            }
+
+            if (version >= 13) {
+                outStream.writeShort(0);
+            }
+        }
+
+        for (byte[] compressedData : compressedChunks) {
+            outStream.write(compressedData);
+        }
+
+        writeSegment(outStream, version, NbtCodec.serialize(createListCompound("tiles", tileEntities)));
+        outStream.writeBoolean(true);
+        writeSegment(outStream, version, NbtCodec.serialize(createListCompound("entities", entities)));
+        writeSegment(outStream, version, NbtCodec.serialize(extraData));
+        writeSegment(outStream, version, NbtCodec.serialize(createListCompound("maps", worldMaps)));
+
+        return outByteStream.toByteArray();
+    }
+
+    private static byte[] writeChunk(SlimeChunk chunk, int version, BlockPalette blockPalette) throws IOException {
+        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
+        DataOutputStream outStream = new DataOutputStream(outByteStream);
+
+        if (version >= 15) {
+            ChunkSerializer.writeHeightMaps(outStream, chunk.getHeightMaps());
+            ChunkSerializer.writeBiomes(outStream, chunk.getBiomes());
+        } else {
+            byte[] heightMaps = NbtCodec.serialize(chunk.getHeightMaps());
+            outStream.writeInt(heightMaps.length);
+            outStream.write(heightMaps);
+
+            outStream.writeInt(chunk.getBiomes().length);
+
+            for (int biome : chunk.getBiomes()) {
+                outStream.writeInt(biome);
+            }
+        }
+
+        SlimeChunkSection[] sections = chunk.getSections();
+        BitSet sectionBitset = new BitSet(16);
+
+        for (int i = 0; i < sections.length; i++) {
+            sectionBitset.set(i, sections[i] != null);
+        }
+
+        outStream.write(Arrays.copyOf(sectionBitset.toByteArray(), 2));
+
+        for (SlimeChunkSection section : sections) {
+            if (section == null) {
+                continue;
+            }
+
+            writeLight(outStream, version, section.getBlockLight());
+
+            List<CompoundTag> palette = section.getPalette().getValue();
+
+            if (version >= 14) {
+                ChunkSerializer.writeVarInt(outStream, palette.size());
+
+                for (CompoundTag state : palette) {
+                    ChunkSerializer.writeVarInt(outStream, blockPalette.getId(state));
+                }
+            } else {
+                outStream.writeInt(palette.size());
+
+                for (CompoundTag state : palette) {
+                    byte[] serializedState = NbtCodec.serialize(state);
+                    outStream.writeInt(serializedState.length);
+                    outStream.write(serializedState);
+                }
+            }
+
+            long[] blockStates = section.getBlockStates();
+            outStream.writeInt(blockStates.length);
+
+            for (long value : blockStates) {
+                outStream.writeLong(value);
+            }
+
+            writeLight(outStream, version, section.getSkyLight());
+        }
+
+        return outByteStream.toByteArray();
+    }
+
+    private static void writeLight(DataOutputStream outStream, int version, NibbleArray light) throws IOException {
+        if (version >= 16) {
+            ChunkSerializer.writeLight(outStream, light);
+            return;
+        }
+
+        outStream.writeBoolean(light != null);
+
+        if (light != null) {
+            outStream.write(light.getBacking());
+        }
+    }
+
+    private static void writeSegment(DataOutputStream outStream, int version, byte[] data) throws IOException {
+        byte[] compressedData = CompressionPool.compress(data, 0, data.length, COMPRESSION, null);
+
+        outStream.writeInt(compressedData.length);
+        outStream.writeInt(data.length);
+
+        if (version >= 17) {
+            outStream.writeLong(XXHash64.hash(compressedData));
+        }
+
+        outStream.write(compressedData);
+    }
+
+    private static CompoundTag createListCompound(String name, List<CompoundTag> tags) {
+        CompoundMap map = new CompoundMap();
+        map.put(new ListTag<>(name, TagType.TAG_COMPOUND, tags));
+
+        return new CompoundTag("", map);
+    }
+}
@@ -0,0 +1,224 @@
+package com.grinderwolf.swm.plugin.loaders;
+
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.DoubleTag;
+import com.flowpowered.nbt.IntTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.LongArrayTag;
+import com.flowpowered.nbt.StringTag;
+import com.flowpowered.nbt.TagType;
+import com.grinderwolf.swm.api.exceptions.CorruptedWorldException;
+import com.grinderwolf.swm.api.utils.NibbleArray;
+import com.grinderwolf.swm.api.utils.SlimeFormat;
+import com.grinderwolf.swm.api.world.SlimeChunk;
+import com.grinderwolf.swm.api.world.SlimeChunkSection;
+import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
+import com.grinderwolf.swm.nms.ChunkSerializer;
+import com.grinderwolf.swm.nms.CraftSlimeChunk;
+import com.grinderwolf.swm.nms.CraftSlimeChunkSection;
+import com.grinderwolf.swm.nms.CraftSlimeWorld;
+import com.grinderwolf.swm.nms.SlimeWorldWriter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoaderUtilsTest {
+
+    private static final byte WORLD_VERSION = 0x06;
+
+    @Test
+    void serializedWorldReadsBack() throws Exception {
+        CraftSlimeWorld world = createWorld("test");
+        byte[] serializedWorld = world.serialize();
+
+        CraftSlimeWorld readWorld = LoaderUtils.deserializeWorld(null, "test", serializedWorld, null, false);
+
+        assertWorldMatches(readWorld);
+    }
+
+    @Test
+    void legacyWorldsReadBack() throws Exception {
+        CraftSlimeWorld world = createWorld("test");
+
+        for (int version = 10; version < SlimeFormat.SLIME_VERSION; version++) {
+            byte[] serializedWorld = LegacyWorldWriter.write(version, WORLD_VERSION, new ArrayList<>(world.getChunks().values()),
+                    world.getExtraData(), world.getWorldMaps());
+
+            CraftSlimeWorld readWorld = LoaderUtils.deserializeWorld(null, "test", serializedWorld, null, false);
+            assertWorldMatches(readWorld);
+
+            // Saving a legacy world always writes the current version
+            assertWorldMatches(LoaderUtils.deserializeWorld(null, "test", readWorld.serialize(), null, false));
+        }
+    }
+
+    @Test
+    void savingAgainWritesTheSameWorld() throws Exception {
+        byte[] serializedWorld = createWorld("test").serialize();
+        CraftSlimeWorld readWorld = LoaderUtils.deserializeWorld(null, "test", serializedWorld, null, false);
+
+        assertEquals(SlimeWorldWriter.hashPayload(readWorld.serialize()), SlimeWorldWriter.hashPayload(readWorld.serialize()));
+    }
+
+    @Test
+    void serializedWorldPassesVerification() throws Exception {
+        byte[] serializedWorld = createWorld("test").serialize();
+
+        LoaderUtils.verifyWorld(null, "test", serializedWorld);
+    }
+
+    @Test
+    void truncatedWorldIsCorrupted() throws Exception {
+        byte[] serializedWorld = createWorld("test").serialize();
+
+        for (int length : new int[] { serializedWorld.length - 1, serializedWorld.length / 2, 10 }) {
+            byte[] truncatedWorld = Arrays.copyOf(serializedWorld, length);
+
+            assertThrows(CorruptedWorldException.class, () -> LoaderUtils.deserializeWorld(null, "test", truncatedWorld, null, false));
+        }
+    }
+
+    private static void assertWorldMatches(CraftSlimeWorld readWorld) {
+        // Maps
+        assertEquals(1, readWorld.getWorldMaps().size());
+        assertEquals(7, ((IntTag) readWorld.getWorldMaps().get(0).getValue().get("id")).getValue());
+
+        // Extra data
+        assertEquals("value", readWorld.getExtraData().getStringValue("custom").orElse(null));
+
+        // Chunks
+        assertNull(readWorld.getChunk(0, 0));
+        assertChunkMatches(readWorld.getChunk(1, -2), createChunk("test", 1, -2));
+        assertChunkMatches(readWorld.getChunk(3, 4), createChunk("test", 3, 4));
+    }
+
+    private static void assertChunkMatches(SlimeChunk chunk, SlimeChunk originalChunk) {
+        assertNotNull(chunk);
+        assertArrayEquals(originalChunk.getBiomes(), chunk.getBiomes());
+        assertArrayEquals(((LongArrayTag) originalChunk.getHeightMaps().getValue().get("MOTION_BLOCKING")).getValue(),
+                ((LongArrayTag) chunk.getHeightMaps().getValue().get("MOTION_BLOCKING")).getValue());
+
+        for (int i = 0; i < 16; i++) {
+            SlimeChunkSection originalSection = originalChunk.getSections()[i];
+            SlimeChunkSection section = chunk.getSections()[i];
+
+            if (originalSection == null) {
+                assertNull(section);
+                continue;
+            }
+
+            assertNotNull(section);
+            assertArrayEquals(originalSection.getBlockStates(), section.getBlockStates());
+            assertArrayEquals(originalSection.getBlockLight().getBacking(), section.getBlockLight().getBacking());
+            assertArrayEquals(originalSection.getSkyLight().getBacking(), section.getSkyLight().getBacking());
+            assertEquals(getNames(originalSection.getPalette()), getNames(section.getPalette()));
+        }
+
+        assertEquals(1, chunk.getTileEntities().size());
+        assertEquals("minecraft:chest", chunk.getTileEntities().get(0).getStringValue("id").orElse(null));
+        assertEquals(originalChunk.getTileEntities().get(0).getIntValue("x"), chunk.getTileEntities().get(0).getIntValue("x"));
+        assertEquals(1, chunk.getEntities().size());
+        assertEquals("minecraft:pig", chunk.getEntities().get(0).getStringValue("id").orElse(null));
+    }
+
+    private static CraftSlimeWorld createWorld(String name) {
+        Map<Long, SlimeChunk> chunks = new HashMap<>();
+        chunks.put(0L, createChunk(name, 1, -2));
+        chunks.put(1L, createChunk(name, 3, 4));
+
+        CompoundMap extraMap = new CompoundMap();
+        extraMap.put(new StringTag("custom", "value"));
+
+        CompoundMap mapMap = new CompoundMap();
+        mapMap.put(new IntTag("id", 7));
+
+        List<CompoundTag> worldMaps = new ArrayList<>();
+        worldMaps.add(new CompoundTag("", mapMap));
+
+        return new CraftSlimeWorld(null, name, chunks, new CompoundTag("", extraMap), worldMaps, WORLD_VERSION, null,
+                new SlimePropertyMap(), false, false);
+    }
+
+    private static CraftSlimeChunk createChunk(String worldName, int x, int z) {
+        SlimeChunkSection[] sections = new SlimeChunkSection[16];
+        sections[0] = createSection(x, z, 0);
+        sections[3] = createSection(x, z, 3);
+
+        CompoundMap heightMaps = new CompoundMap();
+        long[] heightMap = new long[37];
+        Arrays.fill(heightMap, 0x0102030405060708L + x);
+        heightMaps.put(new LongArrayTag("MOTION_BLOCKING", heightMap));
+
+        int[] biomes = new int[1024];
+
+        for (int i = 0; i < biomes.length; i++) {
+            biomes[i] = i % 3 == 0 ? 1 : 4;
+        }
+
+        List<CompoundTag> tileEntities = new ArrayList<>();
+        CompoundMap tileEntity = new CompoundMap();
+        tileEntity.put(new StringTag("id", "minecraft:chest"));
+        tileEntity.put(new IntTag("x", x * 16 + 2));
+        tileEntity.put(new IntTag("y", 10));
+        tileEntity.put(new IntTag("z", z * 16 + 5));
+        tileEntities.add(new CompoundTag("", tileEntity));
+
+        List<CompoundTag> entities = new ArrayList<>();
+        CompoundMap entity = new CompoundMap();
+        entity.put(new StringTag("id", "minecraft:pig"));
+        entity.put(new ListTag<>("Pos", TagType.TAG_DOUBLE, Arrays.asList(new DoubleTag("", x * 16 + 0.5),
+                new DoubleTag("", 64), new DoubleTag("", z * 16 + 8.5))));
+        entities.add(new CompoundTag("", entity));
+
+        return new CraftSlimeChunk(worldName, x, z, sections, new CompoundTag("", heightMaps), biomes, tileEntities, entities);
+    }
+
+    private static CraftSlimeChunkSection createSection(int x, int z, int sectionY) {
+        List<CompoundTag> palette = new ArrayList<>();
+        palette.add(createState("minecraft:air"));
+        palette.add(createState("minecraft:stone"));
+        palette.add(createState("minecraft:oak_log"));
+
+        int[] indices = new int[4096];
+
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = Math.floorMod(i * 7 + x + z + sectionY, palette.size());
+        }
+
+        byte[] blockLight = new byte[2048];
+        byte[] skyLight = new byte[2048];
+
+        for (int i = 0; i < blockLight.length; i++) {
+            blockLight[i] = (byte) (i + sectionY);
+            skyLight[i] = (byte) 0xFF;
+        }
+
+        return new CraftSlimeChunkSection(null, null, new ListTag<>("", TagType.TAG_COMPOUND, palette),
+                ChunkSerializer.packBlockStates(indices, palette.size()), new NibbleArray(blockLight), new NibbleArray(skyLight));
+    }
+
+    private static CompoundTag createState(String name) {
+        CompoundMap map = new CompoundMap();
+        map.put(new StringTag("Name", name));
+
+        return new CompoundTag("", map);
+    }
+
+    private static List<String> getNames(ListTag<CompoundTag> palette) {
+        List<String> names = new ArrayList<>();
+
+        for (CompoundTag state : palette.getValue()) {
+            names.add(state.getStringValue("Name").orElse(null));
+        }
+
+        return Collections.unmodifiableList(names);
+    }
+}